@@ -27,6 +27,28 @@ public class Mathematics {
 		return a + b;
 	}
 
+	/**
+	 * Calculates the greatest common divisor of two longs a, b
+	 * 
+	 * @param a the first long
+	 * @param b the second long
+	 * @return Greatest Common Divisor, as gcd(int, int)
+	 * @throws ArithmeticException if both a == 0 and b == 0
+	 */
+	public static long gcd(long a, long b) {
+		if (a == 0 && b == 0) {
+			throw new ArithmeticException("gcd(0, 0) is undefined!");
+		}
+		a = Math.abs(a);
+		b = Math.abs(b);
+		while (b > 0) { // Euclid's algorithm
+			long remainder = a % b;
+			a = b;
+			b = remainder;
+		}
+		return a;
+	}
+
 	/**
 	 * Calculates the least common multiple of two integers.
 	 * 
@@ -1,9 +1,37 @@
 package auxiliary;
 
+/**
+ * A fraction in its simplest form. Signs are dropped, so fractions are never
+ * negative.
+ * 
+ * Arithmetic is done on longs and the result is reduced once, so nothing
+ * overflows before the result is known; a result that does not fit in ints
+ * throws ArithmeticException. Note lengths nearly always have power-of-two
+ * denominators, which are reduced with shifts instead of a gcd, and the most
+ * common ones are shared instances handed out by valueOf.
+ */
 public class MultiplicativeFactor {
 
-	private int num;
-	private int denom;
+	// valueOf shares the instances of n/2^k for n < CACHED_NUMS, k < CACHED_SHIFTS
+	private static final int CACHED_NUMS = 64;
+	private static final int CACHED_SHIFTS = 8; // denominators 1 to 128
+	private static final MultiplicativeFactor[][] cache = new MultiplicativeFactor[CACHED_SHIFTS][CACHED_NUMS];
+
+	static {
+		for (int shift = 0; shift < CACHED_SHIFTS; shift++) {
+			for (int num = 0; num < CACHED_NUMS; num++) {
+				if (num == 0 && shift > 0)
+					cache[shift][num] = cache[0][0];
+				else if (num % 2 == 0 && shift > 0) // not in its simplest form
+					cache[shift][num] = cache[shift - 1][num / 2];
+				else
+					cache[shift][num] = new MultiplicativeFactor(num, 1 << shift, true);
+			}
+		}
+	}
+
+	private final int num;
+	private final int denom;
 
 	/**
 	 * Constructs an instance of a fractional number
@@ -17,8 +45,28 @@ public class MultiplicativeFactor {
 		if (num < 0) {
 			num = (-1)*num;
 		}
-		this.num = num / Mathematics.gcd(num, denom);
-		this.denom = denom / Mathematics.gcd(num, denom);
+		int gcd = Mathematics.gcd(num, denom);
+		this.num = num / gcd;
+		this.denom = denom / gcd;
+	}
+
+	/**
+	 * Constructs a fraction that is already in its simplest form
+	 */
+	private MultiplicativeFactor(int num, int denom, boolean reduced) {
+		this.num = num;
+		this.denom = denom;
+	}
+
+	/**
+	 * Returns the fraction num/denom in its simplest form, sharing the
+	 * instances of common note lengths
+	 * @param num : an integer (int) representing the numerator
+	 * @param denom : an integer (int) representing the denominator
+	 * @return : a MultiplicativeFactor equal to new MultiplicativeFactor(num, denom)
+	 */
+	public static MultiplicativeFactor valueOf(int num, int denom) {
+		return reduce(Math.abs((long) num), Math.abs((long) denom));
 	}
 
 	/**
@@ -41,22 +89,32 @@ public class MultiplicativeFactor {
 	 * Calculates the product of two rational numbers in its simplest form
 	 * @param other: the fraction being multiplied
 	 * @return : a MultiplicativeFactor representing the product
+	 * @throws ArithmeticException if the product does not fit in ints
 	 */
 	public MultiplicativeFactor product(MultiplicativeFactor other) {
-		int productNum= this.num * other.getNum();
-		int productDenom= this.denom* other.getDenom();
-		return new MultiplicativeFactor(productNum, productDenom);
+		return reduce((long) this.num * other.num, (long) this.denom * other.denom);
 	}
 
 	/**
 	 * Calculates the sum of two rational numbers in its simplest form
 	 * @param other: the fraction being added
 	 * @return : a MultiplicativeFactor representing the sum
+	 * @throws ArithmeticException if the sum does not fit in ints
 	 */
 	public MultiplicativeFactor sum(MultiplicativeFactor other) {
-		int commonDenom = this.denom * other.getDenom();
-		return new MultiplicativeFactor((commonDenom / this.denom) * this.num
-				+ (commonDenom / other.getDenom()) * other.getNum(), commonDenom);
+		long denom = this.denom;
+		long otherDenom = other.denom;
+		if (denom == otherDenom)
+			return reduce((long) this.num + other.num, denom);
+		if (isPowerOfTwo(denom) && isPowerOfTwo(otherDenom)) {
+			// the larger denominator is a multiple of the smaller one
+			if (denom > otherDenom)
+				return reduce(this.num + ((long) other.num << shiftBetween(otherDenom, denom)), denom);
+			return reduce(((long) this.num << shiftBetween(denom, otherDenom)) + other.num, otherDenom);
+		}
+		long gcd = gcd(denom, otherDenom);
+		return reduce(this.num * (otherDenom / gcd) + other.num * (denom / gcd),
+				denom / gcd * otherDenom);
 	}
 
 	/**
@@ -83,37 +141,53 @@ public class MultiplicativeFactor {
 	 */
 	public static MultiplicativeFactor multFactorFromString(String stringIn) {
 		if (stringIn.equals("/")) 
-			return new MultiplicativeFactor(1, 2);
+			return valueOf(1, 2);
 		else if (stringIn == null || stringIn.equals("")) 
 			throw new IllegalArgumentException("Can't create a multiplicativeFactor from an empty or null string");
 
-
-		StringBuilder stringFract = new StringBuilder(stringIn);
-		if (!stringIn.contains("/"))
-			stringFract.append("/1");
-		if (stringIn.charAt(0) == '/')
-			stringFract.insert(0,"1");
-		if (stringIn.charAt(stringIn.length()-1) == '/')
-			stringFract.append("1");
-
-		String[] components = stringFract.toString().split("/");
-
-		if (components.length!=2) {
+		int slash = stringIn.indexOf('/');
+		if (slash != stringIn.lastIndexOf('/')) {
 			throw new RuntimeException("Invalid rational Number");
+		}
+		try {
+			if (slash < 0)
+				return valueOf(parseInt(stringIn, 0, stringIn.length()), 1);
+			int num = slash == 0 ? 1 : parseInt(stringIn, 0, slash);
+			int denom = slash == stringIn.length() - 1 ? 1 : parseInt(stringIn, slash + 1, stringIn.length());
+			return valueOf(num, denom);
 		} 
-		else {
-			try {
-				int num = Integer.parseInt(components[0]);
-				int denom = Integer.parseInt(components[1]);
-				return new MultiplicativeFactor(num, denom);
-			} 
-			catch (NumberFormatException ex) 
-			{
-				throw new RuntimeException(stringIn + " is not valid");
-			}
+		catch (NumberFormatException ex) 
+		{
+			throw new RuntimeException(stringIn + " is not valid");
 		}
 	}
 
+	/**
+	 * Parses part of a String as Integer.parseInt would, without copying it
+	 * @throws NumberFormatException if the part is not a decimal int
+	 */
+	private static int parseInt(String s, int start, int end) {
+		boolean negative = false;
+		if (start < end && (s.charAt(start) == '-' || s.charAt(start) == '+')) {
+			negative = s.charAt(start) == '-';
+			start++;
+		}
+		if (start == end)
+			throw new NumberFormatException(s);
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = Character.digit(s.charAt(i), 10);
+			if (digit < 0)
+				throw new NumberFormatException(s);
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1)
+				throw new NumberFormatException(s);
+		}
+		if (!negative && value > Integer.MAX_VALUE)
+			throw new NumberFormatException(s);
+		return (int) (negative ? -value : value);
+	}
+
 	@Override // usefull for testing
 	public boolean equals(Object other) {
 		if (other == null)
@@ -129,14 +203,72 @@ public class MultiplicativeFactor {
 		return String.valueOf(this.num) + "/" + String.valueOf(this.denom);
 	}
 
+	@Override
+	public int hashCode() {
+		return 31 * num + denom;
+	}
+
+	/**
+	 * Compares two fractions by cross-multiplication
+	 * @param to: the fraction compared to
+	 * @return : -1, 0 or 1 as this fraction is less than, equal to or greater than to
+	 */
 	public int compareTo(MultiplicativeFactor to) {
-		int num = this.subtract(to).getNum();
-		if (num < 0)
-			return -1;
-		else if (num > 0)
-			return 1;
-		else
-			return 0;
+		return Long.signum((long) this.num * to.denom - (long) to.num * this.denom);
+	}
+
+	/**
+	 * Brings a non-negative fraction to its simplest form
+	 * @return : the shared instance for the fraction if there is one, a new one otherwise
+	 * @throws ArithmeticException if the fraction does not fit in ints
+	 */
+	private static MultiplicativeFactor reduce(long num, long denom) {
+		if (num == 0 && denom != 0)
+			denom = 1;
+		else if (isPowerOfTwo(denom)) {
+			int shift = Math.min(Long.numberOfTrailingZeros(num), Long.numberOfTrailingZeros(denom));
+			num >>= shift;
+			denom >>= shift;
+		}
+		else if (denom != 1) {
+			if (num == 0) // and denom == 0
+				throw new ArithmeticException("gcd(0, 0) is undefined!");
+			long gcd = gcd(num, denom);
+			num /= gcd;
+			denom /= gcd;
+		}
+
+		if (num < CACHED_NUMS && denom < (1 << CACHED_SHIFTS) && isPowerOfTwo(denom))
+			return cache[Long.numberOfTrailingZeros(denom)][(int) num];
+		if (num > Integer.MAX_VALUE || denom > Integer.MAX_VALUE)
+			throw new ArithmeticException("Fraction does not fit in ints: " + num + "/" + denom);
+		return new MultiplicativeFactor((int) num, (int) denom, true);
+	}
+
+	/**
+	 * @return true if n is a positive power of two
+	 */
+	private static boolean isPowerOfTwo(long n) {
+		return n > 0 && (n & (n - 1)) == 0;
+	}
+
+	/**
+	 * @return k such that small * 2^k == large, for powers of two small <= large
+	 */
+	private static int shiftBetween(long small, long large) {
+		return Long.numberOfTrailingZeros(large) - Long.numberOfTrailingZeros(small);
+	}
+
+	/**
+	 * Greatest common divisor of two non-negative longs, not both 0
+	 */
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
 	}
 
 }
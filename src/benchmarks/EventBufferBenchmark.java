@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.EventBuffer;
+import player.HeadLexer;
+import player.Lexer;
+import player.MusicVisitor;
+import player.Parser;
+import player.Song;
+
+/**
+ * Compares the rendered notes of the sample files, scaled up by repeating
+ * their bodies, held as a List of AugmentedMIDI from MusicVisitor and in an
+ * EventBuffer: the heap they keep per note, the time to render them and the
+ * time to sort them by start tick.
+ *
+ * Usage: EventBufferBenchmark [repetitions of each body]
+ */
+public class EventBufferBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/piece2.abc" };
+
+    private static final Comparator<AugmentedMIDI> BY_START = new Comparator<AugmentedMIDI>() {
+        @Override
+        public int compare(AugmentedMIDI first, AugmentedMIDI second) {
+            return Integer.compare(first.getStart(), second.getStart());
+        }
+    };
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        List<Song> songs = new ArrayList<Song>();
+        for (String sample : SAMPLES) {
+            CharSequence file = AbcFileReader.read(sample);
+            int headerEnd = HeadLexer.findHeaderEnd(file);
+            StringBuilder tune = new StringBuilder(file.subSequence(0, headerEnd));
+            CharSequence body = file.subSequence(headerEnd, file.length());
+            for (int i = 0; i < repetitions; i++)
+                tune.append(body).append('\n');
+            songs.add(new Parser(new Lexer(tune)).parseTicks(true));
+        }
+
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+        for (int round = 0; round < 5; round++) {
+            boolean print = round == 4; // times are the best of all rounds
+            long notes = 0;
+            List<List<AugmentedMIDI>> lists = new ArrayList<List<AugmentedMIDI>>();
+            Measure.settle();
+            long before = usedHeap();
+            long start = System.nanoTime();
+            for (Song song : songs) {
+                List<AugmentedMIDI> list = MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote());
+                notes += list.size();
+                lists.add(list);
+            }
+            long listRender = System.nanoTime() - start;
+            Measure.settle();
+            long listHeap = usedHeap() - before;
+            start = System.nanoTime();
+            for (List<AugmentedMIDI> list : lists)
+                Collections.sort(list, BY_START);
+            long listSort = System.nanoTime() - start;
+            lists = null;
+
+            List<EventBuffer> buffers = new ArrayList<EventBuffer>();
+            Measure.settle();
+            before = usedHeap();
+            start = System.nanoTime();
+            for (Song song : songs)
+                buffers.add(EventBuffer.render(song, 0, song.getTicksForNote()));
+            long bufferRender = System.nanoTime() - start;
+            Measure.settle();
+            long bufferHeap = usedHeap() - before;
+            start = System.nanoTime();
+            for (EventBuffer buffer : buffers)
+                buffer.sortByStart();
+            long bufferSort = System.nanoTime() - start;
+            best[0] = Math.min(best[0], listRender);
+            best[1] = Math.min(best[1], listSort);
+            best[2] = Math.min(best[2], bufferRender);
+            best[3] = Math.min(best[3], bufferSort);
+
+            if (print) {
+                System.out.println(notes + " notes");
+                System.out.println(String.format("%-20s %12s %12s %12s", "", "bytes/note",
+                        "render", "sort"));
+                System.out.println(String.format("%-20s %12.1f %12s %12s", "List<AugmentedMIDI>",
+                        listHeap / (double) notes, Measure.ms(best[0]), Measure.ms(best[1])));
+                System.out.println(String.format("%-20s %12.1f %12s %12s", "EventBuffer",
+                        bufferHeap / (double) notes, Measure.ms(best[2]), Measure.ms(best[3])));
+            }
+            if (buffers.isEmpty())
+                throw new RuntimeException("nothing rendered");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
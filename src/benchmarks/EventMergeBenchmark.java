@@ -0,0 +1,99 @@
+package benchmarks;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import player.AugmentedMIDI;
+import player.Lexer;
+import player.MusicVisitor;
+import player.NoteEvent;
+import player.NoteEventMerger;
+import player.Parser;
+import player.Song;
+
+/**
+ * Compares filling a MIDI Track, as SequencePlayer does, from the notes of
+ * MusicVisitor, which come voice by voice, and from the time-ordered events
+ * of a NoteEventMerger, for songs of 1 to 8 voices. Track.add() looks for
+ * the place of an event from the end of the track, so events that come in
+ * order are appended.
+ *
+ * Usage: EventMergeBenchmark [bars per voice]
+ */
+public class EventMergeBenchmark {
+
+    private static final int[] VOICES = { 1, 2, 4, 8 };
+    private static final String BAR = "C D E F G A B c|";
+
+    public static void main(String[] args) throws InvalidMidiDataException {
+        int bars = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        System.out.println(bars + " bars per voice");
+        System.out.println(String.format("%8s %14s %14s", "voices", "notes", "merged"));
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            for (int voices : VOICES) {
+                Song song = new Parser(new Lexer(tune(voices, bars))).parseTicks(true);
+                String notes = Measure.ms(fromNotes(song));
+                String merged = Measure.ms(fromEvents(song));
+                if (round == 1)
+                    System.out.println(String.format("%8d %14s %14s", voices, notes, merged));
+            }
+        }
+    }
+
+    private static String tune(int voices, int bars) {
+        StringBuilder tune = new StringBuilder("X:1\nT:Merge\n");
+        for (int voice = 0; voice < voices; voice++)
+            tune.append("V:").append(voice).append('\n');
+        tune.append("K:C\n");
+        for (int voice = 0; voice < voices; voice++) {
+            tune.append("V:").append(voice).append('\n');
+            for (int bar = 0; bar < bars; bar++)
+                tune.append(BAR);
+            tune.append('\n');
+        }
+        return tune.toString();
+    }
+
+    /**
+     * @return nanoseconds to fill a track with addNote()'s two events per note
+     */
+    private static long fromNotes(Song song) throws InvalidMidiDataException {
+        long start = System.nanoTime();
+        Track track = new Sequence(Sequence.PPQ, song.getTicksForNote() / 4).createTrack();
+        for (AugmentedMIDI note : MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote())) {
+            add(track, ShortMessage.NOTE_ON, note.getPitch(), note.getStart());
+            add(track, ShortMessage.NOTE_OFF, note.getPitch(), note.getStart() + note.getDuration());
+        }
+        return done(start, track);
+    }
+
+    /**
+     * @return nanoseconds to fill a track with the merged events
+     */
+    private static long fromEvents(Song song) throws InvalidMidiDataException {
+        long start = System.nanoTime();
+        Track track = new Sequence(Sequence.PPQ, song.getTicksForNote() / 4).createTrack();
+        NoteEventMerger events = new NoteEventMerger(song, 0, song.getTicksForNote());
+        while (events.hasNext()) {
+            NoteEvent event = events.next();
+            add(track, event.getCommand(), event.getPitch(), event.getTick());
+        }
+        return done(start, track);
+    }
+
+    private static void add(Track track, int command, int pitch, long tick)
+            throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(command, 0, pitch, 100), tick));
+    }
+
+    private static long done(long start, Track track) {
+        long elapsed = System.nanoTime() - start;
+        if (track.size() < 2)
+            throw new RuntimeException("empty track");
+        return elapsed;
+    }
+}
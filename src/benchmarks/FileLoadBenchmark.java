@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import player.AbcFileReader;
+import player.Main;
+
+/**
+ * Compares the line-by-line StringBuffer loader that Main used to have with
+ * the memory-mapped AbcFileReader on a synthetic songbook built from the
+ * sample files.
+ * 
+ * Usage: FileLoadBenchmark [megabytes]
+ */
+public class FileLoadBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc" };
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        File songbook = buildSongbook(megabytes);
+        System.out.println("Songbook: " + Measure.mb(songbook.length()));
+
+        // warm up both paths
+        legacyRead(songbook.getPath());
+        AbcFileReader.read(songbook.getPath());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            report("readLine + StringBuffer", songbook, true);
+            report("AbcFileReader (mapped)", songbook, false);
+        }
+        songbook.delete();
+    }
+
+    /**
+     * Loads the songbook once and prints time, allocation and peak heap
+     */
+    private static void report(String name, File songbook, boolean legacy) {
+        Measure.settle();
+        Measure.resetPeakHeap();
+        long baseline = Measure.peakHeap();
+        long allocated = Measure.allocatedBytes();
+        long start = System.nanoTime();
+
+        CharSequence content = legacy ? legacyRead(songbook.getPath())
+                : AbcFileReader.read(songbook.getPath());
+
+        long elapsed = System.nanoTime() - start;
+        allocated = Measure.allocatedBytes() - allocated;
+        long peak = Measure.peakHeap() - baseline;
+        System.out.println(String.format(
+                "%-24s %10s  allocated %10s  peak heap +%10s  (%d chars)",
+                name, Measure.ms(elapsed), Measure.mb(allocated),
+                Measure.mb(peak), content.length()));
+    }
+
+    /**
+     * The loader Main.readFileIntoString used before AbcFileReader
+     */
+    private static String legacyRead(String filePath) {
+        String readLine = null;
+        StringBuffer fileString = new StringBuffer();
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(
+                    new File(filePath)));
+            while ((readLine = reader.readLine()) != null)
+                fileString.append(readLine + "\n");
+            reader.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return fileString.toString();
+    }
+
+    /**
+     * Concatenates the sample tunes until the file reaches the given size
+     */
+    private static File buildSongbook(int megabytes) throws IOException {
+        File file = File.createTempFile("songbook", ".abc");
+        file.deleteOnExit();
+        long target = megabytes * 1024L * 1024L;
+        long written = 0;
+        Writer out = new FileWriter(file);
+        while (written < target) {
+            for (String sample : SAMPLES) {
+                String tune = Main.readFileIntoString(sample);
+                out.write(tune);
+                out.write('\n');
+                written += tune.length() + 1;
+            }
+        }
+        out.close();
+        return file;
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import player.BodyLexer;
+import player.BodyToken;
+import player.Lexer;
+import player.Main;
+import player.Parser;
+
+/**
+ * Times BodyLexer.goBack on invention.abc scaled up, with every bar line of
+ * the first voice turned into a repeat. The cost of a rewind should not grow
+ * with the length of the tune.
+ */
+public class GoBackBenchmark {
+
+    public static void main(String[] args) {
+        String invention = Main.readFileIntoString("sample_abc/invention.abc");
+        int bodyStart = invention.indexOf("K:C\n") + 4;
+        String header = invention.substring(0, bodyStart);
+        String body = repeatUpperVoice(invention.substring(bodyStart));
+
+        for (int scale = 1; scale <= 1000; scale *= 10) {
+            StringBuilder tuneBody = new StringBuilder(body.length() * scale);
+            for (int i = 0; i < scale; i++)
+                tuneBody.append(body);
+
+            long rewinds = 0;
+            long rewindTime = 0;
+            BodyLexer lexer = new BodyLexer(tuneBody);
+            BodyToken token;
+            while ((token = lexer.getNextBodyToken()).getBodyTokenType() != BodyToken.Type.EOF) {
+                if (token.getBodyTokenType() == BodyToken.Type.REPEAT_END) {
+                    lexer.skipLastToken();
+                    long start = System.nanoTime();
+                    lexer.goBack();
+                    rewindTime += System.nanoTime() - start;
+                    rewinds++;
+                }
+            }
+
+            long start = System.nanoTime();
+            new Parser(new Lexer(header + tuneBody)).parse();
+            long parseTime = System.nanoTime() - start;
+
+            System.out.println(String.format(
+                    "x%-5d %8d rewinds  %7.1f ns/rewind  parse %10s", scale,
+                    rewinds, rewindTime / (double) rewinds,
+                    Measure.ms(parseTime)));
+        }
+    }
+
+    /**
+     * Ends every line of the first voice with a repeat sign
+     */
+    private static String repeatUpperVoice(String body) {
+        StringBuilder repeated = new StringBuilder();
+        boolean upper = false;
+        for (String line : body.split("\n")) {
+            if (line.startsWith("V:"))
+                upper = line.trim().equals("V:1");
+            else if (upper && line.endsWith("|"))
+                line = line.substring(0, line.length() - 1) + ":|";
+            repeated.append(line).append('\n');
+        }
+        return repeated.toString();
+    }
+}
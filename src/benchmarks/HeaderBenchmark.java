@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import player.HeadLexer;
+import player.Lexer;
+import player.Main;
+import player.Parser;
+import player.Song;
+import player.Songbook;
+
+/**
+ * Reads the title, composer and key of every tune in a synthetic songbook:
+ * through a Lexer, which also sets up the body lexer; through the header map
+ * that Song used to be built from; and with the header-only Parser.
+ * 
+ * Usage: HeaderBenchmark [tunes]
+ */
+public class HeaderBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/piece2.abc",
+            "sample_abc/scale.abc" };
+
+    public static void main(String[] args) {
+        int tunes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < tunes; i++)
+            content.append(Main.readFileIntoString(SAMPLES[i % SAMPLES.length]))
+                    .append('\n');
+        // a CharBuffer, as Songbook.read gives, so tunes are not copied
+        Songbook songbook = new Songbook(CharBuffer.wrap(content));
+        System.out.println(songbook.size() + " tunes, "
+                + Measure.mb(content.length() * 2L) + " of chars");
+
+        System.out.println(String.format("%-16s %10s %14s", "header via",
+                "best time", "bytes/tune"));
+        String[] names = { "Lexer", "header map", "parseHeader" };
+        long[] best = new long[names.length];
+        long[] bytes = new long[names.length];
+        Arrays.fill(best, Long.MAX_VALUE);
+        for (int round = 0; round < 8; round++) {
+            for (int way = 0; way < names.length; way++) {
+                Measure.settle();
+                long allocated = Measure.allocatedBytes();
+                long start = System.nanoTime();
+                run(songbook, way);
+                best[way] = Math.min(best[way], System.nanoTime() - start);
+                bytes[way] = Measure.allocatedBytes() - allocated;
+            }
+        }
+        for (int way = 0; way < names.length; way++)
+            System.out.println(String.format("%-16s %10s %14d", names[way],
+                    Measure.ms(best[way]), bytes[way] / songbook.size()));
+    }
+
+    /**
+     * Reads the headers of every tune in one of the ways
+     */
+    private static void run(Songbook songbook, int way) {
+        long check = 0;
+        for (int i = 0; i < songbook.size(); i++) {
+            CharSequence tune = songbook.getTune(i);
+            Song song;
+            if (way == 0) {
+                song = new Parser(new Lexer(tune)).parseFileHeader();
+            } else if (way == 1) {
+                int end = HeadLexer.findHeaderEnd(tune);
+                song = new Song(new HeadLexer(tune.subSequence(0, end)
+                        .toString()).getHeaderMap());
+            } else {
+                song = Parser.parseHeader(tune);
+            }
+            check += song.getSongTitle().length()
+                    + song.getSongComposer().length()
+                    + song.getSongKey().length();
+        }
+        if (check == 0)
+            throw new RuntimeException("no header read");
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.util.List;
+
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.HeadLexer;
+import player.Lexer;
+import player.MusicVisitor;
+import player.Parser;
+import player.Song;
+
+/**
+ * Times reading the first 8 bars of a long piece: by rendering the whole
+ * piece with MusicVisitor and keeping the notes that start in those bars,
+ * and by reading Song.events() up to the end of the 8th bar. The piece is
+ * invention.abc with its body repeated.
+ *
+ * Usage: IncipitBenchmark [repetitions of the body]
+ */
+public class IncipitBenchmark {
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        CharSequence file = AbcFileReader.read("sample_abc/invention.abc");
+        int headerEnd = HeadLexer.findHeaderEnd(file);
+        StringBuilder tune = new StringBuilder(file.subSequence(0, headerEnd));
+        CharSequence body = file.subSequence(headerEnd, file.length());
+        for (int i = 0; i < repetitions; i++)
+            tune.append(body).append('\n');
+        Song song = new Parser(new Lexer(tune)).parseTicks(true);
+        int numTicks = song.getTicksForNote();
+        long end = song.getTicksForBars(8, numTicks);
+
+        System.out.println(String.format("%-14s %10s %12s %8s", "first 8 bars",
+                "time", "allocated", "notes"));
+        for (int round = 0; round < 5; round++) {
+            boolean print = round == 4; // the first rounds warm up
+            long bytes = Measure.allocatedBytes();
+            long start = System.nanoTime();
+            List<AugmentedMIDI> notes = MusicVisitor.getMIDINotes(song, 0, numTicks);
+            long count = 0;
+            for (AugmentedMIDI note : notes)
+                if (note.getStart() < end)
+                    count++;
+            report("whole render", start, bytes, count, print);
+
+            bytes = Measure.allocatedBytes();
+            start = System.nanoTime();
+            count = song.events(numTicks, end).count() / 2;
+            report("events", start, bytes, count, print);
+        }
+    }
+
+    private static void report(String name, long start, long bytes, long notes,
+            boolean print) {
+        long elapsed = System.nanoTime() - start;
+        bytes = Measure.allocatedBytes() - bytes;
+        if (notes == 0)
+            throw new RuntimeException("no notes");
+        if (print)
+            System.out.println(String.format("%-14s %10s %12s %8d", name,
+                    Measure.ms(elapsed), Measure.mb(bytes), notes));
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import player.IncrementalParser;
+import player.Lexer;
+import player.Parser;
+
+/**
+ * Compares parsing a whole piece again with IncrementalParser.edit, when one
+ * note in the middle of the piece is changed, for pieces of increasing
+ * length.
+ * 
+ * Usage: IncrementalEditBenchmark [max bars]
+ */
+public class IncrementalEditBenchmark {
+
+    private static final int EDITS = 200;
+
+    public static void main(String[] args) {
+        int maxBars = args.length > 0 ? Integer.parseInt(args[0]) : 16000;
+
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            String abc = piece(1000);
+            new Parser(new Lexer(abc)).parse();
+            edit(new IncrementalParser(abc), EDITS);
+        }
+
+        System.out.println(String.format("%8s %14s %14s %12s", "bars",
+                "full parse", "edit", "incremental"));
+        for (int bars = 250; bars <= maxBars; bars *= 4) {
+            String abc = piece(bars);
+            long start = System.nanoTime();
+            new Parser(new Lexer(abc)).parse();
+            long full = System.nanoTime() - start;
+
+            IncrementalParser parser = new IncrementalParser(abc);
+            start = System.nanoTime();
+            int incremental = edit(parser, EDITS);
+            long edit = (System.nanoTime() - start) / EDITS;
+
+            System.out.println(String.format("%8d %14s %14s %9d/%d", bars,
+                    Measure.ms(full), Measure.ms(edit), incremental, EDITS));
+        }
+    }
+
+    /**
+     * Changes the note at the middle of the piece back and forth
+     * 
+     * @return the number of edits applied incrementally
+     */
+    private static int edit(IncrementalParser parser, int edits) {
+        int note = parser.getText().indexOf("G2", parser.getText().length() / 2);
+        int incremental = 0;
+        for (int i = 0; i < edits; i++) {
+            parser.edit(note, note + 1, i % 2 == 0 ? "A" : "G");
+            if (parser.isLastEditIncremental())
+                incremental++;
+        }
+        parser.getSong();
+        return incremental;
+    }
+
+    /**
+     * @return a piece of two voices with the given number of bars each
+     */
+    private static String piece(int bars) {
+        StringBuilder abc = new StringBuilder(
+                "X:1\nT:Benchmark\nL:1/8\nQ:240\nV:1\nV:2\nK:G\n");
+        for (int bar = 0; bar < bars; bar += 4) {
+            abc.append("V:1\n|: G2 B/2c/2d e2 | [G2B2d2] :| f^f g2 | a3/2 b/2 c'2 |]\n");
+            abc.append("V:2\n|: G,4 | D,4 :| C,2 D,2 | (3G,A,B, C2 |]\n");
+        }
+        return abc.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import player.BodyLexer;
+import player.BodyToken;
+import player.BodyTokenizer;
+import player.DfaBodyTokenizer;
+import player.Main;
+import player.RegexBodyTokenizer;
+
+/**
+ * Measures BodyLexer throughput with the regex and the table-driven
+ * tokenizers on the sample tunes repeated to a large body.
+ * 
+ * Usage: LexerBenchmark [copies]
+ */
+public class LexerBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc" };
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            for (String sample : SAMPLES)
+                corpus.append(Main.readFileIntoString(sample));
+        }
+        System.out.println("Corpus: " + Measure.mb(corpus.length() * 2L)
+                + " of chars");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            report("regex", corpus, new RegexBodyTokenizer());
+            report("dfa", corpus, new DfaBodyTokenizer());
+        }
+    }
+
+    /**
+     * Lexes the whole corpus once and prints the throughput
+     */
+    private static void report(String name, CharSequence corpus,
+            BodyTokenizer tokenizer) {
+        BodyLexer lexer = new BodyLexer(corpus, tokenizer);
+        long start = System.nanoTime();
+        long tokens = 0;
+        while (lexer.getNextBodyToken().getBodyTokenType() != BodyToken.Type.EOF)
+            tokens++;
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format(
+                "%-6s %10s  %9d tokens  %7.2f Mtokens/s", name,
+                Measure.ms(elapsed), tokens, tokens * 1e3 / elapsed));
+    }
+}
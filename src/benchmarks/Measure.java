@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Small measuring helpers shared by the benchmarks in this package. They are
+ * plain main() programs so they can be run from the IDE without extra
+ * libraries.
+ */
+public class Measure {
+
+    /**
+     * Requests a full collection and waits briefly so that measurements start
+     * from a settled heap.
+     */
+    public static void settle() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Resets the peak usage of every heap memory pool.
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * @return the sum of the peak usage of every heap memory pool since the
+     *         last reset, in bytes
+     */
+    public static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, or -1 if the JVM
+     *         does not report per-thread allocation
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory
+                .getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * Formats a byte count in mebibytes
+     * 
+     * @param bytes
+     *            number of bytes
+     * @return String such as "12.3 MB"
+     */
+    public static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Formats a nanosecond duration in milliseconds
+     * 
+     * @param nanos
+     *            duration in nanoseconds
+     * @return String such as "12.3 ms"
+     */
+    public static String ms(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import player.Modifiers;
+import sound.Pitch;
+
+/**
+ * Times Modifiers lookups the way the Parser makes them. "lookup" looks up
+ * ready-made pitches of three octaves in the modifiers of a key with seven
+ * sharps and a few accidentals in other octaves. "note" also builds each
+ * pitch the way a note is parsed: a letter, an octave up for lower case
+ * letters and an octave modifier.
+ *
+ * Also counts the distinct hash codes of those pitches, since every pitch
+ * of a HashMap bucket is compared on lookup.
+ *
+ * Usage: ModifiersBenchmark [operations]
+ */
+public class ModifiersBenchmark {
+
+    private static final String NOTES = "CDEFGABcdefgab";
+    private static final int[] OCTAVES = { 0, 0, 1, -1 }; // octave modifiers
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+        Modifiers modifiers = Modifiers.getStartMods("C#");
+        modifiers.applyMods(Pitch.valueOf('C').octaveTranspose(1), "=");
+        modifiers.applyMods(Pitch.valueOf('E').octaveTranspose(-1), "_");
+        modifiers.applyMods(Pitch.valueOf('G').octaveTranspose(2), "^^");
+
+        Pitch[] pitches = new Pitch[NOTES.length() * OCTAVES.length];
+        for (int i = 0; i < pitches.length; i++)
+            pitches[i] = parsePitch(i);
+
+        Set<Integer> hashes = new HashSet<Integer>();
+        for (char letter = 'A'; letter <= 'G'; letter++)
+            for (int octave = -1; octave <= 1; octave++)
+                for (int accidental = -2; accidental <= 2; accidental++)
+                    hashes.add(Pitch.valueOf(letter).octaveTranspose(octave)
+                            .accidentalTranspose(accidental).hashCode());
+        System.out.println("distinct hash codes of 105 pitches: "
+                + hashes.size());
+
+        System.out.println(String.format("%-12s %10s %10s", "operation",
+                "ns/op", "bytes/op"));
+        for (int round = 0; round < 5; round++) {
+            boolean print = round == 4; // the first rounds warm up
+            report("lookup", lookup(modifiers, pitches, operations),
+                    operations, print);
+            report("note", note(modifiers, operations), operations, print);
+        }
+    }
+
+    /**
+     * Builds a pitch as the Parser does for a note letter and octave modifier
+     */
+    private static Pitch parsePitch(int i) {
+        char value = NOTES.charAt(i % NOTES.length());
+        Pitch pitch = Pitch.valueOf(Character.toUpperCase(value));
+        if (Character.isLowerCase(value))
+            pitch = pitch.octaveTranspose(1);
+        int octave = OCTAVES[(i / NOTES.length()) % OCTAVES.length];
+        if (octave != 0)
+            pitch = pitch.octaveTranspose(octave);
+        return pitch;
+    }
+
+    private static void report(String name, long[] result, int operations,
+            boolean print) {
+        if (print)
+            System.out.println(String.format("%-12s %10.1f %10.1f", name,
+                    result[0] / (double) operations, result[1]
+                            / (double) operations));
+    }
+
+    /**
+     * @return {nanoseconds, bytes allocated}
+     */
+    private static long[] lookup(Modifiers modifiers, Pitch[] pitches,
+            int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < operations; i++)
+            check += modifiers.applyModsTo(pitches[i % pitches.length])
+                    .toMidiNote();
+        return done(start, bytes, check);
+    }
+
+    private static long[] note(Modifiers modifiers, int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < operations; i++)
+            check += modifiers.applyModsTo(parsePitch(i)).toMidiNote();
+        return done(start, bytes, check);
+    }
+
+    private static long[] done(long start, long bytes, long check) {
+        long elapsed = System.nanoTime() - start;
+        bytes = Measure.allocatedBytes() - bytes;
+        if (check == 0)
+            throw new RuntimeException("nothing computed");
+        return new long[] { elapsed, bytes };
+    }
+}
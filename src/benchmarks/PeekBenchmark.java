@@ -0,0 +1,117 @@
+package benchmarks;
+
+import player.BodyToken;
+import player.Chord;
+import player.BodyTokenizer;
+import player.Lexer;
+import player.Main;
+import player.Parser;
+import player.RegexBodyTokenizer;
+import player.Song;
+import player.Voice;
+
+/**
+ * Counts how often the regex is run per parsed note. Every peekToken and
+ * getNextToken call used to run one regex find, so the number of lexer
+ * requests is what the parser cost before the lookahead buffer; the number
+ * of finds is what it costs now.
+ * 
+ * Usage: PeekBenchmark [file...]
+ */
+public class PeekBenchmark {
+
+    public static void main(String[] args) {
+        if (args.length == 0)
+            args = new String[] { "sample_abc/fur_elise.abc",
+                    "sample_abc/invention.abc",
+                    "sample_abc/little_night_music.abc",
+                    "sample_abc/prelude.abc", "sample_abc/paddy.abc" };
+
+        System.out.println(String.format("%-36s %6s %14s %14s", "file",
+                "notes", "before/note", "after/note"));
+        for (String file : args) {
+            CountingTokenizer tokenizer = new CountingTokenizer(
+                    new RegexBodyTokenizer());
+            CountingLexer lexer = new CountingLexer(
+                    Main.readFileIntoString(file), tokenizer);
+            Song song = new Parser(lexer).parse();
+            int notes = countNotes(song);
+            System.out.println(String.format("%-36s %6d %14.2f %14.2f", file,
+                    notes, lexer.requests / (double) notes, tokenizer.finds
+                            / (double) notes));
+        }
+    }
+
+    /**
+     * @return number of notes and rests in every voice of the song
+     */
+    private static int countNotes(Song song) {
+        int notes = 0;
+        for (Voice voice : song.getVoiceMap().values()) {
+            for (Chord chord : voice.getAllChords())
+                notes += chord.getAllNotes().size();
+        }
+        return notes;
+    }
+
+    /**
+     * Lexer that counts the token requests made by the parser
+     */
+    private static class CountingLexer extends Lexer {
+        private long requests = 0;
+
+        public CountingLexer(CharSequence file, BodyTokenizer tokenizer) {
+            super(file, tokenizer);
+        }
+
+        @Override
+        public BodyToken.Type nextTokenType() {
+            requests++;
+            return super.nextTokenType();
+        }
+
+        @Override
+        public BodyToken.Type peekTokenType() {
+            requests++;
+            return super.peekTokenType();
+        }
+    }
+
+    /**
+     * BodyTokenizer decorator that counts calls to find
+     */
+    private static class CountingTokenizer implements BodyTokenizer {
+        private final BodyTokenizer tokenizer;
+        private long finds = 0;
+
+        public CountingTokenizer(BodyTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void reset(CharSequence body) {
+            tokenizer.reset(body);
+        }
+
+        @Override
+        public boolean find(int from) {
+            finds++;
+            return tokenizer.find(from);
+        }
+
+        @Override
+        public int start() {
+            return tokenizer.start();
+        }
+
+        @Override
+        public int end() {
+            return tokenizer.end();
+        }
+
+        @Override
+        public BodyToken.Type type() {
+            return tokenizer.type();
+        }
+    }
+}
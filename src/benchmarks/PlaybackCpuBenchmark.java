@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiUnavailableException;
+
+import sound.SequencePlayer;
+
+/**
+ * Measures the CPU time the process uses while a track plays: when the
+ * caller spins on isPlaying() with Thread.yield(), as play() used to do, and
+ * when it waits on the future of playAsync(), as play() does now.
+ *
+ * Usage: PlaybackCpuBenchmark [seconds of music]
+ */
+public class PlaybackCpuBenchmark {
+
+    public static void main(String[] args) throws MidiUnavailableException,
+            InvalidMidiDataException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+        System.out.println(String.format("%-12s %10s %10s", "waiting", "wall", "cpu"));
+        for (boolean spin : new boolean[] { true, false }) {
+            // 4 notes per second
+            SequencePlayer player = new SequencePlayer(240, 1);
+            for (int tick = 0; tick < 4 * seconds; tick++)
+                player.addNote(60 + tick % 12, tick, 1);
+
+            long cpu = cpuTime();
+            long start = System.nanoTime();
+            CompletableFuture<Void> done = player.playAsync();
+            if (spin) {
+                while (player.isPlaying())
+                    Thread.yield();
+            } else
+                done.join();
+            long wall = System.nanoTime() - start;
+            cpu = cpuTime() - cpu;
+            System.out.println(String.format("%-12s %10s %10s", spin ? "yield loop" : "future",
+                    Measure.ms(wall), Measure.ms(cpu)));
+        }
+    }
+
+    /**
+     * @return the CPU time used by the process so far, in nanoseconds
+     */
+    private static long cpuTime() {
+        java.lang.management.OperatingSystemMXBean system = ManagementFactory
+                .getOperatingSystemMXBean();
+        if (system instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) system).getProcessCpuTime();
+        return -1;
+    }
+}
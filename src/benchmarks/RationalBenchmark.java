@@ -0,0 +1,102 @@
+package benchmarks;
+
+import auxiliary.MultiplicativeFactor;
+
+/**
+ * Times sum, product and compareTo of MultiplicativeFactor on the lengths
+ * found in abc files: mostly power-of-two fractions of a whole note, with
+ * some triplet lengths. sum accumulates a voice length the way
+ * Voice.addChord does, product scales note lengths by the default length the
+ * way the Parser does.
+ * 
+ * Usage: RationalBenchmark [operations]
+ */
+public class RationalBenchmark {
+
+    private static final String[] LENGTHS = { "1/8", "1/8", "1/4", "1/16",
+            "3/16", "1/8", "1/2", "3/8", "1/12", "1/12", "1/12", "1/16", "1",
+            "1/32", "3/4", "1/6" };
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        MultiplicativeFactor[] lengths = new MultiplicativeFactor[LENGTHS.length];
+        for (int i = 0; i < lengths.length; i++)
+            lengths[i] = MultiplicativeFactor.multFactorFromString(LENGTHS[i]);
+
+        System.out.println(String.format("%-12s %10s %10s", "operation",
+                "ns/op", "bytes/op"));
+        for (int round = 0; round < 5; round++) {
+            boolean print = round == 4; // the first rounds warm up
+            report("sum", sum(lengths, operations), operations, print);
+            report("product", product(lengths, operations), operations, print);
+            report("compareTo", compare(lengths, operations), operations, print);
+            report("fromString", fromString(operations), operations, print);
+        }
+    }
+
+    private static void report(String name, long[] result, int operations,
+            boolean print) {
+        if (print)
+            System.out.println(String.format("%-12s %10.1f %10.1f", name,
+                    result[0] / (double) operations, result[1]
+                            / (double) operations));
+    }
+
+    /**
+     * @return {nanoseconds, bytes allocated}
+     */
+    private static long[] sum(MultiplicativeFactor[] lengths, int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        MultiplicativeFactor voice = new MultiplicativeFactor(0, 1);
+        long check = 0;
+        for (int i = 0; i < operations; i++) {
+            if (i % 1000 == 0) { // a new voice, so that lengths stay small
+                check += voice.getDenom();
+                voice = new MultiplicativeFactor(0, 1);
+            }
+            voice = voice.sum(lengths[i % lengths.length]);
+        }
+        return done(start, bytes, check + voice.getNum());
+    }
+
+    private static long[] product(MultiplicativeFactor[] lengths,
+            int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < operations; i++)
+            check += lengths[i % lengths.length].product(
+                    lengths[(i >> 4) % lengths.length]).getDenom();
+        return done(start, bytes, check);
+    }
+
+    private static long[] compare(MultiplicativeFactor[] lengths,
+            int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < operations; i++)
+            check += lengths[i % lengths.length].compareTo(
+                    lengths[(i >> 4) % lengths.length]);
+        return done(start, bytes, check + operations);
+    }
+
+    private static long[] fromString(int operations) {
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < operations; i++)
+            check += MultiplicativeFactor.multFactorFromString(
+                    LENGTHS[i % LENGTHS.length]).getNum();
+        return done(start, bytes, check);
+    }
+
+    private static long[] done(long start, long bytes, long check) {
+        long elapsed = System.nanoTime() - start;
+        bytes = Measure.allocatedBytes() - bytes;
+        if (check == 0)
+            throw new RuntimeException("nothing computed");
+        return new long[] { elapsed, bytes };
+    }
+}
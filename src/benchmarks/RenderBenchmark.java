@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.HeadLexer;
+import player.Lexer;
+import player.MusicVisitor;
+import player.NoteSink;
+import player.NoteSinkVisitor;
+import player.Parser;
+import player.Song;
+
+/**
+ * Compares rendering songs with MusicVisitor, which returns a list of
+ * AugmentedMIDI, and with NoteSinkVisitor into a sink that sums the notes,
+ * as a SequencePlayer or a MIDI writer would consume them. Songs are parsed
+ * with rational lengths and into NoteColumns; the sample files are scaled up
+ * by repeating their bodies.
+ *
+ * Usage: RenderBenchmark [repetitions of each body]
+ */
+public class RenderBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/piece2.abc" };
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<Song> rational = new ArrayList<Song>();
+        List<Song> columns = new ArrayList<Song>();
+        for (String sample : SAMPLES) {
+            CharSequence file = AbcFileReader.read(sample);
+            int headerEnd = HeadLexer.findHeaderEnd(file);
+            StringBuilder tune = new StringBuilder(file.subSequence(0, headerEnd));
+            CharSequence body = file.subSequence(headerEnd, file.length());
+            for (int i = 0; i < repetitions; i++)
+                tune.append(body).append('\n');
+            rational.add(new Parser(new Lexer(tune)).parse());
+            columns.add(new Parser(new Lexer(tune)).parseTicks(true));
+        }
+
+        long notes = 0;
+        for (Song song : rational)
+            notes += MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote()).size();
+        System.out.println(rational.size() + " tunes, " + notes + " notes");
+
+        System.out.println(String.format("%-20s %10s %12s", "rendering",
+                "ns/note", "bytes/note"));
+        for (int round = 0; round < 5; round++) {
+            boolean print = round == 4; // the first rounds warm up
+            report("list, rational", list(rational), notes, print);
+            report("sink, rational", sink(rational), notes, print);
+            report("list, columns", list(columns), notes, print);
+            report("sink, columns", sink(columns), notes, print);
+        }
+    }
+
+    private static void report(String name, long[] result, long notes,
+            boolean print) {
+        if (print)
+            System.out.println(String.format("%-20s %10.1f %12.1f", name,
+                    result[0] / (double) notes, result[1] / (double) notes));
+    }
+
+    /**
+     * @return {nanoseconds, bytes allocated}
+     */
+    private static long[] list(List<Song> songs) {
+        Measure.settle();
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long check = 0;
+        for (Song song : songs)
+            for (AugmentedMIDI note : MusicVisitor.getMIDINotes(song, 0,
+                    song.getTicksForNote()))
+                check += note.getPitch() + note.getStart() + note.getDuration();
+        return done(start, bytes, check);
+    }
+
+    private static long[] sink(List<Song> songs) {
+        Measure.settle();
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        SumSink sum = new SumSink();
+        for (Song song : songs)
+            NoteSinkVisitor.render(song, 0, song.getTicksForNote(), sum);
+        return done(start, bytes, sum.check);
+    }
+
+    private static long[] done(long start, long bytes, long check) {
+        long elapsed = System.nanoTime() - start;
+        bytes = Measure.allocatedBytes() - bytes;
+        if (check == 0)
+            throw new RuntimeException("nothing rendered");
+        return new long[] { elapsed, bytes };
+    }
+
+    private static class SumSink implements NoteSink {
+        long check = 0;
+
+        @Override
+        public void note(int pitch, long start, long duration) {
+            check += pitch + start + duration;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import player.Lexer;
+import player.Parser;
+
+/**
+ * Parses synthetic tunes made of more and more repeated sections with first
+ * and second endings. Parse time should grow linearly with the number of
+ * sections.
+ */
+public class RepeatScalingBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        // warm up
+        parse(tune(20000));
+
+        for (int sections = 2000; sections <= 64000; sections *= 2) {
+            CharSequence tune = tune(sections);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++)
+                best = Math.min(best, parse(tune));
+            System.out.println(String.format(
+                    "%6d sections %10s  %6.1f ns/section", sections,
+                    Measure.ms(best), best / (double) sections));
+        }
+    }
+
+    /**
+     * @return an abc tune with the given number of repeated sections
+     */
+    private static CharSequence tune(int sections) {
+        StringBuilder tune = new StringBuilder("X:1\nT:Repeats\nK:C\n");
+        for (int i = 0; i < sections; i++)
+            tune.append("|: C D |[1 E F :|[2 G A |\n");
+        return tune;
+    }
+
+    /**
+     * @return nanoseconds taken to lex and parse the tune
+     */
+    private static long parse(CharSequence tune) {
+        long start = System.nanoTime();
+        new Parser(new Lexer(tune)).parse();
+        return System.nanoTime() - start;
+    }
+}
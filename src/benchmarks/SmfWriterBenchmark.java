@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+
+import player.Lexer;
+import player.MidiExporter;
+import player.Parser;
+import player.SmfWriter;
+import player.Song;
+
+/**
+ * Writes a long song of 4 voices to a Standard MIDI File in memory, once
+ * through a javax.sound.midi Sequence written by MidiSystem.write and once
+ * with SmfWriter, and reports the time, the throughput in bytes of file per
+ * second and the bytes allocated per note. The bytes go to a stream that
+ * only counts them, so the disk is left out.
+ *
+ * Usage: SmfWriterBenchmark [bars per voice]
+ */
+public class SmfWriterBenchmark {
+
+    private static final int VOICES = 4;
+    private static final String BAR = "C D E F G A B c|"; // 8 notes
+
+    public static void main(String[] args) throws IOException, InvalidMidiDataException {
+        int bars = args.length > 0 ? Integer.parseInt(args[0]) : 31250;
+        Song song = new Parser(new Lexer(tune(bars))).parseTicks(true);
+        long notes = (long) VOICES * bars * 8;
+
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+        long[] allocated = { Long.MAX_VALUE, Long.MAX_VALUE };
+        long[] written = new long[2];
+        for (int round = 0; round < 5; round++) {
+            for (int way = 0; way < 2; way++) {
+                CountingStream out = new CountingStream();
+                Measure.settle();
+                long before = Measure.allocatedBytes();
+                long start = System.nanoTime();
+                if (way == 0)
+                    MidiSystem.write(MidiExporter.toSequence(song, MidiExporter.MAX_TICKS_PER_QUARTER),
+                            1, out);
+                else
+                    SmfWriter.write(song, MidiExporter.MAX_TICKS_PER_QUARTER, out);
+                best[way] = Math.min(best[way], System.nanoTime() - start);
+                allocated[way] = Math.min(allocated[way], Measure.allocatedBytes() - before);
+                written[way] = out.count;
+            }
+        }
+
+        System.out.println(notes + " notes");
+        System.out.println(String.format("%-28s %10s %10s %10s %12s", "", "bytes", "time",
+                "MB/s", "alloc/note"));
+        String[] names = { "Sequence + MidiSystem.write", "SmfWriter" };
+        for (int way = 0; way < 2; way++)
+            System.out.println(String.format("%-28s %10d %10s %10.1f %12.1f", names[way],
+                    written[way], Measure.ms(best[way]),
+                    written[way] / (1024.0 * 1024.0) / (best[way] / 1e9),
+                    allocated[way] / (double) notes));
+    }
+
+    /**
+     * @return a tune whose voices all play the same bars
+     */
+    private static String tune(int bars) {
+        StringBuilder tune = new StringBuilder("X:1\nT:Export\n");
+        for (int voice = 0; voice < VOICES; voice++)
+            tune.append("V:").append(voice).append('\n');
+        tune.append("K:C\n");
+        for (int voice = 0; voice < VOICES; voice++) {
+            tune.append("V:").append(voice).append('\n');
+            for (int bar = 0; bar < bars; bar++)
+                tune.append(BAR);
+            tune.append('\n');
+        }
+        return tune.toString();
+    }
+
+    /**
+     * A stream that drops its bytes and counts them
+     */
+    private static class CountingStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
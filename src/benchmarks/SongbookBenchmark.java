@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import player.Main;
+import player.Songbook;
+import player.SongbookEntry;
+
+/**
+ * Parses a synthetic songbook of many tunes, one tune after the other and
+ * then in parallel on pools of increasing size.
+ * 
+ * Usage: SongbookBenchmark [tunes]
+ */
+public class SongbookBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/piece2.abc",
+            "sample_abc/scale.abc" };
+
+    public static void main(String[] args) {
+        int tunes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < tunes; i++)
+            content.append(Main.readFileIntoString(SAMPLES[i % SAMPLES.length]))
+                    .append('\n');
+        Songbook songbook = new Songbook(content);
+        System.out.println(songbook.size() + " tunes, "
+                + Measure.mb(content.length() * 2L) + " of chars");
+
+        // warm up
+        sequential(songbook);
+        songbook.parseAll();
+
+        long start = System.nanoTime();
+        sequential(songbook);
+        System.out.println(String.format("%-12s %10s", "sequential",
+                Measure.ms(System.nanoTime() - start)));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            start = System.nanoTime();
+            List<SongbookEntry> entries = songbook.parseAll(pool);
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.println(String.format("%2d threads   %10s  %d entries",
+                    threads, Measure.ms(elapsed), entries.size()));
+        }
+    }
+
+    /**
+     * Parses the tunes one after the other, keeping the results like
+     * parseAll does
+     */
+    private static List<SongbookEntry> sequential(Songbook songbook) {
+        List<SongbookEntry> entries = new ArrayList<SongbookEntry>();
+        for (int i = 0; i < songbook.size(); i++)
+            entries.add(songbook.parse(i));
+        return entries;
+    }
+}
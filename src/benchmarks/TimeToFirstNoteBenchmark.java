@@ -0,0 +1,123 @@
+package benchmarks;
+
+import java.util.List;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+
+import player.AugmentedMIDI;
+import player.Lexer;
+import player.MusicVisitor;
+import player.Parser;
+import player.Song;
+import player.StreamingRenderer;
+import sound.NoteScheduler;
+
+/**
+ * Measures how long it takes before the first note can sound, for pieces of
+ * increasing length: after parsing and rendering the whole piece, as play()
+ * does, and while parsing with a StreamingRenderer, as playStreaming() does.
+ * Notes are sent to a Receiver that drops them.
+ * 
+ * Usage: TimeToFirstNoteBenchmark [max bars]
+ */
+public class TimeToFirstNoteBenchmark {
+
+    private static final int TICKS_PER_QUARTER = 960;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxBars = args.length > 0 ? Integer.parseInt(args[0]) : 64000;
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            wholePiece(piece(4000));
+            streaming(piece(4000));
+        }
+
+        System.out.println(String.format("%8s %14s %14s", "bars",
+                "whole piece", "streaming"));
+        for (int bars = 1000; bars <= maxBars; bars *= 4) {
+            String abc = piece(bars);
+            System.out.println(String.format("%8d %14s %14s", bars,
+                    Measure.ms(wholePiece(abc)), Measure.ms(streaming(abc))));
+        }
+    }
+
+    /**
+     * @return nanoseconds until the whole piece is parsed and turned into
+     *         notes
+     */
+    private static long wholePiece(String abc) {
+        long start = System.nanoTime();
+        Song song = new Parser(new Lexer(abc)).parse();
+        List<AugmentedMIDI> notes = MusicVisitor.getMIDINotes(song, 0,
+                song.getTicksForNote());
+        long elapsed = System.nanoTime() - start;
+        if (notes.isEmpty())
+            throw new RuntimeException("no notes");
+        return elapsed;
+    }
+
+    /**
+     * @return nanoseconds until the first note is sent by a NoteScheduler fed
+     *         by the Parser
+     */
+    private static long streaming(String abc) throws InterruptedException {
+        long start = System.nanoTime();
+        final Parser parser = new Parser(new Lexer(abc));
+        Song header = parser.parseFileHeader();
+        final NoteScheduler scheduler = new NoteScheduler(120, TICKS_PER_QUARTER,
+                4 * TICKS_PER_QUARTER, 4096, new NullReceiver());
+        final StreamingRenderer renderer = new StreamingRenderer(header, scheduler,
+                TICKS_PER_QUARTER);
+        parser.setChordListener(renderer);
+        scheduler.start();
+
+        // the parser blocks once it is far ahead of playback, so it runs on
+        // its own thread and is interrupted when the first note is out
+        Thread parsing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    parser.parse();
+                    renderer.flush();
+                    scheduler.finish();
+                } catch (RuntimeException e) {
+                    // interrupted while waiting for the scheduler
+                }
+            }
+        });
+        parsing.setDaemon(true);
+        parsing.start();
+
+        while (scheduler.getFirstNoteNanos() < 0)
+            Thread.sleep(0, 100000);
+        scheduler.stop();
+        parsing.interrupt();
+        parsing.join();
+        return scheduler.getFirstNoteNanos() - start;
+    }
+
+    /**
+     * @return a piece of two voices with the given number of bars each
+     */
+    private static String piece(int bars) {
+        StringBuilder abc = new StringBuilder(
+                "X:1\nT:Benchmark\nL:1/8\nQ:240\nV:1\nV:2\nK:G\n");
+        for (int bar = 0; bar < bars; bar += 4) {
+            abc.append("V:1\n|: G2 B/2c/2d e2 | [G2B2d2] :| f^f g2 | a3/2 b/2 c'2 |]\n");
+            abc.append("V:2\n|: G,4 | D,4 :| C,2 D,2 | (3G,A,B, C2 |]\n");
+        }
+        return abc.toString();
+    }
+
+    private static class NullReceiver implements Receiver {
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
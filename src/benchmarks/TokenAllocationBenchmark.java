@@ -0,0 +1,93 @@
+package benchmarks;
+
+import player.BodyLexer;
+import player.BodyToken;
+import player.Main;
+
+/**
+ * Measures the bytes allocated per token when walking a body with
+ * getNextBodyToken(), which builds a BodyToken per token, and with
+ * nextType(), which reads the primitive token table. The first nextType()
+ * walk includes scanning the body and growing the table; the second one
+ * walks a body that is already scanned.
+ * 
+ * Usage: TokenAllocationBenchmark [copies of each sample]
+ */
+public class TokenAllocationBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc" };
+
+    public static void main(String[] args) {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            for (String sample : SAMPLES) {
+                String file = Main.readFileIntoString(sample);
+                builder.append(file.substring(file.indexOf("\nK:") + 1));
+            }
+        }
+        String body = builder.toString();
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            walkTokens(new BodyLexer(body));
+            walkTypes(new BodyLexer(body));
+        }
+
+        System.out.println(String.format("%-28s %10s %12s %10s", "walk",
+                "tokens", "bytes/token", "time"));
+        System.out.println(body.length() + " chars");
+        BodyLexer lexer = new BodyLexer(body);
+        report("getNextBodyToken", lexer, true);
+        lexer = new BodyLexer(body);
+        report("nextType, scanning", lexer, false);
+        lexer = new BodyLexer(body);
+        lexer.peekType(Integer.MAX_VALUE); // scans the whole body
+        report("nextType, scanned", lexer, false);
+    }
+
+    private static void report(String name, BodyLexer lexer,
+            boolean bodyTokens) {
+        Measure.settle();
+        long bytes = Measure.allocatedBytes();
+        long start = System.nanoTime();
+        long tokens = bodyTokens ? walkTokens(lexer) : walkTypes(lexer);
+        long elapsed = System.nanoTime() - start;
+        bytes = Measure.allocatedBytes() - bytes;
+        System.out.println(String.format("%-28s %10d %12.2f %10s", name,
+                tokens, bytes / (double) tokens, Measure.ms(elapsed)));
+    }
+
+    /**
+     * Walks the body with getNextBodyToken, reading every token's text
+     */
+    private static long walkTokens(BodyLexer lexer) {
+        long tokens = 0;
+        long chars = 0;
+        BodyToken token;
+        while ((token = lexer.getNextBodyToken()).getBodyTokenType() != BodyToken.Type.EOF) {
+            chars += token.getBodyTokenText().charAt(0);
+            tokens++;
+        }
+        if (chars == 0)
+            throw new RuntimeException("no text read");
+        return tokens;
+    }
+
+    /**
+     * Walks the body with nextType, reading the first char of every token
+     */
+    private static long walkTypes(BodyLexer lexer) {
+        long tokens = 0;
+        long chars = 0;
+        while (lexer.nextType() != BodyToken.Type.EOF) {
+            chars += lexer.tokenChar(0);
+            tokens++;
+        }
+        if (chars == 0)
+            throw new RuntimeException("no text read");
+        return tokens;
+    }
+}
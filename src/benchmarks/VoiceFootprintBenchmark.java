@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import player.AbcFileReader;
+import player.Chord;
+import player.HeadLexer;
+import player.Lexer;
+import player.Parser;
+import player.Song;
+import player.Voice;
+
+/**
+ * Compares the heap kept by parsed songs when their voices hold Chord and
+ * Note objects and when they hold NoteColumns. The sample files are scaled
+ * up by repeating their bodies, and all of them are kept parsed at once.
+ *
+ * Usage: VoiceFootprintBenchmark [repetitions of each body]
+ */
+public class VoiceFootprintBenchmark {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/prelude.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/piece2.abc" };
+
+    private enum Storage {
+        RATIONAL, TICKS, COLUMNS
+    }
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        List<String> tunes = new ArrayList<String>();
+        for (String sample : SAMPLES) {
+            CharSequence file = AbcFileReader.read(sample);
+            int headerEnd = HeadLexer.findHeaderEnd(file);
+            StringBuilder tune = new StringBuilder(file.subSequence(0, headerEnd));
+            CharSequence body = file.subSequence(headerEnd, file.length());
+            for (int i = 0; i < repetitions; i++)
+                tune.append(body).append('\n');
+            tunes.add(tune.toString());
+        }
+
+        long notes = 0;
+        for (String tune : tunes)
+            notes += countNotes(new Parser(new Lexer(tune)).parse());
+        System.out.println(tunes.size() + " tunes, " + notes + " notes");
+
+        for (int round = 0; round < 3; round++) {
+            for (Storage storage : Storage.values()) {
+                long retained = retained(tunes, storage);
+                System.out.println(String.format("%-10s retained %10s  %6.1f bytes/note",
+                        storage, Measure.mb(retained), retained / (double) notes));
+            }
+        }
+    }
+
+    /**
+     * Parses every tune and measures the heap the songs keep
+     */
+    private static long retained(List<String> tunes, Storage storage) {
+        Measure.settle();
+        long before = usedHeap();
+        List<Song> songs = new ArrayList<Song>();
+        for (String tune : tunes) {
+            Parser parser = new Parser(new Lexer(tune));
+            switch (storage) {
+            case RATIONAL:
+                songs.add(parser.parse());
+                break;
+            case TICKS:
+                songs.add(parser.parseTicks(false));
+                break;
+            default:
+                songs.add(parser.parseTicks(true));
+            }
+        }
+        Measure.settle();
+        long retained = usedHeap() - before;
+        if (songs.isEmpty())
+            throw new RuntimeException("nothing parsed");
+        return retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long countNotes(Song song) {
+        long notes = 0;
+        for (Voice voice : song.getVoiceMap().values())
+            for (Chord chord : voice.getAllChords())
+                notes += chord.getAllNotes().size();
+        return notes;
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import player.AugmentedMIDI;
+import player.Lexer;
+import player.MusicVisitor;
+import player.Parser;
+import player.Song;
+
+/**
+ * Times MusicVisitor rendering songs of 1 to 16 voices, with the voices
+ * rendered in turn and in parallel on ForkJoinPools of 1 up to as many
+ * threads as there are processors. Every voice has the same number of bars.
+ *
+ * Usage: VoiceScalingBenchmark [bars per voice]
+ */
+public class VoiceScalingBenchmark {
+
+    private static final int[] VOICES = { 1, 2, 4, 8, 16 };
+    private static final String BAR = "C D E F G A B c|";
+
+    public static void main(String[] args) {
+        int bars = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> parallelisms = new ArrayList<Integer>();
+        for (int threads = 1; threads < processors; threads *= 2)
+            parallelisms.add(threads);
+        parallelisms.add(processors);
+
+        StringBuilder heading = new StringBuilder(String.format("%8s %10s", "voices", "in turn"));
+        for (int threads : parallelisms)
+            heading.append(String.format(" %10s", threads + " thr"));
+        System.out.println(processors + " processors, " + bars + " bars per voice");
+        System.out.println(heading);
+
+        for (int voices : VOICES) {
+            Song song = new Parser(new Lexer(tune(voices, bars))).parse();
+            StringBuilder line = new StringBuilder(String.format("%8d %10s", voices,
+                    Measure.ms(best(song, null))));
+            for (int threads : parallelisms) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                line.append(String.format(" %10s", Measure.ms(best(song, pool))));
+                pool.shutdown();
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @return a tune whose voices all play the same bars
+     */
+    private static String tune(int voices, int bars) {
+        StringBuilder tune = new StringBuilder("X:1\nT:Scaling\n");
+        for (int voice = 0; voice < voices; voice++)
+            tune.append("V:").append(voice).append('\n');
+        tune.append("K:C\n");
+        for (int voice = 0; voice < voices; voice++) {
+            tune.append("V:").append(voice).append('\n');
+            for (int bar = 0; bar < bars; bar++)
+                tune.append(BAR);
+            tune.append('\n');
+        }
+        return tune.toString();
+    }
+
+    /**
+     * @return the shortest of several renderings, in nanoseconds
+     */
+    private static long best(Song song, ForkJoinPool pool) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 7; round++) {
+            long start = System.nanoTime();
+            List<AugmentedMIDI> notes = MusicVisitor.getMIDINotes(song, 0,
+                    song.getTicksForNote(), pool);
+            best = Math.min(best, System.nanoTime() - start);
+            if (notes.isEmpty())
+                throw new RuntimeException("no notes");
+        }
+        return best;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.midi.MidiUnavailableException;
+
+import player.AbcFileReader;
+import player.HeadLexer;
+import player.Lexer;
+import player.Parser;
+import player.Song;
+import player.WavRenderer;
+
+/**
+ * Renders a sample file, its body repeated to a few minutes of music, to a
+ * temporary WAV file with WavRenderer, and reports how many times faster
+ * than real time it goes. Needs the JVM option
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED from Java 9 on.
+ *
+ * Usage: WavRenderBenchmark [abc file [repetitions of its body]]
+ */
+public class WavRenderBenchmark {
+
+    public static void main(String[] args) throws IOException, MidiUnavailableException {
+        String sample = args.length > 0 ? args[0] : "sample_abc/prelude.abc";
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        CharSequence file = AbcFileReader.read(sample);
+        int headerEnd = HeadLexer.findHeaderEnd(file);
+        StringBuilder tune = new StringBuilder(file.subSequence(0, headerEnd));
+        CharSequence body = file.subSequence(headerEnd, file.length());
+        for (int i = 0; i < repetitions; i++)
+            tune.append(body).append('\n');
+        Song song = new Parser(new Lexer(tune)).parseTicks(true);
+
+        File wav = File.createTempFile("render", ".wav");
+        try {
+            for (int round = 0; round < 3; round++) { // the first opens the soundbank
+                long start = System.nanoTime();
+                long frames = WavRenderer.render(song, wav);
+                long elapsed = System.nanoTime() - start;
+                double seconds = frames / WavRenderer.SAMPLE_RATE;
+                System.out.println(String.format("%.1f s of audio in %s, %.1f x real time, %s",
+                        seconds, Measure.ms(elapsed), seconds / (elapsed / 1e9),
+                        Measure.mb(wav.length())));
+            }
+        } finally {
+            wav.delete();
+        }
+    }
+}
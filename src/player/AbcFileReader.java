@@ -0,0 +1,144 @@
+package player;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Loads abc files into a single CharBuffer that the Lexer and BodyLexer can
+ * scan directly.
+ *
+ * The file is memory-mapped and decoded straight into one char array, so no
+ * per-line Strings are built and the content is never copied into a second
+ * buffer. Line endings are normalised to '\n' in place and the last line is
+ * terminated, which mirrors what readLine() based loading used to produce.
+ */
+public class AbcFileReader {
+
+    private static final char NEW_LINE = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+
+    /**
+     * Reads the abc file at the given location, decoding it with the platform
+     * default charset.
+     *
+     * @param filePath
+     *            a String specifying the location of an abc music file
+     * @return CharBuffer holding the content of the file, positioned at 0
+     * @throws RuntimeException
+     *             if the file is not found or if an IO exception is
+     *             encountered.
+     */
+    public static CharBuffer read(String filePath) {
+        return read(filePath, Charset.defaultCharset());
+    }
+
+    /**
+     * Reads the abc file at the given location, decoding it with the given
+     * charset.
+     *
+     * @param filePath
+     *            a String specifying the location of an abc music file
+     * @param charset
+     *            the charset the file is encoded with
+     * @return CharBuffer holding the content of the file, positioned at 0
+     * @throws RuntimeException
+     *             if the file is not found or if an IO exception is
+     *             encountered.
+     */
+    public static CharBuffer read(String filePath, Charset charset) {
+        FileInputStream stream;
+        try {
+            stream = new FileInputStream(filePath);
+        } catch (FileNotFoundException ex) {
+            throw new RuntimeException("File Not Found");
+        }
+        try {
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new RuntimeException("File too large to be loaded: "
+                        + filePath);
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    size);
+            return normaliseLineEndings(decode(bytes, charset));
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "IO exception encountered while reading file");
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Decodes the given bytes into a heap CharBuffer with one spare char of
+     * capacity for the trailing new line. Malformed input is replaced, as a
+     * Reader would.
+     *
+     * @param bytes
+     *            the encoded content
+     * @param charset
+     *            the charset of the content
+     * @return the decoded content, ready to be read
+     */
+    private static CharBuffer decode(ByteBuffer bytes, Charset charset)
+            throws CharacterCodingException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int capacity = (int) Math.ceil(bytes.remaining()
+                * (double) decoder.maxCharsPerByte()) + 1;
+        CharBuffer chars = CharBuffer.allocate(capacity);
+
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (result.isUnderflow())
+            result = decoder.flush(chars);
+        if (!result.isUnderflow())
+            result.throwException();
+        chars.flip();
+        return chars;
+    }
+
+    /**
+     * Rewrites "\r\n" and lone '\r' line endings to '\n' by compacting the
+     * buffer's backing array in place, and terminates a non-empty last line
+     * with '\n'.
+     *
+     * @param chars
+     *            decoded content with at least one char of spare capacity
+     * @return the same buffer, limited to the normalised content
+     */
+    private static CharBuffer normaliseLineEndings(CharBuffer chars) {
+        char[] content = chars.array();
+        int length = chars.limit();
+        int write = 0;
+
+        for (int read = 0; read < length; read++) {
+            char c = content[read];
+            if (c == CARRIAGE_RETURN) {
+                if (read + 1 < length && content[read + 1] == NEW_LINE)
+                    read++;
+                c = NEW_LINE;
+            }
+            content[write++] = c;
+        }
+        if (write > 0 && content[write - 1] != NEW_LINE)
+            content[write++] = NEW_LINE;
+
+        chars.clear();
+        chars.limit(write);
+        return chars;
+    }
+}
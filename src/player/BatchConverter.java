@@ -0,0 +1,194 @@
+package player;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts every abc file of a directory tree into a Standard MIDI File with
+ * MidiExporter, several files at a time. No Sequencer is opened, so it runs
+ * on machines without audio. Every file is timed, and a file that fails is
+ * reported without stopping the others.
+ *
+ * Usage: BatchConverter directory [output directory [threads]]
+ *
+ * Without an output directory, each .mid file is written next to its abc
+ * file; with one, the tree of the input directory is repeated there.
+ */
+public class BatchConverter {
+
+    /**
+     * The outcome of converting one file
+     */
+    public static class Conversion {
+        private final Path abcFile;
+        private final Path midiFile;
+        private final long nanos;
+        private final Exception error;
+
+        Conversion(Path abcFile, Path midiFile, long nanos, Exception error) {
+            this.abcFile = abcFile;
+            this.midiFile = midiFile;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Path getAbcFile() {
+            return abcFile;
+        }
+
+        public Path getMidiFile() {
+            return midiFile;
+        }
+
+        /**
+         * @return the time taken to parse and write the file, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return what made the conversion fail, or null if it succeeded
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String time = String.format("%8.1f ms", nanos / 1e6);
+            if (error == null)
+                return time + "  " + abcFile + " -> " + midiFile;
+            return time + "  " + abcFile + " FAILED: " + error;
+        }
+    }
+
+    /**
+     * Converts the abc files of a directory tree
+     *
+     * @param directory
+     *            : the root of the tree
+     * @param output
+     *            : the directory the tree is repeated in, or null to write
+     *            each .mid file next to its abc file
+     * @param threads
+     *            : the number of files converted at a time
+     * @return the conversions, in the order of the file names
+     * @throws IOException
+     *             if the tree cannot be read
+     */
+    public static List<Conversion> convert(final Path directory, final Path output,
+            int threads) throws IOException {
+        List<Path> abcFiles = findAbcFiles(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Conversion>> futures = new ArrayList<Future<Conversion>>();
+            for (final Path abcFile : abcFiles) {
+                futures.add(executor.submit(new Callable<Conversion>() {
+                    @Override
+                    public Conversion call() {
+                        return convertFile(abcFile, midiFileFor(directory, output, abcFile));
+                    }
+                }));
+            }
+            List<Conversion> conversions = new ArrayList<Conversion>();
+            for (Future<Conversion> future : futures)
+                conversions.add(join(future));
+            return conversions;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Converts a single file, catching what goes wrong
+     */
+    private static Conversion convertFile(Path abcFile, Path midiFile) {
+        long start = System.nanoTime();
+        try {
+            if (midiFile.getParent() != null)
+                Files.createDirectories(midiFile.getParent());
+            MidiExporter.export(abcFile.toString(), midiFile.toFile());
+            return new Conversion(abcFile, midiFile, System.nanoTime() - start, null);
+        } catch (Exception e) {
+            return new Conversion(abcFile, midiFile, System.nanoTime() - start, e);
+        }
+    }
+
+    private static Conversion join(Future<Conversion> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while converting", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the abc files of the tree, sorted
+     */
+    private static List<Path> findAbcFiles(Path directory) throws IOException {
+        final List<Path> abcFiles = new ArrayList<Path>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".abc"))
+                    abcFiles.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(abcFiles);
+        return abcFiles;
+    }
+
+    /**
+     * @return where the .mid file of an abc file goes
+     */
+    private static Path midiFileFor(Path directory, Path output, Path abcFile) {
+        String name = abcFile.getFileName().toString();
+        String midiName = name.substring(0, name.length() - ".abc".length()) + ".mid";
+        if (output == null)
+            return abcFile.resolveSibling(midiName);
+        return output.resolve(directory.relativize(abcFile)).resolveSibling(midiName);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: BatchConverter directory [output directory [threads]]");
+            return;
+        }
+        Path output = args.length > 1 ? Paths.get(args[1]) : null;
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        List<Conversion> conversions = convert(Paths.get(args[0]), output, threads);
+        long elapsed = System.nanoTime() - start;
+
+        int failed = 0;
+        long busy = 0;
+        for (Conversion conversion : conversions) {
+            System.out.println(conversion);
+            busy += conversion.getNanos();
+            if (conversion.getError() != null)
+                failed++;
+        }
+        System.out.println(String.format("%d files, %d failed, %.1f ms on %d threads (%.1f ms of conversions)",
+                conversions.size(), failed, elapsed / 1e6, threads, busy / 1e6));
+    }
+}
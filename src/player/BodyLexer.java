@@ -1,59 +1,86 @@
 package player;
 
-import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.BitSet;
 
+/**
+ * Turns the body of an abc file into BodyTokens.
+ *
+ * The body is tokenized once, on demand, into a table of tokens. The lexer is
+ * a cursor into that table: peeking looks further down the table, rewinding
+ * for a repeat moves the cursor back, and tokens that must not be played
+ * again (a repeat sign already honoured, a first ending) are marked as
+ * skipped instead of being cut out of the body. Replaying a section therefore
+ * costs the same as playing it the first time.
+ *
+ * While scanning, the positions of the tokens a repeat can go back to are
+ * recorded in order, so finding where a repeat starts is a binary search.
+ *
+ * The table holds only the type and the bounds of each token in primitive
+ * arrays. nextType() and peekType() walk it without allocating, and the text
+ * of the token just read is looked up in the body only when it is asked for.
+ * getNextBodyToken() and peek() build BodyToken objects on top of this.
+ */
 public class BodyLexer {
 
-    private Matcher regexExpressionMatcher;// expression matcher
-    private String body; // string representing the body
-    private int currentLocationIndex = 0; // current index being visited
-    private List<Integer> visitedLocations; // save visited locations
-
-    // Regular expression representing all possible tokens patterns in the abc
-    // file body
-    private final static String regex = "(V:[^\\n]+)|" + // VOICE
-            "(%[^\\n]*)|" + // COMMENT
-            "(\\[[12])|" + // EXTRA_REPEAT
-            "([\\^_=]+)|" + // ACCIDENTAL
-            "([a-gA-Gz])|" + // NOTE_REST
-            "([1-9]*/[1-9]*|[1-9]+)|" + // MULT_FACTOR
-            "([\',]+)|" + // OCTAVE_MOD
-            "(\\[\\|)|" + // SECTION_BEGIN
-            "(\\|])|" + // SECTION_END
-            "(\\|:)|" + // REPEAT_BEGIN
-            "(:\\|)|" + // REPEAT_END
-            "(\\[)|" + // BEGIN_CHORD
-            "(])|" + // END_CHORD
-            "(\\()|" + // BEGIN_TUPLET
-            "(\\|)"; // BAR
-
-    private static final Pattern REGEX_Body_Tokens = Pattern.compile(regex);
-
-    // Array of all possible body token types
-    private static final BodyToken.Type[] Body_Tokens_Types = {
-            BodyToken.Type.VOICE, BodyToken.Type.COMMENT,
-            BodyToken.Type.EXTRA_REPEAT, BodyToken.Type.ACCIDENTAL,
-            BodyToken.Type.NOTE_REST, BodyToken.Type.MULT_FACTOR,
-            BodyToken.Type.OCTAVE_MOD, BodyToken.Type.SECTION_BEGIN,
-            BodyToken.Type.SECTION_END, BodyToken.Type.REPEAT_BEGIN,
-            BodyToken.Type.REPEAT_END, BodyToken.Type.BEGIN_CHORD,
-            BodyToken.Type.END_CHORD, BodyToken.Type.BEGIN_TUPLET,
-            BodyToken.Type.BAR, };
+    private final BodyTokenizer tokenizer; // finds the tokens in the body
+    private final CharSequence body; // character sequence representing the body
+
+    private static final BodyToken.Type[] TYPES = BodyToken.Type.values();
+
+    // tokens scanned so far, in order: type ordinal and bounds in the body
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int tokenCount = 0;
+    private int scannedLocation = 0; // index in the body after the last token
+    private boolean scannedAll = false; // whether the whole body is scanned
+
+    // indices of the repeat anchor tokens scanned so far, in increasing order
+    private int[] repeatAnchors = new int[16];
+    private int repeatAnchorCount = 0;
+
+    private final BitSet skippedTokens; // tokens that are not played any more
+    private int currentToken = 0; // index of the next token to return
+    private int lastToken = -1; // index of the last token returned, not skipped
+    private int readToken = -1; // index of the last token returned, -1 at EOF
 
     /**
      * Constructs a BodyLexer from a body string Requires a valid body string
-     * according to abc specifications
-     * 
+     * according to abc specifications. The body is scanned in place and is
+     * not copied.
+     *
      * @param body
-     *            : The body of the abc file represented as a string
+     *            : The body of the abc file represented as a character
+     *            sequence
      */
-    public BodyLexer(String body) {
+    public BodyLexer(CharSequence body) {
+        this(body, new DfaBodyTokenizer());
+    }
+
+    /**
+     * Constructs a BodyLexer from a body string that finds tokens with the
+     * given tokenizer, e.g. a RegexBodyTokenizer. Requires a valid body string
+     * according to abc specifications.
+     *
+     * @param body
+     *            : The body of the abc file represented as a character
+     *            sequence
+     * @param tokenizer
+     *            : BodyTokenizer used to recognise the tokens
+     */
+    public BodyLexer(CharSequence body, BodyTokenizer tokenizer) {
         this.body = body;
-        this.regexExpressionMatcher = REGEX_Body_Tokens.matcher(body);
-        this.visitedLocations = new ArrayList<Integer>();
+        this.tokenizer = tokenizer;
+        this.tokenizer.reset(body);
+        this.skippedTokens = new BitSet();
+    }
+
+    /**
+     * @return the body this lexer tokenizes
+     */
+    public CharSequence getBody() {
+        return body;
     }
 
     /**
@@ -62,123 +89,300 @@ public class BodyLexer {
      * file). If no content left to tokenize, returns the Token representing EOF
      * (end of file). Requires that this body is a string representation of
      * valid abc body content.
-     * 
+     *
      * @return An instance of BodyToken representing the next Token in the body
      *         string or the EOF Token if no tokens left to tokenize
      */
     public BodyToken getNextBodyToken() {
+        if (nextType() == BodyToken.Type.EOF)
+            return BodyToken.END_OF_FILE;
+        return toBodyToken(readToken);
+    }
 
-        if (currentLocationIndex >= body.length()) {
-            // The end of the body string has been reached
-            return new BodyToken(BodyToken.Type.EOF, "");
-        }
-        
-        // Progresses through the body string skipping all unmatched sequences,
-        // until it finds a sequence that matches a token pattern
-        else if (regexExpressionMatcher.find(currentLocationIndex)) {
-            String matchedString;
-            visitedLocations.add(currentLocationIndex);
-            // Update current location in the body file
-            currentLocationIndex = regexExpressionMatcher.end();
-            matchedString = regexExpressionMatcher.group();
-            // Finds the regex group that matched
-            for (int i = 1; i <= 15; i++) {
-                if (regexExpressionMatcher.group(i) != null
-                        && regexExpressionMatcher.group(i)
-                                .equals(matchedString)) {
-                    return new BodyToken(Body_Tokens_Types[i - 1],
-                            matchedString);
-                }
-            }
+    /**
+     * Moves to the next Token and returns its type, without building a
+     * BodyToken. The text of the Token can then be read with tokenText(),
+     * tokenChar() and tokenLength().
+     *
+     * @return type of the next Token, or EOF if no tokens left
+     */
+    public BodyToken.Type nextType() {
+        int next = nextPlayedToken(currentToken);
+        if (!isScanned(next)) {
+            readToken = -1;
+            return BodyToken.Type.EOF;
         }
-        // No matching tokens left
-        return new BodyToken(BodyToken.Type.EOF, "");
+        lastToken = next;
+        readToken = next;
+        currentToken = next + 1;
+        return TYPES[types[next]];
+    }
+
+    /**
+     * @return the text of the Token last returned by nextType() or
+     *         getNextBodyToken(), "" at EOF
+     */
+    public String tokenText() {
+        if (readToken < 0)
+            return "";
+        return body.subSequence(starts[readToken], ends[readToken])
+                .toString();
     }
 
     /**
-     * Rewinds the BodyLexer to the most recent occurrence of the given string.
-     * The string must not be null or ""
-     * 
+     * @param index
+     *            index of a character in the Token, 0 for the first one
+     * @return the character at index in the Token last returned by
+     *         nextType() or getNextBodyToken()
+     */
+    public char tokenChar(int index) {
+        if (index < 0 || index >= tokenLength())
+            throw new IndexOutOfBoundsException("No character " + index
+                    + " in token");
+        return body.charAt(starts[readToken] + index);
+    }
+
+    /**
+     * @return the number of characters of the Token last returned by
+     *         nextType() or getNextBodyToken(), 0 at EOF
+     */
+    public int tokenLength() {
+        return readToken < 0 ? 0 : ends[readToken] - starts[readToken];
+    }
+
+    /**
+     * @return the offset in the body of the first character of the Token last
+     *         returned by nextType() or getNextBodyToken(), -1 at EOF
+     */
+    public int tokenStart() {
+        return readToken < 0 ? -1 : starts[readToken];
+    }
+
+    /**
+     * @return the offset in the body after the last character of the Token
+     *         last returned by nextType() or getNextBodyToken(), -1 at EOF
+     */
+    public int tokenEnd() {
+        return readToken < 0 ? -1 : ends[readToken];
+    }
+
+    /**
+     * Rewinds the BodyLexer to the most recent Token that starts with the given
+     * string. The string must not be null or ""
+     *
      * @param wanted
      *            String to which to rewind
      * @return true if the desired string was found Otherwise, returns false.
      */
     public boolean goBackUntil(String wanted) {
-        int lastOccurence = body.lastIndexOf(wanted, currentLocationIndex);
-        if (lastOccurence != -1) {
-            currentLocationIndex = lastOccurence;
-            return true;
+        int token = isScanned(currentToken) ? currentToken : tokenCount - 1;
+        for (; token >= 0; token--) {
+            if (!skippedTokens.get(token) && startsWith(token, wanted)) {
+                currentToken = token;
+                return true;
+            }
         }
         return false;
     }
 
     /**
-     * Rewinds back to the beginning of a sequence to be repeated. If not found,
-     * sets current location index to the start of the body string.
+     * Rewinds back to the beginning of a sequence to be repeated: the most
+     * recent voice, repeat begin or section begin Token. If not found, rewinds
+     * to the start of the body.
      */
     public void goBack() {
-        int startLocation = currentLocationIndex;
-
-        while (startLocation >= 0) {
-            String bodySegment = body.substring(startLocation,
-                    currentLocationIndex);
-            if (bodySegment.startsWith("V:") || bodySegment.startsWith("|:")
-                    || bodySegment.startsWith("[|")) {
-                currentLocationIndex = startLocation;
-                return;
-            }
-            startLocation--;
-        }
-
-        currentLocationIndex = 0;
-        return;
-
+        int anchor = Arrays.binarySearch(repeatAnchors, 0, repeatAnchorCount,
+                currentToken);
+        // last anchor strictly before the current token
+        anchor = (anchor >= 0 ? anchor : -anchor - 1) - 1;
+        while (anchor >= 0 && skippedTokens.get(repeatAnchors[anchor]))
+            anchor--;
+        currentToken = anchor >= 0 ? repeatAnchors[anchor] : 0;
     }
 
     /**
-     * Deletes the last BodyToken and modifies the body String to reflect the
-     * removal of the given token.
-     * 
+     * Marks the last returned BodyToken as skipped, so that it is not returned
+     * again when the lexer replays that part of the body. Calling it again
+     * skips the token returned before that one.
+     *
      * @return true if operation carried out successfully, false otherwise
      */
-    public boolean deleteLastToken() {
-        if (visitedLocations.size() != 0) {
-            int StartOfPreviousToken = visitedLocations.remove(visitedLocations
-                    .size() - 1);
-            body = body.substring(0, StartOfPreviousToken)
-                    + body.substring(currentLocationIndex);
-            regexExpressionMatcher = REGEX_Body_Tokens.matcher(body);
-            currentLocationIndex = StartOfPreviousToken;
-
-            return true;
-        }
-
-        return false;
+    public boolean skipLastToken() {
+        if (lastToken < 0)
+            return false;
+        skippedTokens.set(lastToken);
+        lastToken = skippedTokens.previousClearBit(lastToken - 1);
+        return true;
     }
 
     /**
      * Finds the next matching Token, without modifying the lexer's current
      * location in the body String.
-     * 
+     *
      * @return next BodyToken or BodyToken of type EOF
      */
     public BodyToken peek() {
-        if (currentLocationIndex >= body.length()) {
-            // The end of the body string has been reached
-            return new BodyToken(BodyToken.Type.EOF, "");
-        }
-        // Peeks through the body string skipping all unmatched sequences,
-        // until it finds a sequence that matches a token pattern
-        if (regexExpressionMatcher.find(currentLocationIndex)) {
-            String value = regexExpressionMatcher.group();
-            for (int i = 1; i <= 15; i++) {
-                if (regexExpressionMatcher.group(i) != null
-                        && regexExpressionMatcher.group(i).equals(value)) {
-                    return new BodyToken(Body_Tokens_Types[i - 1], value);
-                }
+        return peek(0);
+    }
+
+    /**
+     * Finds the Token k positions after the next one, without modifying the
+     * lexer's current location in the body String. Tokens are scanned once, so
+     * repeated peeks and the following getNextBodyToken calls do not scan the
+     * body again.
+     *
+     * @param k
+     *            number of tokens to look past, 0 for the next token
+     * @return the (k+1)-th next BodyToken or BodyToken of type EOF
+     */
+    public BodyToken peek(int k) {
+        int token = peekedToken(k);
+        if (token < 0)
+            return BodyToken.END_OF_FILE;
+        return toBodyToken(token);
+    }
+
+    /**
+     * Finds the type of the next Token, without modifying the lexer's current
+     * location and without building a BodyToken.
+     *
+     * @return type of the next Token, or EOF if no tokens left
+     */
+    public BodyToken.Type peekType() {
+        return peekType(0);
+    }
+
+    /**
+     * Finds the type of the Token k positions after the next one, without
+     * modifying the lexer's current location and without building a
+     * BodyToken.
+     *
+     * @param k
+     *            number of tokens to look past, 0 for the next token
+     * @return type of the (k+1)-th next Token, or EOF
+     */
+    public BodyToken.Type peekType(int k) {
+        int token = peekedToken(k);
+        return token < 0 ? BodyToken.Type.EOF : TYPES[types[token]];
+    }
+
+    /**
+     * @param k
+     *            number of tokens to look past
+     * @return index of the (k+1)-th next token that is not skipped, or -1 if
+     *         the body runs out of tokens before it
+     */
+    private int peekedToken(int k) {
+        int token = nextPlayedToken(currentToken);
+        for (int i = 0; i < k && isScanned(token); i++)
+            token = nextPlayedToken(token + 1);
+        return isScanned(token) ? token : -1;
+    }
+
+    /**
+     * @param token
+     *            index in the token table
+     * @return a BodyToken holding the type and text of the token
+     */
+    private BodyToken toBodyToken(int token) {
+        return new BodyToken(TYPES[types[token]], body.subSequence(
+                starts[token], ends[token]).toString());
+    }
+
+    /**
+     * @param token
+     *            index in the token table
+     * @param prefix
+     *            a String
+     * @return true if the text of the token starts with prefix
+     */
+    private boolean startsWith(int token, String prefix) {
+        int start = starts[token];
+        if (ends[token] - start < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (body.charAt(start + i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * @param token
+     *            index in the token table
+     * @return the first index at or after token that is not skipped
+     */
+    private int nextPlayedToken(int token) {
+        return skippedTokens.nextClearBit(token);
+    }
+
+    /**
+     * Scans the body until the token table holds the given index, or the body
+     * runs out of tokens.
+     *
+     * @param token
+     *            index in the token table
+     * @return true if the token table holds the given index
+     */
+    private boolean isScanned(int token) {
+        while (token >= tokenCount && !scannedAll) {
+            // Progresses through the body string skipping all unmatched
+            // sequences, until it finds a sequence that matches a token pattern
+            if (scannedLocation < body.length()
+                    && tokenizer.find(scannedLocation)) {
+                BodyToken.Type type = tokenizer.type();
+                if (isRepeatAnchor(type))
+                    addRepeatAnchor(tokenCount);
+                addToken(type, tokenizer.start(), tokenizer.end());
+                scannedLocation = tokenizer.end();
+            } else {
+                // No matching tokens left
+                scannedAll = true;
             }
         }
-        // No matching tokens left
-        return new BodyToken(BodyToken.Type.EOF, "");
+        return token < tokenCount;
+    }
+
+    /**
+     * Appends a token to the token table, growing it when full
+     */
+    private void addToken(BodyToken.Type type, int start, int end) {
+        if (tokenCount == types.length) {
+            types = Arrays.copyOf(types, 2 * tokenCount);
+            starts = Arrays.copyOf(starts, 2 * tokenCount);
+            ends = Arrays.copyOf(ends, 2 * tokenCount);
+        }
+        types[tokenCount] = (byte) type.ordinal();
+        starts[tokenCount] = start;
+        ends[tokenCount] = end;
+        tokenCount++;
+    }
+
+    /**
+     * Records the index of a repeat anchor token. Anchors are scanned in order,
+     * so the record stays sorted.
+     *
+     * @param token
+     *            index of the token in the token table
+     */
+    private void addRepeatAnchor(int token) {
+        if (repeatAnchorCount == repeatAnchors.length)
+            repeatAnchors = Arrays.copyOf(repeatAnchors, 2 * repeatAnchorCount);
+        repeatAnchors[repeatAnchorCount++] = token;
+    }
+
+    /**
+     * @param type
+     *            the type of a token
+     * @return true if a repeated sequence can start at a token of this type
+     */
+    private static boolean isRepeatAnchor(BodyToken.Type type) {
+        switch (type) {
+        case VOICE:
+        case REPEAT_BEGIN:
+        case SECTION_BEGIN:
+            return true;
+        default:
+            return false;
+        }
     }
 }
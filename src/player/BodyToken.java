@@ -26,6 +26,12 @@ public class BodyToken {
 
     }
 
+    /**
+     * The Token returned once the body has no tokens left. It is shared, as
+     * BodyTokens are immutable.
+     */
+    public static final BodyToken END_OF_FILE = new BodyToken(Type.EOF, "");
+
     private final Type type; // type of BodyToken
     private final String text; // content of BodyToken
 
@@ -0,0 +1,46 @@
+package player;
+
+/**
+ * Finds the tokens of an abc body. A BodyTokenizer only recognises the next
+ * token from a given position; BodyLexer keeps track of where it is in the
+ * body and builds the BodyTokens.
+ * 
+ * Implementations must agree with the token grammar documented in
+ * RegexBodyTokenizer: at every position the first alternative that matches
+ * wins, and characters that start no token are skipped.
+ */
+public interface BodyTokenizer {
+
+    /**
+     * Sets the body to be tokenized. Must be called before find.
+     * 
+     * @param body
+     *            the body of an abc file
+     */
+    public void reset(CharSequence body);
+
+    /**
+     * Looks for the next token starting at or after the given index.
+     * 
+     * @param from
+     *            index in the body where the search starts
+     * @return true if a token was found, in which case start(), end() and
+     *         type() describe it. false if no tokens are left.
+     */
+    public boolean find(int from);
+
+    /**
+     * @return index of the first character of the last token found
+     */
+    public int start();
+
+    /**
+     * @return index after the last character of the last token found
+     */
+    public int end();
+
+    /**
+     * @return type of the last token found
+     */
+    public BodyToken.Type type();
+}
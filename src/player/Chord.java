@@ -10,6 +10,8 @@ public class Chord implements MusicInterface {
 
 
     private MultiplicativeFactor length;
+    private long ticks = -1; // length in ticks, for notes given in ticks
+    private long start = -1; // first tick in its voice, for notes given in ticks
     private List<Note> allNotes;
 
     /**
@@ -27,12 +29,40 @@ public class Chord implements MusicInterface {
 
     @Override
     public MultiplicativeFactor getLength() {
-        if (length == null) {
+        if (allNotes.isEmpty()) {
             throw new RuntimeException("This chord is empty");
         }
         return length;
     }
 
+    @Override
+    public long getTicks() {
+        if (allNotes.isEmpty()) {
+            throw new RuntimeException("This chord is empty");
+        }
+        return ticks;
+    }
+
+    /**
+     * Returns the tick at which the Chord starts in its voice. It is known
+     * once a Chord of tick-length notes is added to a Voice.
+     * 
+     * @return : the first tick of the Chord, or -1 if it is not known
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Sets the tick at which the Chord starts in its voice
+     * 
+     * @param start
+     *            : the first tick of the Chord
+     */
+    void setStart(long start) {
+        this.start = start;
+    }
+
     /**
      * Returns all Notes within a Chord
      * 
@@ -49,11 +79,13 @@ public class Chord implements MusicInterface {
      *            : the note to be added
      */
     public void addNote(Note note) {
-        if (!note.getLength().equals(length) && length != null)
+        if (allNotes.isEmpty()) { // first note to be added.
+            length = note.getLength();
+            ticks = note.getTicks();
+        }
+        else if (note.getTicks() != ticks || (length != null && !length.equals(note.getLength())))
             throw new RuntimeException(
                     "Notes within a chord cannot have diffferent lengths");
-        else if (length == null) // first note to be added.
-            length = note.getLength();
         allNotes.add(note);
     }
 
@@ -0,0 +1,20 @@
+package player;
+
+/**
+ * Receives the Chords of a Song while it is being parsed, in the order the
+ * Parser recognises them.
+ */
+public interface ChordListener {
+
+    /**
+     * Called once a Chord has been parsed and appended to its voice. Chords of
+     * one voice arrive in playing order; chords of different voices arrive
+     * interleaved as they appear in the body.
+     * 
+     * @param voice
+     *            : name of the voice the chord belongs to
+     * @param chord
+     *            : the parsed Chord
+     */
+    public void chordParsed(String voice, Chord chord);
+}
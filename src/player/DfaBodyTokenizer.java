@@ -0,0 +1,208 @@
+package player;
+
+/**
+ * Table-driven BodyTokenizer. Characters are mapped to a handful of classes
+ * and a deterministic automaton runs from every candidate start position,
+ * remembering the last accepting state it went through. It recognises
+ * exactly the tokens of RegexBodyTokenizer, because for this grammar the
+ * first matching alternative of the regex is always the longest match.
+ *
+ * Unlike the regex, no groups have to be inspected to find out which token
+ * matched and nothing is allocated per token.
+ */
+public class DfaBodyTokenizer implements BodyTokenizer {
+
+    // Character classes
+    private static final int OTHER = 0;
+    private static final int NEW_LINE = 1;
+    private static final int LETTER_V = 2; // V
+    private static final int COLON = 3; // :
+    private static final int PERCENT = 4; // %
+    private static final int OPEN_BRACKET = 5; // [
+    private static final int CLOSE_BRACKET = 6; // ]
+    private static final int ONE_TWO = 7; // 1 2
+    private static final int DIGIT = 8; // 3-9
+    private static final int ACCIDENTAL = 9; // ^ _ =
+    private static final int NOTE = 10; // a-g A-G z
+    private static final int SLASH = 11; // /
+    private static final int OCTAVE = 12; // ' ,
+    private static final int PIPE = 13; // |
+    private static final int OPEN_PAREN = 14; // (
+    private static final int CLASS_COUNT = 15;
+
+    // States. DEAD stops the automaton.
+    private static final int DEAD = -1;
+    private static final int START = 0;
+    private static final int V = 1; // V
+    private static final int V_COLON = 2; // V:
+    private static final int VOICE = 3; // V:[^\n]+
+    private static final int COMMENT = 4; // %[^\n]*
+    private static final int BRACKET = 5; // [
+    private static final int EXTRA_REPEAT = 6; // [1 [2
+    private static final int SECTION_BEGIN = 7; // [|
+    private static final int ACCIDENTALS = 8; // [\^_=]+
+    private static final int NOTE_REST = 9; // [a-gA-Gz]
+    private static final int DIGITS = 10; // [1-9]+
+    private static final int FRACTION = 11; // [1-9]*/[1-9]*
+    private static final int OCTAVE_MOD = 12; // [',]+
+    private static final int BAR = 13; // |
+    private static final int SECTION_END = 14; // |]
+    private static final int REPEAT_BEGIN = 15; // |:
+    private static final int COLON_ONLY = 16; // :
+    private static final int REPEAT_END = 17; // :|
+    private static final int END_CHORD = 18; // ]
+    private static final int BEGIN_TUPLET = 19; // (
+    private static final int STATE_COUNT = 20;
+
+    private static final int[] charClasses = new int[128];
+    private static final int[][] transitions = new int[STATE_COUNT][CLASS_COUNT];
+    // Token recognised in each state, null if the state is not accepting
+    private static final BodyToken.Type[] accepted = new BodyToken.Type[STATE_COUNT];
+
+    static {
+        charClasses['\n'] = NEW_LINE;
+        charClasses['V'] = LETTER_V;
+        charClasses[':'] = COLON;
+        charClasses['%'] = PERCENT;
+        charClasses['['] = OPEN_BRACKET;
+        charClasses[']'] = CLOSE_BRACKET;
+        charClasses['1'] = ONE_TWO;
+        charClasses['2'] = ONE_TWO;
+        for (char c = '3'; c <= '9'; c++)
+            charClasses[c] = DIGIT;
+        charClasses['^'] = ACCIDENTAL;
+        charClasses['_'] = ACCIDENTAL;
+        charClasses['='] = ACCIDENTAL;
+        for (char c = 'a'; c <= 'g'; c++) {
+            charClasses[c] = NOTE;
+            charClasses[Character.toUpperCase(c)] = NOTE;
+        }
+        charClasses['z'] = NOTE;
+        charClasses['/'] = SLASH;
+        charClasses['\''] = OCTAVE;
+        charClasses[','] = OCTAVE;
+        charClasses['|'] = PIPE;
+        charClasses['('] = OPEN_PAREN;
+
+        for (int[] row : transitions)
+            java.util.Arrays.fill(row, DEAD);
+
+        transitions[START][LETTER_V] = V;
+        transitions[START][PERCENT] = COMMENT;
+        transitions[START][OPEN_BRACKET] = BRACKET;
+        transitions[START][ACCIDENTAL] = ACCIDENTALS;
+        transitions[START][NOTE] = NOTE_REST;
+        transitions[START][ONE_TWO] = DIGITS;
+        transitions[START][DIGIT] = DIGITS;
+        transitions[START][SLASH] = FRACTION;
+        transitions[START][OCTAVE] = OCTAVE_MOD;
+        transitions[START][PIPE] = BAR;
+        transitions[START][COLON] = COLON_ONLY;
+        transitions[START][CLOSE_BRACKET] = END_CHORD;
+        transitions[START][OPEN_PAREN] = BEGIN_TUPLET;
+
+        transitions[V][COLON] = V_COLON;
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            if (c != NEW_LINE) {
+                transitions[V_COLON][c] = VOICE;
+                transitions[VOICE][c] = VOICE;
+                transitions[COMMENT][c] = COMMENT;
+            }
+        }
+
+        transitions[BRACKET][ONE_TWO] = EXTRA_REPEAT;
+        transitions[BRACKET][PIPE] = SECTION_BEGIN;
+
+        transitions[ACCIDENTALS][ACCIDENTAL] = ACCIDENTALS;
+
+        transitions[DIGITS][ONE_TWO] = DIGITS;
+        transitions[DIGITS][DIGIT] = DIGITS;
+        transitions[DIGITS][SLASH] = FRACTION;
+        transitions[FRACTION][ONE_TWO] = FRACTION;
+        transitions[FRACTION][DIGIT] = FRACTION;
+
+        transitions[OCTAVE_MOD][OCTAVE] = OCTAVE_MOD;
+
+        transitions[BAR][CLOSE_BRACKET] = SECTION_END;
+        transitions[BAR][COLON] = REPEAT_BEGIN;
+        transitions[COLON_ONLY][PIPE] = REPEAT_END;
+
+        accepted[VOICE] = BodyToken.Type.VOICE;
+        accepted[COMMENT] = BodyToken.Type.COMMENT;
+        accepted[BRACKET] = BodyToken.Type.BEGIN_CHORD;
+        accepted[EXTRA_REPEAT] = BodyToken.Type.EXTRA_REPEAT;
+        accepted[SECTION_BEGIN] = BodyToken.Type.SECTION_BEGIN;
+        accepted[ACCIDENTALS] = BodyToken.Type.ACCIDENTAL;
+        accepted[NOTE_REST] = BodyToken.Type.NOTE_REST;
+        accepted[DIGITS] = BodyToken.Type.MULT_FACTOR;
+        accepted[FRACTION] = BodyToken.Type.MULT_FACTOR;
+        accepted[OCTAVE_MOD] = BodyToken.Type.OCTAVE_MOD;
+        accepted[BAR] = BodyToken.Type.BAR;
+        accepted[SECTION_END] = BodyToken.Type.SECTION_END;
+        accepted[REPEAT_BEGIN] = BodyToken.Type.REPEAT_BEGIN;
+        accepted[REPEAT_END] = BodyToken.Type.REPEAT_END;
+        accepted[END_CHORD] = BodyToken.Type.END_CHORD;
+        accepted[BEGIN_TUPLET] = BodyToken.Type.BEGIN_TUPLET;
+    }
+
+    private CharSequence body;
+    private int start;
+    private int end;
+    private BodyToken.Type type;
+
+    @Override
+    public void reset(CharSequence body) {
+        this.body = body;
+    }
+
+    @Override
+    public boolean find(int from) {
+        int length = body.length();
+        for (int tokenStart = from; tokenStart < length; tokenStart++) {
+            int state = START;
+            int acceptedEnd = -1;
+            BodyToken.Type acceptedType = null;
+
+            for (int i = tokenStart; i < length; i++) {
+                state = transitions[state][classOf(body.charAt(i))];
+                if (state == DEAD)
+                    break;
+                if (accepted[state] != null) {
+                    acceptedType = accepted[state];
+                    acceptedEnd = i + 1;
+                }
+            }
+            if (acceptedType != null) {
+                this.start = tokenStart;
+                this.end = acceptedEnd;
+                this.type = acceptedType;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param c
+     *            a character of the body
+     * @return the character class of c
+     */
+    private static int classOf(char c) {
+        return c < charClasses.length ? charClasses[c] : OTHER;
+    }
+
+    @Override
+    public int start() {
+        return start;
+    }
+
+    @Override
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public BodyToken.Type type() {
+        return type;
+    }
+}
@@ -0,0 +1,317 @@
+package player;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of rendered notes without an object per note. While the
+ * values fit, each note is packed into a single long, with the start tick in
+ * the high bits:
+ *
+ * <pre>
+ * | 0 | start: 31 bits | duration: 24 bits | pitch: 8 bits |
+ * </pre>
+ *
+ * so the packed notes sort by start tick as plain longs, with
+ * Arrays.parallelSort. A note that does not fit (a pitch outside 0..255, a
+ * duration of 2^24 ticks or more, or a start of 2^31 or more) moves the whole
+ * buffer to wide parallel arrays of pitches, starts and durations, which take
+ * 20 bytes per note instead of 8.
+ *
+ * Being a NoteSink, a buffer can be filled by NoteSinkVisitor, and
+ * forEach(NoteSink) hands the notes on without copying them.
+ */
+public class EventBuffer implements NoteSink {
+
+    private static final int PITCH_BITS = 8;
+    private static final int DURATION_BITS = 24;
+    private static final int START_BITS = 31;
+    private static final long PITCH_MASK = (1L << PITCH_BITS) - 1;
+    private static final long DURATION_MASK = (1L << DURATION_BITS) - 1;
+
+    private long[] packed; // null once the buffer is wide
+    private int[] pitches; // the wide arrays, null while the buffer is packed
+    private long[] starts;
+    private long[] durations;
+    private int size = 0;
+
+    /**
+     * Creates an empty EventBuffer
+     */
+    public EventBuffer() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty EventBuffer
+     *
+     * @param capacity
+     *            : the number of notes it holds before it grows
+     */
+    public EventBuffer(int capacity) {
+        packed = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Renders music into a new buffer
+     *
+     * @param music
+     *            : a Song, Voice, Chord or Note
+     * @param start
+     *            : the tick at which the music starts
+     * @param numTicks
+     *            : ticks per whole note
+     * @return the notes, voice by voice as MusicVisitor gives them, in
+     *         arrays trimmed to their number
+     */
+    public static EventBuffer render(MusicInterface music, long start, int numTicks) {
+        EventBuffer buffer = new EventBuffer();
+        NoteSinkVisitor.render(music, start, numTicks, buffer);
+        buffer.trimToSize();
+        return buffer;
+    }
+
+    /**
+     * Appends a note
+     */
+    @Override
+    public void note(int pitch, long start, long duration) {
+        if (start < 0 || duration < 0)
+            throw new IllegalArgumentException("Negative start or duration: "
+                    + start + ", " + duration);
+        if (packed != null && !fits(pitch, start, duration))
+            widen();
+        if (packed != null) {
+            if (size == packed.length)
+                packed = Arrays.copyOf(packed, 2 * size);
+            packed[size++] = pack(pitch, start, duration);
+        } else {
+            if (size == pitches.length) {
+                pitches = Arrays.copyOf(pitches, 2 * size);
+                starts = Arrays.copyOf(starts, 2 * size);
+                durations = Arrays.copyOf(durations, 2 * size);
+            }
+            pitches[size] = pitch;
+            starts[size] = start;
+            durations[size] = duration;
+            size++;
+        }
+    }
+
+    /**
+     * Removes every note, keeping the arrays for the next ones
+     */
+    public void clear() {
+        size = 0;
+        if (packed == null) { // the next notes may fit again
+            packed = new long[pitches.length];
+            pitches = null;
+            starts = null;
+            durations = null;
+        }
+    }
+
+    /**
+     * Shrinks the arrays to the number of notes, e.g. once a buffer is
+     * filled and is to be kept
+     */
+    public void trimToSize() {
+        int capacity = Math.max(1, size);
+        if (packed != null)
+            packed = Arrays.copyOf(packed, capacity);
+        else {
+            pitches = Arrays.copyOf(pitches, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+    }
+
+    /**
+     * @return the number of notes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if every note is packed into a long
+     */
+    public boolean isPacked() {
+        return packed != null;
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its midi note
+     */
+    public int getPitch(int note) {
+        checkIndex(note);
+        return packed != null ? packedPitch(packed[note]) : pitches[note];
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its start tick
+     */
+    public long getStart(int note) {
+        checkIndex(note);
+        return packed != null ? packedStart(packed[note]) : starts[note];
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its length in ticks
+     */
+    public long getDuration(int note) {
+        checkIndex(note);
+        return packed != null ? packedDuration(packed[note]) : durations[note];
+    }
+
+    /**
+     * Sorts the notes by start tick, then duration, then pitch. Packed notes
+     * are sorted with Arrays.parallelSort, wide ones with a merge sort.
+     */
+    public void sortByStart() {
+        if (packed != null)
+            Arrays.parallelSort(packed, 0, size);
+        else
+            sortWide();
+    }
+
+    /**
+     * Hands every note to a sink, in the order of the buffer
+     *
+     * @param sink
+     *            : receives the notes
+     */
+    public void forEach(NoteSink sink) {
+        if (packed != null) {
+            for (int note = 0; note < size; note++) {
+                long event = packed[note];
+                sink.note(packedPitch(event), packedStart(event), packedDuration(event));
+            }
+        } else {
+            for (int note = 0; note < size; note++)
+                sink.note(pitches[note], starts[note], durations[note]);
+        }
+    }
+
+    /**
+     * @return a read-only view of the packed notes, without copying them,
+     *         to be read with packedPitch, packedStart and packedDuration;
+     *         it no longer follows the buffer once a note is added
+     * @throws IllegalStateException
+     *             if the buffer is wide
+     */
+    public LongBuffer asLongBuffer() {
+        if (packed == null)
+            throw new IllegalStateException("The notes do not fit in longs");
+        return LongBuffer.wrap(packed, 0, size).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @param event
+     *            : a packed note
+     * @return its midi note
+     */
+    public static int packedPitch(long event) {
+        return (int) (event & PITCH_MASK);
+    }
+
+    /**
+     * @param event
+     *            : a packed note
+     * @return its start tick
+     */
+    public static long packedStart(long event) {
+        return event >>> (PITCH_BITS + DURATION_BITS);
+    }
+
+    /**
+     * @param event
+     *            : a packed note
+     * @return its length in ticks
+     */
+    public static long packedDuration(long event) {
+        return (event >>> PITCH_BITS) & DURATION_MASK;
+    }
+
+    private static boolean fits(int pitch, long start, long duration) {
+        return pitch >= 0 && pitch <= PITCH_MASK && duration <= DURATION_MASK
+                && start < 1L << START_BITS;
+    }
+
+    private static long pack(int pitch, long start, long duration) {
+        return start << (PITCH_BITS + DURATION_BITS) | duration << PITCH_BITS | pitch;
+    }
+
+    /**
+     * Helper method that moves the notes to the wide arrays
+     */
+    private void widen() {
+        int capacity = packed.length;
+        pitches = new int[capacity];
+        starts = new long[capacity];
+        durations = new long[capacity];
+        for (int note = 0; note < size; note++) {
+            pitches[note] = packedPitch(packed[note]);
+            starts[note] = packedStart(packed[note]);
+            durations[note] = packedDuration(packed[note]);
+        }
+        packed = null;
+    }
+
+    /**
+     * Helper method that sorts the wide arrays with a bottom-up merge sort of
+     * the note indices, then moves the notes into that order
+     */
+    private void sortWide() {
+        int[] order = new int[size];
+        int[] merged = new int[size];
+        for (int note = 0; note < size; note++)
+            order[note] = note;
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int left = low, right = middle;
+                for (int out = low; out < high; out++) {
+                    if (right >= high || left < middle && compare(order[left], order[right]) <= 0)
+                        merged[out] = order[left++];
+                    else
+                        merged[out] = order[right++];
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        int[] sortedPitches = new int[pitches.length];
+        long[] sortedStarts = new long[starts.length];
+        long[] sortedDurations = new long[durations.length];
+        for (int note = 0; note < size; note++) {
+            sortedPitches[note] = pitches[order[note]];
+            sortedStarts[note] = starts[order[note]];
+            sortedDurations[note] = durations[order[note]];
+        }
+        pitches = sortedPitches;
+        starts = sortedStarts;
+        durations = sortedDurations;
+    }
+
+    private int compare(int first, int second) {
+        if (starts[first] != starts[second])
+            return Long.compare(starts[first], starts[second]);
+        if (durations[first] != durations[second])
+            return Long.compare(durations[first], durations[second]);
+        return Integer.compare(pitches[first], pitches[second]);
+    }
+
+    private void checkIndex(int note) {
+        if (note < 0 || note >= size)
+            throw new IndexOutOfBoundsException("No note " + note);
+    }
+}
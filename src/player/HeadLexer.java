@@ -1,89 +1,167 @@
 package player;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class HeadLexer {
 
-    private final Map<Character,List<String>> headerMap;
-    
+    private static final char KEY_FIELD = 'K'; // the field that ends the header
+
+    // value of each field other than V, indexed by field letter - 'A'
+    private final String[] fields = new String['Z' - 'A' + 1];
+    private final List<String> voices = new ArrayList<String>(); // values of V, in order
+    private Map<Character,List<String>> headerMap; // built on demand
+
     private int fieldNum = 0; // keep track of the filed order, to ensure proper header formatting
-    
+
     /**
-     * Lexes the Header by populating a hash map where the keys the header fields and the value 
-     * is the the field's value
+     * Lexes the Header by filling in the value of each header field
      * @param headerString a String representing the header portion of an abc music file
      */
     public HeadLexer (String headerString) {
-        Map<Character, List<String>> headerMap = new HashMap<Character,List<String>>();
-        String[] lines = headerString.split("\n"); // header fields separated by new line
+        lex(headerString);
+    }
 
-        for (String line: lines) {
-            if (line.length() == 0) continue;     // skip blank lines
-            if (line.indexOf("%") == 0) continue; // ignore commented lines
+    /**
+     * Lexes the Header held by part of a character sequence, e.g. an abc file.
+     * The header is copied into a single String, which is not split into
+     * lines; the field values are then taken out of it.
+     * @param text a CharSequence holding the header portion of an abc music file
+     * @param start index of the first character of the header in text
+     * @param end index after the last character of the header in text
+     */
+    public HeadLexer (CharSequence text, int start, int end) {
+        // a header is a few short lines: one copy lets them be scanned with
+        // String.indexOf whatever the source is
+        lex(text.subSequence(start, end).toString());
+    }
 
-            if (line.length() < 2)
+    /**
+     * Helper method that fills in the header fields line by line
+     * @param text a String holding the header portion of an abc music file
+     */
+    private void lex(String text) {
+        int end = text.length();
+        int lines = countLines(text);
+
+        for (int lineStart = 0; lineStart < end; ) {
+            int lineEnd = indexOf(text, '\n', lineStart, end);
+            int line = lineStart;
+            lineStart = lineEnd + 1;
+
+            if (lineEnd == line) continue;          // skip blank lines
+            if (text.charAt(line) == '%') continue; // ignore commented lines
+
+            if (lineEnd - line < 2)
                 throw new IllegalArgumentException(
-                        "Invalid header. The following Header Line is too short: " + line);
+                        "Invalid header. The following Header Line is too short: " + text.subSequence(line, lineEnd));
 
-            String headerField = line.substring(0, 1); // extract the first letter in the field.
+            char headerField = text.charAt(line); // extract the first letter in the field.
+            int comment = indexOf(text, '%', line, lineEnd);
             String headerText;
-            if(line.indexOf("%") != -1){ // check if a comment exists and where it is located.
-                if (line.indexOf("%") <= 2)
+            if (comment != lineEnd) { // check if a comment exists and where it is located.
+                if (comment - line <= 2)
                     throw new RuntimeException(
-                            "Badly formed header field. Comment declaration appears too soon on this line: " + line);
-                headerText = line.substring(2,line.indexOf("%"));
+                            "Badly formed header field. Comment declaration appears too soon on this line: " + text.subSequence(line, lineEnd));
+                headerText = text.subSequence(line + 2, comment).toString();
             }
             else {
-                if (!line.substring(1,2).equals(":"))
-                    throw new IllegalArgumentException("Unrecognized header field: " + line);
-                headerText = line.substring(2);
+                if (text.charAt(line + 1) != ':')
+                    throw new IllegalArgumentException("Unrecognized header field: " + text.subSequence(line, lineEnd));
+                headerText = text.subSequence(line + 2, lineEnd).toString();
             }
-            
-            if (isValid(headerField.charAt(0))) {
-                
+
+            if (isValid(headerField)) {
+
                 // Check that the first field in the header is the index number ('X')
-                if (fieldNum == 0 && headerField.charAt(0) != 'X')
+                if (fieldNum == 0 && headerField != 'X')
                     throw new RuntimeException(
                             "The first field in the header must be the index number ('X')");
-                
+
                 // Check that the second field in the header is the title ('T')
-                if (fieldNum == 1 && headerField.charAt(0) != 'T')
+                if (fieldNum == 1 && headerField != 'T')
                     throw new RuntimeException(
                             "The second field in the header must be the title ('T')");
-                
+
                 // Check that the last field in the header is the key ('K')"
-                if (fieldNum == (lines.length - 1) && headerField.charAt(0) != 'K')
+                if (fieldNum == (lines - 1) && headerField != KEY_FIELD)
                     throw new RuntimeException(
                             "The last field in the header must be the key ('K')");
-                
-                List<String> l = headerMap.get(headerField.charAt(0));
-                if (l == null) {
-                    headerMap.put(headerField.charAt(0), l = new ArrayList<String>());	
-                } 
-                else if (headerField.charAt(0) != 'V') {  // MultiMap functionality so we can chain multiple voices
+
+                if (headerField == 'V') // MultiMap functionality so we can chain multiple voices
+                    voices.add(headerText);
+                else if (fields[headerField - 'A'] != null)
                     throw new RuntimeException(
-                            "Duplicate instances of the header field " +  headerField.charAt(0));
-                }
-                l.add(headerText);
-                
+                            "Duplicate instances of the header field " +  headerField);
+                else
+                    fields[headerField - 'A'] = headerText;
+
                fieldNum++;
-            }		
+            }
             else
                 throw new IllegalArgumentException("Unrecognized field type: "+ headerField);
         }
+    }
 
-        this.headerMap = headerMap;		
+    /**
+     * Finds where the header of an abc file ends: after the first Key field,
+     * at the end of its line.
+     * @param file a CharSequence holding an abc music file
+     * @return the index after the Key field, or -1 if there is no Key field
+     */
+    public static int findHeaderEnd(CharSequence file) {
+        int length = file.length();
+        for (int i = 0; i + 1 < length; i++) {
+            if (file.charAt(i) == KEY_FIELD && file.charAt(i + 1) == ':') {
+                int end = i + 2;
+                while (end < length && file.charAt(end) != '\n')
+                    end++;
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a header field other than V
+     * @param field the letter of the field
+     * @return the value of the field, or null if it is not in the header
+     */
+    public String getField(char field) {
+        if (field < 'A' || field > 'Z')
+            return null;
+        return fields[field - 'A'];
+    }
+
+    /**
+     * Returns the values of the V fields
+     * @return the voices declared in the header, in order
+     */
+    public List<String> getVoices() {
+        return Collections.unmodifiableList(voices);
     }
-    
+
     /**
      * Getter method for the hash map with header fields and values
-     * @return headerMap a Hash map where the keys the header fields and the value 
+     * @return headerMap a Hash map where the keys the header fields and the value
      * is the the filed's value
      */
     public Map<Character,List<String>> getHeaderMap() {
+        if (headerMap == null) {
+            headerMap = new HashMap<Character,List<String>>();
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    List<String> l = new ArrayList<String>();
+                    l.add(fields[i]);
+                    headerMap.put((char) ('A' + i), l);
+                }
+            }
+            if (!voices.isEmpty())
+                headerMap.put('V', new ArrayList<String>(voices));
+        }
         return headerMap;
     }
 
@@ -92,16 +170,39 @@ public class HeadLexer {
      * @param field Character representing a header field of an abc music file
      * @return True if the character is a valid header character. Otherwise, returns False.
      */
-    public boolean isValid(Character field) { 
+    public boolean isValid(Character field) {
         //  checks if the header field is valid, by checking if it is one of the below
-        return (   field == 'T' 
-                || field == 'K' 
-                || field == 'X' 
-                || field == 'V' 
-                || field == 'M' 
-                || field == 'C' 
-                || field == 'L' 
-                || field == 'K' 
+        return (   field == 'T'
+                || field == 'K'
+                || field == 'X'
+                || field == 'V'
+                || field == 'M'
+                || field == 'C'
+                || field == 'L'
+                || field == 'K'
                 || field == 'Q');
     }
+
+    /**
+     * Helper method to find a character in part of a String
+     * @return the index of c in text between from and end, or end if not found
+     */
+    private static int indexOf(String text, char c, int from, int end) {
+        int index = text.indexOf(c, from);
+        return index < 0 || index > end ? end : index;
+    }
+
+    /**
+     * Helper method that counts the lines of a String the way
+     * String.split("\n") does, ignoring the empty lines at its end
+     */
+    private static int countLines(String text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '\n')
+            end--;
+        int lines = 1;
+        for (int i = text.indexOf('\n'); i >= 0 && i < end; i = text.indexOf('\n', i + 1))
+            lines++;
+        return lines;
+    }
 }
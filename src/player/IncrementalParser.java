@@ -0,0 +1,481 @@
+package player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import auxiliary.Mathematics;
+import auxiliary.MultiplicativeFactor;
+
+/**
+ * Keeps a Song up to date while its abc file is edited, without parsing the
+ * whole file again after every edit.
+ *
+ * The body is cut into runs: stretches of text that end with a bar line,
+ * section or repeat begin, or a voice field. The Parser resets the
+ * accidentals at each of these, so a run always parses the same way in the
+ * voice it belongs to. For every run, the chords it produced are recorded by
+ * voice and position, once per time the run was played.
+ *
+ * An edit re-lexes only the runs it touches. If they keep the same bar
+ * lines, repeats and voices, each run is parsed again on its own and its
+ * chords are spliced into the Song in place of the old ones. Otherwise, or if
+ * the edit touches the header, a run holding an ending or a repeat end, or a
+ * run without chords that a repeat may play again, the whole file is parsed
+ * again.
+ *
+ * The resolution of the Song is the LCM of the resolutions its runs need,
+ * each found with TickResolution from the text of the run. The runs are
+ * counted by resolution, so that the LCM is only taken again, over the
+ * distinct values, when a splice changes one.
+ */
+public class IncrementalParser {
+
+    private static final String NEW_LINE = "\n";
+
+    private final StringBuilder text; // the abc file
+    private String header; // the header, up to the Key field
+    private int bodyStart; // index in the file where the body starts
+    private Song song; // null if the file has to be parsed again
+    private boolean lastEditIncremental = false;
+
+    // runs, in order: offsets in the body, voice, and the delimiter ending it
+    private int runCount;
+    private int[] runStarts;
+    private int[] runEnds;
+    private String[] runVoices;
+    private String[] runDelimiters; // null for the last run
+    private boolean[] runFixed; // holds an ending or a repeat end
+    private List<List<Emission>> runEmissions; // chords produced by each run
+    private Map<String, List<Emission>> voiceEmissions; // in chord order
+    private int[] runTicks; // ticks per whole note each run needs
+    private Map<Integer, Integer> runsByTicks; // number of runs needing each value
+    private boolean ticksByRun; // false if the runs do not give the resolution
+
+    /**
+     * The chords produced by one pass over a run: count Chords of a voice,
+     * starting at index first
+     */
+    private static class Emission {
+        private final String voice;
+        private int first;
+        private int count;
+
+        private Emission(String voice, int first) {
+            this.voice = voice;
+            this.first = first;
+        }
+    }
+
+    /**
+     * Runs found by scanning part of a body, in order
+     */
+    private static class Runs {
+        private final List<Integer> ends = new ArrayList<Integer>();
+        private final List<String> delimiters = new ArrayList<String>();
+        private final List<Boolean> fixed = new ArrayList<Boolean>();
+    }
+
+    /**
+     * Constructs an IncrementalParser and parses the given abc file
+     *
+     * @param file
+     *            : the content of an abc file
+     * @throws RuntimeException
+     *             if the file cannot be parsed
+     */
+    public IncrementalParser(CharSequence file) {
+        this.text = new StringBuilder(file);
+        parseAll();
+    }
+
+    /**
+     * @return the Song for the current content of the file
+     * @throws RuntimeException
+     *             if the file cannot be parsed
+     */
+    public Song getSong() {
+        if (song == null)
+            parseAll();
+        return song;
+    }
+
+    /**
+     * @return the current content of the file
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @return true if the last edit was applied without parsing the whole
+     *         file again
+     */
+    public boolean isLastEditIncremental() {
+        return lastEditIncremental;
+    }
+
+    /**
+     * Replaces the characters of the file from start to end with replacement
+     * and updates the Song.
+     *
+     * @param start
+     *            : index of the first character replaced
+     * @param end
+     *            : index after the last character replaced
+     * @param replacement
+     *            : the text put in their place
+     * @throws IndexOutOfBoundsException
+     *             if start and end are not a range of the file
+     * @throws RuntimeException
+     *             if the edited file cannot be parsed. The edit is kept and
+     *             the file is parsed again by the next getSong()
+     */
+    public void edit(int start, int end, String replacement) {
+        if (start < 0 || end < start || end > text.length())
+            throw new IndexOutOfBoundsException("Cannot replace " + start
+                    + " to " + end + " in a file of length " + text.length());
+        lastEditIncremental = false;
+
+        if (song == null || start < bodyStart) {
+            text.replace(start, end, replacement);
+            song = null;
+            parseAll();
+            return;
+        }
+
+        int firstRun = findRun(start - bodyStart);
+        int lastRun = Math.max(firstRun, findRun(end - bodyStart));
+        // a run is only re-lexed with the delimiter before it
+        int from = firstRun == 0 ? 0 : runEnds[firstRun - 1]
+                - runDelimiters[firstRun - 1].length();
+        int to = runEnds[lastRun];
+        Runs oldRuns = scanRuns(text.subSequence(bodyStart + from,
+                bodyStart + to));
+
+        text.replace(start, end, replacement);
+        int delta = replacement.length() - (end - start);
+        Runs newRuns = scanRuns(text.subSequence(bodyStart + from,
+                bodyStart + to + delta));
+
+        if (!canSplice(firstRun, lastRun, oldRuns, newRuns)) {
+            song = null;
+            parseAll();
+            return;
+        }
+
+        try {
+            int shift = firstRun == 0 ? 0 : 1; // the delimiter before
+            for (int run = firstRun; run <= lastRun; run++) {
+                if (run > firstRun)
+                    runStarts[run] = runEnds[run - 1];
+                runEnds[run] = from + newRuns.ends.get(run - firstRun + shift);
+            }
+            for (int run = lastRun + 1; run < runCount; run++) {
+                runStarts[run] += delta;
+                runEnds[run] += delta;
+            }
+            boolean ticksChanged = false;
+            for (int run = firstRun; run <= lastRun; run++)
+                ticksChanged |= reparseRun(run);
+            if (ticksChanged)
+                song.setTicksForNote(ticksOfRuns());
+        } catch (RuntimeException e) {
+            song = null;
+            throw e;
+        }
+        lastEditIncremental = true;
+    }
+
+    /**
+     * Parses the whole file, rebuilding the runs and the chords they
+     * produced
+     */
+    private void parseAll() {
+        String file = text.toString();
+        final Lexer lexer = new Lexer(file);
+        bodyStart = lexer.getBodyStart();
+        header = file.substring(0, bodyStart);
+        Parser parser = new Parser(lexer);
+        Song parsed = parser.parseFileHeader();
+
+        buildRuns(file.substring(bodyStart),
+                parsed.containsDefaultVoice() ? parsed.Voice_Default : null,
+                parsed.getDefaultNoteLength());
+
+        final Map<String, Integer> chordCounts = new HashMap<String, Integer>();
+        parser.setChordListener(new ChordListener() {
+            private Emission last;
+            private int lastRun = -1;
+            private int lastOffset = -1;
+
+            @Override
+            public void chordParsed(String voice, Chord chord) {
+                Integer count = chordCounts.get(voice);
+                int index = count == null ? 0 : count;
+                chordCounts.put(voice, index + 1);
+
+                int offset = lexer.tokenStart();
+                int run = findRun(offset);
+                // a new pass starts when the run is left or played again; the
+                // chords of a tuplet all come at the offset of the tuplet
+                if (last == null || run != lastRun || offset < lastOffset
+                        || !last.voice.equals(voice)) {
+                    last = new Emission(voice, index);
+                    runEmissions.get(run).add(last);
+                    voiceEmissions.get(voice).add(last);
+                }
+                last.count++;
+                lastRun = run;
+                lastOffset = offset;
+            }
+        });
+        for (String voice : parsed.getVoiceMap().keySet())
+            voiceEmissions.put(voice, new ArrayList<Emission>());
+
+        song = parser.parse();
+        // a tuplet across a bar line needs more than its runs on their own
+        ticksByRun = ticksOfRuns() == song.getTicksForNote();
+    }
+
+    /**
+     * Cuts the body into runs
+     *
+     * @param body
+     *            : the body of the file
+     * @param defaultVoice
+     *            : the voice of the song before any voice field, null if none
+     * @param defaultNoteLength
+     *            : the default length of a note, from the L field
+     */
+    private void buildRuns(String body, String defaultVoice,
+            MultiplicativeFactor defaultNoteLength) {
+        Runs runs = scanRuns(body);
+        runCount = runs.ends.size();
+        runStarts = new int[runCount];
+        runEnds = new int[runCount];
+        runVoices = new String[runCount];
+        runDelimiters = runs.delimiters.toArray(new String[runCount]);
+        runFixed = new boolean[runCount];
+        runEmissions = new ArrayList<List<Emission>>(runCount);
+        voiceEmissions = new HashMap<String, List<Emission>>();
+        runTicks = new int[runCount];
+        runsByTicks = new HashMap<Integer, Integer>();
+
+        String voice = defaultVoice;
+        for (int run = 0; run < runCount; run++) {
+            runStarts[run] = run == 0 ? 0 : runEnds[run - 1];
+            runEnds[run] = runs.ends.get(run);
+            runVoices[run] = voice;
+            runFixed[run] = runs.fixed.get(run);
+            runEmissions.add(new ArrayList<Emission>());
+            runTicks[run] = TickResolution.ticksPerWholeNote(
+                    body.subSequence(runStarts[run], runEnds[run]), defaultNoteLength);
+            countRun(runTicks[run], 1);
+            if (runDelimiters[run] != null && runDelimiters[run].startsWith("V:"))
+                voice = runDelimiters[run].substring(2);
+        }
+    }
+
+    /**
+     * Scans part of a body into runs. The last run ends at the end of the
+     * part and has no delimiter.
+     *
+     * @param body
+     *            : part of a body, starting at the start of a run
+     * @return the runs of the part
+     */
+    private static Runs scanRuns(CharSequence body) {
+        Runs runs = new Runs();
+        BodyLexer lexer = new BodyLexer(body);
+        boolean fixed = false;
+        BodyToken.Type type;
+        while ((type = lexer.nextType()) != BodyToken.Type.EOF) {
+            switch (type) {
+            case BAR:
+            case SECTION_BEGIN:
+            case SECTION_END:
+            case REPEAT_BEGIN:
+            case VOICE:
+                runs.ends.add(lexer.tokenEnd());
+                runs.delimiters.add(lexer.tokenText());
+                runs.fixed.add(fixed);
+                fixed = false;
+                break;
+            case REPEAT_END:
+            case EXTRA_REPEAT:
+                fixed = true;
+                break;
+            default:
+                break;
+            }
+        }
+        runs.ends.add(body.length());
+        runs.delimiters.add(null);
+        runs.fixed.add(fixed);
+        return runs;
+    }
+
+    /**
+     * @param firstRun
+     *            : index of the first edited run
+     * @param lastRun
+     *            : index of the last edited run
+     * @param oldRuns
+     *            : the edited runs before the edit
+     * @param newRuns
+     *            : the edited runs after the edit
+     * @return true if the edited runs can be parsed again one by one
+     */
+    private boolean canSplice(int firstRun, int lastRun, Runs oldRuns,
+            Runs newRuns) {
+        if (!ticksByRun)
+            return false;
+        if (!oldRuns.delimiters.equals(newRuns.delimiters)
+                || oldRuns.fixed.contains(true) || newRuns.fixed.contains(true))
+            return false;
+        int shift = firstRun == 0 ? 0 : 1;
+        // the delimiter before the edited runs must still end where it did
+        if (shift == 1 && !oldRuns.ends.get(0).equals(newRuns.ends.get(0)))
+            return false;
+        // the edited runs must end with their delimiter, unless they are last
+        int last = newRuns.ends.size() - 1;
+        if (lastRun < runCount - 1
+                && !newRuns.ends.get(last).equals(newRuns.ends.get(last - 1)))
+            return false;
+        // a run played again from the start of the body has not been reset
+        if (firstRun == 0 && runEmissions.get(0).size() > 1)
+            return false;
+        // a run without chords does not know how often it is played
+        for (int run = firstRun; run <= lastRun; run++)
+            if (runEmissions.get(run).isEmpty() && mayBePlayedAgain(run))
+                return false;
+        return true;
+    }
+
+    /**
+     * @param run
+     *            : index of a run
+     * @return false if no repeat end can take the Parser back over the run:
+     *         a voice field, repeat begin or section begin comes after it
+     *         before any run holding a repeat end or an ending
+     */
+    private boolean mayBePlayedAgain(int run) {
+        for (int next = run; next < runCount; next++) {
+            if (runFixed[next])
+                return true;
+            String delimiter = runDelimiters[next];
+            if (delimiter == null || delimiter.startsWith("V:")
+                    || delimiter.equals("|:") || delimiter.equals("[|"))
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Parses a run on its own and puts its chords in place of the ones it
+     * produced before, in every pass over the run
+     *
+     * @param run
+     *            : index of the run
+     * @return true if the resolution the run needs has changed
+     */
+    private boolean reparseRun(int run) {
+        StringBuilder file = new StringBuilder(header).append(NEW_LINE);
+        String voice = runVoices[run];
+        if (voice != null && !voice.equals(song.Voice_Default))
+            file.append("V:").append(voice).append(NEW_LINE);
+        file.append(text, bodyStart + runStarts[run], bodyStart + runEnds[run]);
+
+        Song parsed = new Parser(new Lexer(file)).parse();
+        List<Chord> chords = voice == null ? new ArrayList<Chord>() : parsed
+                .getVoiceMap().get(voice).getAllChords();
+
+        List<Emission> emissions = runEmissions.get(run);
+        if (emissions.isEmpty() && !chords.isEmpty())
+            emissions.add(newEmission(run, voice));
+        for (Emission emission : emissions) {
+            int delta = chords.size() - emission.count;
+            song.replaceChords(voice, emission.first, emission.count, chords);
+            emission.count = chords.size();
+            for (Emission other : voiceEmissions.get(voice))
+                if (other.first > emission.first)
+                    other.first += delta;
+        }
+
+        int ticks = TickResolution.ticksPerWholeNote(text.subSequence(
+                bodyStart + runStarts[run], bodyStart + runEnds[run]),
+                song.getDefaultNoteLength());
+        if (ticks == runTicks[run])
+            return false;
+        countRun(runTicks[run], -1);
+        countRun(ticks, 1);
+        runTicks[run] = ticks;
+        return true;
+    }
+
+    /**
+     * Helper method that counts a run more or less for a resolution
+     */
+    private void countRun(int ticks, int change) {
+        Integer runs = runsByTicks.get(ticks);
+        int count = (runs == null ? 0 : runs) + change;
+        if (count == 0)
+            runsByTicks.remove(ticks);
+        else
+            runsByTicks.put(ticks, count);
+    }
+
+    /**
+     * @return the LCM of the resolutions the runs need
+     */
+    private int ticksOfRuns() {
+        int ticks = 1;
+        for (int needed : runsByTicks.keySet())
+            ticks = Mathematics.lcm(ticks, needed);
+        return ticks;
+    }
+
+    /**
+     * Makes the Emission of a run that produced no chords so far and is
+     * played once. It goes after the chords of the runs before it in the same
+     * voice.
+     *
+     * @param run
+     *            : index of the run
+     * @param voice
+     *            : the voice of the run
+     * @return the Emission, recorded for the run and the voice
+     */
+    private Emission newEmission(int run, String voice) {
+        int first = 0;
+        for (int before = run - 1; before >= 0; before--)
+            if (voice.equals(runVoices[before]))
+                for (Emission previous : runEmissions.get(before))
+                    first = Math.max(first, previous.first + previous.count);
+        Emission emission = new Emission(voice, first);
+        runEmissions.get(run).add(emission);
+        List<Emission> inVoice = voiceEmissions.get(voice);
+        int position = 0;
+        while (position < inVoice.size() && inVoice.get(position).first < first)
+            position++;
+        inVoice.add(position, emission);
+        return emission;
+    }
+
+    /**
+     * @param offset
+     *            : an offset in the body
+     * @return the index of the run holding the offset; the end of the body
+     *         belongs to the last run
+     */
+    private int findRun(int offset) {
+        int run = Arrays.binarySearch(runEnds, 0, runCount, offset);
+        // a run ends after its delimiter, so an offset equal to its end is in
+        // the next run
+        run = run >= 0 ? run + 1 : -run - 1;
+        return Math.min(run, runCount - 1);
+    }
+}
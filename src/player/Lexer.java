@@ -1,34 +1,44 @@
 package player;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class Lexer {
 
     private final HeadLexer headerLexer;
     private final BodyLexer bodyLexer;
+    private final int bodyStart; // index in the file where the body starts
 
-    private static final Pattern SEPARATOR = Pattern.compile ("K:[^\\n]*"); // separation between header and body is the KEY field in the Header
-    
     /**
      * Separates abc file into two strings: 
      * (1) the Header, which contains various metadata about the musical piece.
      * (2) the Body, which contains a sequence of notes that make up the musical piece.
-     * @param fileString a String specifying the abc music file
+     * The body is scanned in place, so fileString may be a CharBuffer straight
+     * from AbcFileReader.
+     * @param fileString a CharSequence specifying the abc music file
+     * @throws IllegalArgumentException if the Key field is missing from the abc file header
+     */
+    public Lexer (CharSequence fileString) {
+        this(fileString, new DfaBodyTokenizer());
+    }
+
+    /**
+     * Separates abc file into its Header and Body, tokenizing the Body with the
+     * given BodyTokenizer.
+     * @param fileString a CharSequence specifying the abc music file
+     * @param tokenizer the BodyTokenizer used by the BodyLexer
      * @throws IllegalArgumentException if the Key field is missing from the abc file header
      */
-    public Lexer (String fileString) {
-        Matcher matcher = SEPARATOR.matcher(fileString);
+    public Lexer (CharSequence fileString, BodyTokenizer tokenizer) {
+        // separation between header and body is the KEY field in the Header
+        int headerEnd = HeadLexer.findHeaderEnd(fileString);
 
-        if(!matcher.find()) {
+        if(headerEnd < 0) {
             throw new IllegalArgumentException("Key field missing from abc file");
         }
         else {
-            this.headerLexer = new HeadLexer (fileString.substring(0, matcher.end())); // constructs the header map.
-            this.bodyLexer = new BodyLexer (fileString.substring(matcher.end())); // proceeds to tokenize the body for parsing
+            this.bodyStart = headerEnd;
+            this.headerLexer = new HeadLexer (fileString, 0, headerEnd); // constructs the header fields.
+            this.bodyLexer = new BodyLexer (fileString.subSequence(headerEnd, fileString.length()), tokenizer); // proceeds to tokenize the body for parsing
         }
     }
-
     
     /**
      * Getter method for HeadLexer
@@ -38,6 +48,21 @@ public class Lexer {
         return headerLexer;
     }
 
+    /**
+     * @return the body of the abc file, after the Key field
+     */
+    public CharSequence getBody() {
+        return bodyLexer.getBody();
+    }
+
+    /**
+     * @return the index in the abc file where the body starts, just after the
+     *         Key field
+     */
+    public int getBodyStart() {
+        return bodyStart;
+    }
+
     /**
      * Returns the next BodyToken encountered in the body. Mutates lexer.
      * @return BodyToken specifying the next encountered grouping in the body
@@ -55,6 +80,73 @@ public class Lexer {
         return bodyLexer.peek(); // don't remove the next token.
     }
 
+    /**
+     * Returns the BodyToken k positions after the next one. Does not mutate lexer.
+     * peekToken(0) is the same as peekToken().
+     * @param k number of tokens to look past
+     * @return BodyToken specifying the (k+1)-th next grouping in the body
+     */
+    public BodyToken peekToken(int k) {
+        return bodyLexer.peek(k);
+    }
+
+    /**
+     * Moves to the next BodyToken and returns its type without building the
+     * BodyToken. Mutates lexer.
+     * @return type of the next grouping in the body, EOF if none left
+     */
+    public BodyToken.Type nextTokenType() {
+        return bodyLexer.nextType();
+    }
+
+    /**
+     * Returns the type of the next BodyToken. Does not mutate lexer.
+     * @return type of the next grouping in the body, EOF if none left
+     */
+    public BodyToken.Type peekTokenType() {
+        return bodyLexer.peekType();
+    }
+
+    /**
+     * Returns the type of the BodyToken k positions after the next one. Does
+     * not mutate lexer.
+     * @param k number of tokens to look past
+     * @return type of the (k+1)-th next grouping in the body, EOF if none left
+     */
+    public BodyToken.Type peekTokenType(int k) {
+        return bodyLexer.peekType(k);
+    }
+
+    /**
+     * @return the text of the token last moved to, "" at the end of the body
+     */
+    public String tokenText() {
+        return bodyLexer.tokenText();
+    }
+
+    /**
+     * @param index index of a character in the token, 0 for the first one
+     * @return the character at index in the token last moved to
+     */
+    public char tokenChar(int index) {
+        return bodyLexer.tokenChar(index);
+    }
+
+    /**
+     * @return the number of characters in the token last moved to
+     */
+    public int tokenLength() {
+        return bodyLexer.tokenLength();
+    }
+
+    /**
+     * @return the offset in the body of the token last moved to, -1 at the
+     *         end of the body
+     */
+    public int tokenStart() {
+        return bodyLexer.tokenStart();
+    }
+
     /**
      * Takes the BodyLexer back to where it last encountered majorSection
      * in the body before the current index. Mutates the state of the lexer.
@@ -75,10 +167,11 @@ public class Lexer {
     }
 
     /**
-     * Deletes the most recent returned BodyToken from the body
+     * Skips the most recent returned BodyToken, so that it is not returned
+     * again if the BodyLexer goes back over it
      */
-    public boolean deleteLastToken() {
-        return bodyLexer.deleteLastToken();
+    public boolean skipLastToken() {
+        return bodyLexer.skipLastToken();
     }
 
 }
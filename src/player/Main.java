@@ -1,18 +1,10 @@
 package player;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.List;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
-import auxiliary.MultiplicativeFactor;
-
-
+import sound.NoteScheduler;
 import sound.SequencePlayer;
 
 /**
@@ -20,6 +12,9 @@ import sound.SequencePlayer;
  */
 public class Main {
 
+	// resolution used when playing while parsing, before all lengths are known
+	private static final int STREAMING_TICKS_PER_QUARTER = 960;
+
 	/**
 	 * Plays the input file using Java MIDI API and displays
 	 * header information to the standard output stream.
@@ -30,33 +25,44 @@ public class Main {
 	 * @param file the name of input abc file
 	 */
 	public static void play(String file) {
+		play(file, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Plays the input file like play(file), at no more than the given number
+	 * of ticks per quarter note. Finer songs are quantized, and the largest
+	 * timing error this introduces is displayed.
+	 * 
+	 * @param file the name of input abc file
+	 * @param maxTicksPerQuarter the highest resolution to play at, e.g. 960
+	 */
+	public static void play(String file, int maxTicksPerQuarter) {
 		
-		String inputFile = readFileIntoString(file);
+		CharSequence inputFile = AbcFileReader.read(file);
 		Lexer lexer = new Lexer(inputFile);
 		Parser parser = new Parser(lexer);
 
-		Song piece = parser.parse();
+		Song piece = parser.parseTicks(true);
 		piece.displaySongInfo();
 
-		List<AugmentedMIDI> musicNotes = MusicVisitor.getMIDINotes(piece, 0, (int) piece.getTicksForNote());
+		// ticks for each quarter = Num(ticks/fullNote) / 4
+		Quantizer quantizer = new Quantizer(piece.getTicksForNote()/4, maxTicksPerQuarter);
 
-		SequencePlayer player;
 		try {
 			//Default: 2 ticks per quarter note
 			// default tempo 120 / min
-			MultiplicativeFactor initialLength = piece.getDefaultNoteLength(); // default length of single note
-			int initialTempo = piece.getSongTempo(); // the starting tempo
-	
-			//tempo expressed in quarters: Num(quarter/minute) = Num(defaultNotes/minute) * Num(fullNote/defaultNote) * Num(quarter/fullNote)
-			int tempoExpressedAsQuarters = ((4 * initialTempo * initialLength.getNum()) / initialLength.getDenom());
-
-			// ticks for each quarter = Num(ticks/fullNote) / 4
-			player = new SequencePlayer(tempoExpressedAsQuarters,(int) piece.getTicksForNote()/4);
-
-			for(AugmentedMIDI midi : musicNotes) {
-				player.addNote(midi.getPitch(), midi.getStart(), midi.getDuration());
+			int tempoExpressedAsQuarters = piece.getQuarterTempo();
+
+			SequencePlayer player = new SequencePlayer(tempoExpressedAsQuarters, quantizer.getTicksPerQuarter());
+			// the events go straight from the song to the player, in the order of the track
+			NoteEventMerger events = new NoteEventMerger(piece, 0, piece.getTicksForNote(), quantizer);
+			while (events.hasNext()) {
+				NoteEvent event = events.next();
+				player.addEvent(event.getCommand(), event.getPitch(), event.getTick());
 			}
 
+			if (!quantizer.isExact())
+				System.out.println(quantizer + " (" + quantizer.getMaxErrorMillis(tempoExpressedAsQuarters) + " ms)");
 			System.out.println(player);
 			player.play();
 
@@ -67,29 +73,51 @@ public class Main {
 		}
 	}
 	
+	/**
+	 * Plays the input file while it is being parsed, so that the first notes
+	 * sound after the first bars are parsed rather than after the whole file.
+	 * Displays header information to the standard output stream.
+	 * 
+	 * @param file the name of input abc file
+	 */
+	public static void playStreaming(String file) {
+		Parser parser = new Parser(new Lexer(AbcFileReader.read(file)));
+		Song header = parser.parseFileHeader();
+		header.displaySongInfo();
+
+		try {
+			// start once the first bar of 4 quarters is ready in every voice
+			NoteScheduler scheduler = new NoteScheduler(header.getQuarterTempo(),
+					STREAMING_TICKS_PER_QUARTER, 4 * STREAMING_TICKS_PER_QUARTER);
+			StreamingRenderer renderer = new StreamingRenderer(header, scheduler,
+					STREAMING_TICKS_PER_QUARTER);
+			parser.setChordListener(renderer);
+
+			scheduler.start();
+			try {
+				parser.parse();
+				renderer.flush();
+			} finally {
+				scheduler.finish();
+			}
+			scheduler.await();
+
+		} catch (MidiUnavailableException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
     /**
      * Helper method that converts the content of an abc music file into a string.  
+     * Prefer AbcFileReader.read, which avoids materialising the String.
      * @param filePath a String specifying a unique the location of an abc music file
      * @return String representing the content of an abc music file 
      * @throws RuntimeException if the file is not found or if IO exception is encountered.
      */
     public static String readFileIntoString (String filePath){
-
-        String readLine = null; // line to append
-        StringBuffer fileString = new StringBuffer();
-        try {
-            File file = new File(filePath);
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            while ((readLine = reader.readLine()) != null)
-                // make sure we know where the line ended
-                fileString.append(readLine + "\n");
-            reader.close();
-        } catch (FileNotFoundException ex) {
-            throw new RuntimeException("File Not Found");
-        } catch (IOException ex) {
-            throw new RuntimeException("IO exception encountered while reading file");
-        }
-        return fileString.toString();
+        return AbcFileReader.read(filePath).toString();
     }
 
 	public static void main(String[] args) {
@@ -0,0 +1,134 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * Turns songs into Standard MIDI Files of type 1 without a Sequencer or any
+ * other MIDI device, so it runs on machines without audio. The first track
+ * holds the title and the tempo, and each voice gets a track of its own,
+ * named after it and playing on a channel of its own, channel 10 (drums)
+ * left out.
+ */
+public class MidiExporter {
+
+    /** resolution songs are quantized to when they are finer */
+    public static final int MAX_TICKS_PER_QUARTER = 960;
+
+    private static final int MULTIPLE_TRACKS = 1; // type of the MIDI files
+    private static final int TRACK_NAME = 0x03; // meta message types
+    private static final int SET_TEMPO = 0x51;
+    private static final int VELOCITY = 100;
+    private static final int DRUM_CHANNEL = 9;
+    private static final int CHANNELS = 16;
+
+    /**
+     * Converts a song into a Sequence of one track per voice
+     *
+     * @param song
+     *            : a parsed song
+     * @param maxTicksPerQuarter
+     *            : the highest resolution of the sequence; finer songs are
+     *            quantized
+     * @return the Sequence
+     * @throws InvalidMidiDataException
+     *             if a note is out of the MIDI range
+     */
+    public static Sequence toSequence(Song song, int maxTicksPerQuarter)
+            throws InvalidMidiDataException {
+        // ticks for each quarter = Num(ticks/fullNote) / 4
+        Quantizer quantizer = new Quantizer(song.getTicksForNote() / 4, maxTicksPerQuarter);
+        Sequence sequence = new Sequence(Sequence.PPQ, quantizer.getTicksPerQuarter());
+
+        Track conductor = sequence.createTrack();
+        if (song.getSongTitle() != null)
+            conductor.add(meta(TRACK_NAME, song.getSongTitle().getBytes(StandardCharsets.UTF_8)));
+        int microsPerQuarter = 60000000 / song.getQuarterTempo();
+        conductor.add(meta(SET_TEMPO, new byte[] { (byte) (microsPerQuarter >> 16),
+                (byte) (microsPerQuarter >> 8), (byte) microsPerQuarter }));
+
+        int index = 0;
+        for (Voice voice : song.getVoiceMap().values()) {
+            Track track = sequence.createTrack();
+            track.add(meta(TRACK_NAME, voice.getVoiceName().getBytes(StandardCharsets.UTF_8)));
+            int channel = channel(index);
+            NoteEventMerger events = new NoteEventMerger(Collections.singletonList(voice), index,
+                    0, song.getTicksForNote(), quantizer, Long.MAX_VALUE);
+            while (events.hasNext()) {
+                NoteEvent event = events.next();
+                track.add(new MidiEvent(new ShortMessage(event.getCommand(), channel,
+                        event.getPitch(), VELOCITY), event.getTick()));
+            }
+            index++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes a song to a Standard MIDI File of type 1
+     *
+     * @param song
+     *            : a parsed song
+     * @param maxTicksPerQuarter
+     *            : the highest resolution of the file
+     * @param file
+     *            : the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     * @throws InvalidMidiDataException
+     *             if a note is out of the MIDI range
+     */
+    public static void write(Song song, int maxTicksPerQuarter, File file)
+            throws IOException, InvalidMidiDataException {
+        MidiSystem.write(toSequence(song, maxTicksPerQuarter), MULTIPLE_TRACKS, file);
+    }
+
+    /**
+     * Parses an abc file and writes it to a Standard MIDI File of type 1, at
+     * no more than MAX_TICKS_PER_QUARTER. The file is written by SmfWriter,
+     * without building a Sequence.
+     *
+     * @param abcFile
+     *            : the name of the abc file
+     * @param midiFile
+     *            : the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     * @throws IllegalArgumentException
+     *             if a note is out of the MIDI range
+     */
+    public static void export(String abcFile, File midiFile) throws IOException {
+        Song song = new Parser(new Lexer(AbcFileReader.read(abcFile))).parseTicks(true);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(midiFile));
+        try {
+            SmfWriter.write(song, MAX_TICKS_PER_QUARTER, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the channel of the voice at index, skipping the drum channel
+     */
+    static int channel(int index) {
+        int channel = index % (CHANNELS - 1);
+        return channel < DRUM_CHANNEL ? channel : channel + 1;
+    }
+
+    private static MidiEvent meta(int type, byte[] data) throws InvalidMidiDataException {
+        return new MidiEvent(new MetaMessage(type, data, data.length), 0);
+    }
+}
@@ -1,87 +1,116 @@
 package player;
-import java.util.HashMap; 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import sound.Pitch;
 
+/**
+ * The accidentals in force while a bar is parsed: those of the key signature,
+ * and those met earlier in the bar.
+ *
+ * The key signatures are computed once, when the class is loaded. The
+ * accidentals of a bar are kept in an array with a slot per natural note and
+ * octave, and each slot is stamped with the bar it was set in, so starting a
+ * new bar is just moving on to the next stamp. As before, the key signature
+ * only applies to the notes of the middle octave.
+ */
 public class Modifiers {
-	
-	private Map<Pitch, Pitch> modifiers;
+
+	// index of each natural note among C, D, E, F, G, A, B, by its value in semitones
+	private static final int[] STEPS = { 0, -1, 1, -1, 2, 3, -1, 4, -1, 5, -1, 6 };
+	private static final int STEP_COUNT = 7;
+	private static final int MIN_OCTAVE = -5; // octaves kept in the array
+	private static final int MAX_OCTAVE = 5;
+
+	// semitones added to each natural note by each key signature
+	private static final Map<String, int[]> keySignatures = buildKeySignatures();
+
+	private final int[] keyAccidentals; // of the key signature, by step
+	private final int[] accidentals = new int[STEP_COUNT * (MAX_OCTAVE - MIN_OCTAVE + 1)];
+	private final int[] stamps = new int[accidentals.length]; // bar each accidental was set in
+	private int bar = 1; // stamp of the current bar
+	private Map<Pitch, Pitch> otherPitches; // pitches outside the array, null until needed
+
 	/**
-	 * Constructs an instance of Modifiers
-	 * @param startMap : The initial Map of modifiers
+	 * Constructs an instance of Modifiers with no accidentals, as in C major
 	 */
-	public Modifiers(Map<Pitch, Pitch> startMap) {
-		modifiers = new HashMap<Pitch, Pitch>();
-		for (Pitch pitch : startMap.keySet()) {
-			modifiers.put(pitch, startMap.get(pitch));
-		}
+	public Modifiers() {
+		this(new int[STEP_COUNT]);
 	}
-	
+
 	/**
-	 * Constructs an instance of Modifiers
+	 * Constructs an instance of Modifiers for a key signature
+	 * @param keyAccidentals : the semitones the key adds to each natural note
 	 */
-	public Modifiers() {
-		modifiers = new HashMap<Pitch, Pitch>();
+	private Modifiers(int[] keyAccidentals) {
+		this.keyAccidentals = keyAccidentals;
 	}
-	
+
 	/**
 	 * Creates a copy of a modifiers map
 	 * @return : a copy of the modifiers map
 	 */
 	public static Modifiers clone(Modifiers other) {
-		Modifiers clonedModifiers = new Modifiers(other.getAccidentals());
+		Modifiers clonedModifiers = new Modifiers(other.keyAccidentals);
+		System.arraycopy(other.accidentals, 0, clonedModifiers.accidentals, 0, other.accidentals.length);
+		System.arraycopy(other.stamps, 0, clonedModifiers.stamps, 0, other.stamps.length);
+		clonedModifiers.bar = other.bar;
+		if (other.otherPitches != null)
+			clonedModifiers.otherPitches = new HashMap<Pitch, Pitch>(other.otherPitches);
 		return clonedModifiers;
 	}
-	
+
+	/**
+	 * Drops the accidentals met so far, keeping only the key signature, e.g.
+	 * at a bar line
+	 */
+	public void reset() {
+		if (bar == Integer.MAX_VALUE) { // stamps would wrap around
+			java.util.Arrays.fill(stamps, 0);
+			bar = 0;
+		}
+		bar++;
+		if (otherPitches != null)
+			otherPitches.clear();
+	}
+
 	/**
 	 * Modifies the original Pitch given the string accidental
 	 * @param prevPitch : the original Pitch to be modified
 	 * @param accidental : The accidental to be applied
 	 */
 	public void applyMods(Pitch prevPitch, String accidental) {
-		Pitch newPitch = prevPitch;
+		int semitones = 0;
 		for (int location = 0; location < accidental.length(); ++location) {
 			switch (accidental.charAt(location)) {
 			case '=': // neutral
-				newPitch = prevPitch;
+				semitones = 0;
 				break;
-				
+
 			case '^': // sharp
-				newPitch = newPitch.accidentalTranspose(1);
+				semitones++;
 				break;
 
 			case '_': // flat
-				newPitch = newPitch.accidentalTranspose(-1);
+				semitones--;
 				break;
-				
+
 			default:
 				throw new RuntimeException("Accidental Type not recognized" + accidental.charAt(location));
 			}
 		}
-		modifiers.put(prevPitch, newPitch);
-	}
-
-	/**
-	 * Modifies the Modifiers map by applying the accidental
-	 * @return : a new Modifiers map that accounts for this accidental
-	 */
-	private Modifiers extendMods(Pitch prevPitch, String accidental) {
-		Modifiers newMods  = new Modifiers(this.getAccidentals());
-		newMods.applyMods(prevPitch, accidental);
-		return newMods;
-	}
 
-	/**
-	 * Returns a copy of the Modifiers Map
-	 * @return : A copy of the modifiers map
-	 */
-	private Map<Pitch, Pitch> getAccidentals() {
-		Map<Pitch, Pitch> copyOfMods = new HashMap<Pitch, Pitch>();
-		for (Pitch pitch : modifiers.keySet()) {
-			copyOfMods.put(pitch, modifiers.get(pitch));
+		int slot = slot(prevPitch);
+		if (slot >= 0) {
+			accidentals[slot] = semitones;
+			stamps[slot] = bar;
+		}
+		else {
+			if (otherPitches == null)
+				otherPitches = new HashMap<Pitch, Pitch>();
+			otherPitches.put(prevPitch, prevPitch.accidentalTranspose(semitones));
 		}
-		return copyOfMods;
 	}
 
 	/** Returns modified pitch given an original pitch
@@ -90,50 +119,106 @@ public class Modifiers {
 	 * @return : the modified pitch , if accidentals are applied or the original pitch
 	 */
 	public Pitch applyModsTo(Pitch originalPitch) {
-		if (!modifiers.containsKey(originalPitch))
-			return originalPitch;
+		int slot = slot(originalPitch);
+		if (slot < 0) {
+			if (otherPitches == null || !otherPitches.containsKey(originalPitch))
+				return originalPitch;
+			return otherPitches.get(originalPitch);
+		}
+
+		int semitones;
+		if (stamps[slot] == bar)
+			semitones = accidentals[slot];
+		else if (originalPitch.getOctave() == 0)
+			semitones = keyAccidentals[STEPS[originalPitch.getValue()]];
 		else
-			return modifiers.get(originalPitch);
+			semitones = 0;
+		return semitones == 0 ? originalPitch : originalPitch.accidentalTranspose(semitones);
 	}
+
+	/**
+	 * @return the slot in the array of a natural pitch, or -1 if it has an
+	 * accidental or is too high or low to have one
+	 */
+	private static int slot(Pitch pitch) {
+		if (pitch.getAccidental() != 0 || pitch.getOctave() < MIN_OCTAVE || pitch.getOctave() > MAX_OCTAVE)
+			return -1;
+		return (pitch.getOctave() - MIN_OCTAVE) * STEP_COUNT + STEPS[pitch.getValue()];
+	}
+
 	/** Converts the Map of modifiers into a string
-	 * @return : A string representing the modifiers map 
+	 * @return : A string representing the modifiers map
 	 */
 	@Override
 	public String toString() {
+		Map<Pitch, Pitch> modifiers = new LinkedHashMap<Pitch, Pitch>();
+		for (char note : "CDEFGAB".toCharArray()) {
+			Pitch pitch = Pitch.valueOf(note);
+			if (keyAccidentals[STEPS[pitch.getValue()]] != 0)
+				modifiers.put(pitch, pitch.accidentalTranspose(keyAccidentals[STEPS[pitch.getValue()]]));
+		}
+		for (int octave = MIN_OCTAVE; octave <= MAX_OCTAVE; octave++) {
+			for (char note : "CDEFGAB".toCharArray()) {
+				Pitch pitch = Pitch.valueOf(note).octaveTranspose(octave);
+				int slot = slot(pitch);
+				if (stamps[slot] == bar)
+					modifiers.put(pitch, pitch.accidentalTranspose(accidentals[slot]));
+			}
+		}
+		if (otherPitches != null)
+			modifiers.putAll(otherPitches);
 		return modifiers.toString();
 	}
+
 	/**
 	 * Returns the Starting Modifiers map for a key
-	 * @return : the starting Modifiers map for 
+	 * @return : the starting Modifiers map for
 	 */
 	public static Modifiers getStartMods(String key) {
-		Map<String, Modifiers> startMods = new HashMap<String, Modifiers>();
-		startMods.put("Am", new Modifiers());
-		startMods.put("C", new Modifiers()); 
+		if (!keySignatures.containsKey(key))
+			throw new RuntimeException("Key Signature: " + key + "  is not recognized");
+
+		return new Modifiers(keySignatures.get(key));
+	}
+
+	/**
+	 * Computes the accidentals of every key signature
+	 * @return : the semitones each key adds to each natural note, by key
+	 */
+	private static Map<String, int[]> buildKeySignatures() {
+		Map<String, int[]> startMods = new HashMap<String, int[]>();
+		startMods.put("Am", new int[STEP_COUNT]);
+		startMods.put("C", new int[STEP_COUNT]);
 
 		// source http://en.wikipedia.org/wiki/Key_signature
 		char[] addedFlat = new char[]{' ', 'B', 'E', 'A', 'D', 'G', 'C', 'F'};
 		final String[] majorFlats = new String[]{"C", "F", "Bb", "Eb", "Ab", "Db", "Gb", "Cb"};
 		final String[] minorFlats = new String[]{"Am", "Dm", "Gm", "Cm", "Fm", "Bbm", "Ebm", "Abm"};
-		
+
 
 		for (int numFlats = 1; numFlats < majorFlats.length; numFlats=numFlats+1) {
-			startMods.put(majorFlats[numFlats], startMods.get(majorFlats[numFlats - 1]).extendMods(new Pitch(addedFlat[numFlats]), "_"));
-			startMods.put(minorFlats[numFlats], startMods.get(minorFlats[numFlats - 1]).extendMods(new Pitch(addedFlat[numFlats]), "_"));
+			startMods.put(majorFlats[numFlats], extendKey(startMods.get(majorFlats[numFlats - 1]), addedFlat[numFlats], -1));
+			startMods.put(minorFlats[numFlats], extendKey(startMods.get(minorFlats[numFlats - 1]), addedFlat[numFlats], -1));
 		}
-		
+
 		char[] addedSharp = new char[]{' ', 'F', 'C', 'G', 'D', 'A', 'E', 'B'};
 		final String[] majorSharps = new String[]{"C", "G", "D", "A", "E", "B", "F#", "C#"};
 		final String[] minorSharps = new String[]{"Am", "Em", "Bm", "F#m", "C#m", "G#m", "D#m", "A#m"};
-		
+
 
 		for (int numSharps = 1; numSharps < majorSharps.length; numSharps=numSharps+1) {
-			startMods.put(majorSharps[numSharps], startMods.get(majorSharps[numSharps - 1]).extendMods(new Pitch(addedSharp[numSharps]), "^"));
-			startMods.put(minorSharps[numSharps],startMods.get(minorSharps[numSharps - 1]).extendMods(new Pitch(addedSharp[numSharps]), "^"));
+			startMods.put(majorSharps[numSharps], extendKey(startMods.get(majorSharps[numSharps - 1]), addedSharp[numSharps], 1));
+			startMods.put(minorSharps[numSharps], extendKey(startMods.get(minorSharps[numSharps - 1]), addedSharp[numSharps], 1));
 		}
-		if (!startMods.containsKey(key))
-			throw new RuntimeException("Key Signature: " + key + "  is not recognized");
-		
-		return startMods.get(key);
+		return startMods;
+	}
+
+	/**
+	 * @return : a copy of the key's accidentals with one more sharp or flat
+	 */
+	private static int[] extendKey(int[] key, char note, int semitones) {
+		int[] newKey = key.clone();
+		newKey[STEPS[Pitch.valueOf(note).getValue()]] = semitones;
+		return newKey;
 	}
 }
@@ -19,6 +19,17 @@ public interface MusicInterface {
 	}
 	
 	public <R> R accept(MusicalVisitor<R> visitor);
+
+	/**
+	 * @return the length in whole notes, or null if the length was resolved
+	 *         to ticks while parsing (see Parser.parseTicks)
+	 */
 	public MultiplicativeFactor getLength();
 
+	/**
+	 * @return the length in ticks of the Song's resolution if it was resolved
+	 *         while parsing (see Parser.parseTicks), -1 otherwise
+	 */
+	public long getTicks();
+
 }
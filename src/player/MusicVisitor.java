@@ -2,21 +2,43 @@ package player;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
 import player.MusicInterface.MusicalVisitor;
 
 public class MusicVisitor implements MusicalVisitor<List<AugmentedMIDI>> {
 
+	// chords a song needs before its voices are rendered in parallel
+	private static final int PARALLEL_CHORDS = 4096;
+
 	private int start;
 	private final int numTicks;
+	private final ForkJoinPool pool; // renders the voices of a song, null to render them in turn
 	
 	/**
-	 * Creates an instance of MusicVisitor
+	 * Creates an instance of MusicVisitor. The voices of a large song are
+	 * rendered in parallel on the common ForkJoinPool if it has more than one
+	 * thread.
 	 * @param start
 	 * @param numTicks
 	 */
 	public MusicVisitor(int start, int numTicks) {
+		this(start, numTicks, ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool() : null);
+	}
+
+	/**
+	 * Creates an instance of MusicVisitor
+	 * @param start
+	 * @param numTicks
+	 * @param pool : renders the voices of a large song in parallel, or null
+	 * to render them one after the other
+	 */
+	public MusicVisitor(int start, int numTicks, ForkJoinPool pool) {
 		this.start = start;
 		this.numTicks=numTicks;
+		this.pool = pool;
 	}
 	
 	@Override
@@ -44,6 +66,8 @@ public class MusicVisitor implements MusicalVisitor<List<AugmentedMIDI>> {
 
 	@Override
 	public List<AugmentedMIDI> on(Voice v) {
+		if (v.getColumns() != null)
+			return onColumns(v.getColumns());
 		List<AugmentedMIDI> fullVoice = new ArrayList<AugmentedMIDI>();
 
 		for(Chord chord: v.getAllChords())  {
@@ -53,23 +77,78 @@ public class MusicVisitor implements MusicalVisitor<List<AugmentedMIDI>> {
 		return fullVoice;
 	}
 
+	/**
+	 * Every voice starts at the same tick, so the voices of a large song are
+	 * rendered as separate tasks of the pool, each into its own list. The
+	 * lists are joined in the order of the voices, so the notes come out in
+	 * the same order as when the voices are rendered in turn.
+	 */
 	@Override
 	public List<AugmentedMIDI> on(Song s) {
 		List<AugmentedMIDI> fullSong = new ArrayList<AugmentedMIDI>();
 
-		for(Voice voice: s.getVoiceMap().values()) {
-			fullSong.addAll(getMIDINotes(voice,this.start,this.numTicks));
+		if (pool == null || s.getVoiceMap().size() < 2 || countChords(s) < PARALLEL_CHORDS) {
+			for(Voice voice: s.getVoiceMap().values()) {
+				fullSong.addAll(getMIDINotes(voice,this.start,this.numTicks));
+			}
+			return fullSong;
+		}
+
+		List<ForkJoinTask<List<AugmentedMIDI>>> voices = new ArrayList<ForkJoinTask<List<AugmentedMIDI>>>();
+		for(final Voice voice: s.getVoiceMap().values()) {
+			final int voiceStart = this.start;
+			voices.add(pool.submit(new RecursiveTask<List<AugmentedMIDI>>() {
+				@Override
+				protected List<AugmentedMIDI> compute() {
+					return getMIDINotes(voice, voiceStart, numTicks);
+				}
+			}));
+		}
+		for (ForkJoinTask<List<AugmentedMIDI>> voice : voices) {
+			fullSong.addAll(voice.join());
 		}
 		return fullSong;
 	}
 
 	/**
-	 * 
+	 * @param s
+	 * @return the number of chords in all the voices of s
+	 */
+	private static int countChords(Song s) {
+		int chords = 0;
+		for (Voice voice : s.getVoiceMap().values())
+			chords += voice.getAllChords().size();
+		return chords;
+	}
+
+	/**
+	 * Reads the notes of a voice straight from its columns
+	 * @param columns
+	 * @return
+	 */
+	private List<AugmentedMIDI> onColumns(NoteColumns columns) {
+		List<AugmentedMIDI> fullVoice = new ArrayList<AugmentedMIDI>(columns.size());
+		for (int note = 0; note < columns.size(); note++) {
+			if (columns.getMidiNote(note) != NoteColumns.REST) //rests are not added
+				fullVoice.add(new AugmentedMIDI(columns.getMidiNote(note),
+						Math.toIntExact(this.start + columns.getStart(note)),
+						Math.toIntExact(columns.getDuration(note))));
+		}
+		this.start += Math.toIntExact(columns.getTicks());
+		return fullVoice;
+	}
+
+	/**
+	 * Lengths resolved to ticks while parsing are copied as they are, so for
+	 * a Song from Parser.parseTicks numTicks must be its getTicksForNote()
 	 * @param m
 	 * @param numTicks
 	 * @return
 	 */
 	private int getDuration(MusicInterface m, int numTicks) {
+		if (m.getTicks() >= 0)
+			return Math.toIntExact(m.getTicks());
+
 		int num = m.getLength().getNum();
 		int denom = m.getLength().getDenom();
 
@@ -87,4 +166,17 @@ public class MusicVisitor implements MusicalVisitor<List<AugmentedMIDI>> {
 		return music.accept(new MusicVisitor(start, numTicks));
 	}
 
+	/**
+	 * Renders music, with the voices of a large song rendered in parallel
+	 * @param music
+	 * @param start
+	 * @param numTicks
+	 * @param pool : the pool that renders the voices, or null to render
+	 * them one after the other
+	 * @return the notes, in the same order whatever the pool
+	 */
+	public static List<AugmentedMIDI> getMIDINotes(MusicInterface music, int start, int numTicks, ForkJoinPool pool) {
+		return music.accept(new MusicVisitor(start, numTicks, pool));
+	}
+
 }
@@ -8,6 +8,7 @@ public class Note implements MusicInterface {
 	
 	    private final Pitch pitch;
 	    private MultiplicativeFactor length; //not final for
+	    private long ticks; // -1 unless the length is given in ticks
 
 	    /**Constructs a Note
 	     * 
@@ -17,6 +18,18 @@ public class Note implements MusicInterface {
 	    public Note(Pitch pitch, MultiplicativeFactor  length) {
 	        this.pitch = pitch;
 	        this.length = length;
+	        this.ticks = -1;
+	    }
+
+	    /**Constructs a Note whose length is already resolved to ticks
+	     * 
+	     * @param pitch : pitch of the note
+	     * @param ticks : length of the note in ticks of the Song's resolution
+	     */
+	    public Note(Pitch pitch, long ticks) {
+	        this.pitch = pitch;
+	        this.length = null;
+	        this.ticks = ticks;
 	    }
 	    
 	    @Override
@@ -28,6 +41,11 @@ public class Note implements MusicInterface {
 	    public MultiplicativeFactor  getLength() {
 	        return length;
 	    }
+
+	    @Override
+	    public long getTicks() {
+	        return ticks;
+	    }
 	    
 	    /**
 	     * Returns the Note's pitch
@@ -41,5 +59,9 @@ public class Note implements MusicInterface {
 			this.length = length;
 			
 		}
+
+		public void setTicks(long ticks) {
+			this.ticks = ticks;
+		}
 	}
 
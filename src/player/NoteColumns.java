@@ -0,0 +1,204 @@
+package player;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import sound.Pitch;
+
+/**
+ * The notes of a voice stored column by column, in parallel primitive arrays:
+ * the midi note and accidental of each note, its start and length in ticks,
+ * and the index of the chord it belongs to. A sounding note costs 25 bytes
+ * instead of a Note, a Pitch reference and its share of a Chord and its
+ * ArrayList.
+ *
+ * Notes are appended chord by chord, so the chord indices are increasing and
+ * the notes of a chord are next to each other. The arrays double when full.
+ *
+ * Chords and Notes can still be read through getChords(), which builds them
+ * from the columns on each call: changing them does not change the columns.
+ */
+public class NoteColumns {
+
+    /** midi note stored for a rest */
+    public static final int REST = Integer.MIN_VALUE;
+
+    private int[] midiNotes = new int[16];
+    private byte[] accidentals = new byte[16];
+    private long[] starts = new long[16];
+    private long[] durations = new long[16];
+    private int[] chords = new int[16]; // index of the chord of each note
+    private int size = 0;
+    private int chordCount = 0;
+    private long ticks = 0; // end of the last chord
+
+    /**
+     * Appends a Chord whose notes are given in ticks, starting where the
+     * previous one ends
+     *
+     * @param chord
+     *            : a Chord of notes given in ticks
+     * @return the start tick of the chord
+     * @throws IllegalArgumentException
+     *             if the lengths of the chord are not given in ticks
+     */
+    public long addChord(Chord chord) {
+        if (chord.getTicks() < 0)
+            throw new IllegalArgumentException(
+                    "Only chords given in ticks can be stored in columns");
+        long start = ticks;
+        for (Note note : chord.getAllNotes()) {
+            Pitch pitch = note.getPitch();
+            if (pitch == null)
+                add(REST, 0, start, note.getTicks());
+            else
+                add(pitch.toMidiNote(), pitch.getAccidental(), start,
+                        note.getTicks());
+        }
+        chordCount++;
+        ticks = start + chord.getTicks();
+        return start;
+    }
+
+    /**
+     * Appends a note to the current chord
+     */
+    private void add(int midiNote, int accidental, long start, long duration) {
+        if (size == midiNotes.length) {
+            int capacity = 2 * size;
+            midiNotes = Arrays.copyOf(midiNotes, capacity);
+            accidentals = Arrays.copyOf(accidentals, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            chords = Arrays.copyOf(chords, capacity);
+        }
+        if (accidental != (byte) accidental)
+            throw new IllegalArgumentException("Too many accidentals: "
+                    + accidental);
+        midiNotes[size] = midiNote;
+        accidentals[size] = (byte) accidental;
+        starts[size] = start;
+        durations[size] = duration;
+        chords[size] = chordCount;
+        size++;
+    }
+
+    /**
+     * @return the number of notes, rests included
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of chords
+     */
+    public int chordCount() {
+        return chordCount;
+    }
+
+    /**
+     * @return the tick at which the last chord ends
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its midi note, or REST
+     */
+    public int getMidiNote(int note) {
+        return midiNotes[checkIndex(note)];
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its pitch, or null for a rest
+     */
+    public Pitch getPitch(int note) {
+        if (getMidiNote(note) == REST)
+            return null;
+        return Pitch.fromMidiNote(midiNotes[note], accidentals[note]);
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its start tick
+     */
+    public long getStart(int note) {
+        return starts[checkIndex(note)];
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return its length in ticks
+     */
+    public long getDuration(int note) {
+        return durations[checkIndex(note)];
+    }
+
+    /**
+     * @param note
+     *            : index of a note
+     * @return the index of its chord
+     */
+    public int getChord(int note) {
+        return chords[checkIndex(note)];
+    }
+
+    /**
+     * @param chord
+     *            : index of a chord
+     * @return the index of its first note
+     */
+    public int firstNoteOf(int chord) {
+        if (chord < 0 || chord > chordCount)
+            throw new IndexOutOfBoundsException("No chord " + chord);
+        // chord indices increase, and each chord has a note
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (chords[middle] < chord)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return the chords, built from the columns when they are read
+     */
+    public List<Chord> getChords() {
+        return new AbstractList<Chord>() {
+            @Override
+            public Chord get(int index) {
+                if (index < 0 || index >= chordCount)
+                    throw new IndexOutOfBoundsException("No chord " + index);
+                Chord chord = new Chord();
+                int end = firstNoteOf(index + 1);
+                for (int note = firstNoteOf(index); note < end; note++)
+                    chord.addNote(new Note(getPitch(note), durations[note]));
+                chord.setStart(starts[end - 1]);
+                return chord;
+            }
+
+            @Override
+            public int size() {
+                return chordCount;
+            }
+        };
+    }
+
+    private int checkIndex(int note) {
+        if (note < 0 || note >= size)
+            throw new IndexOutOfBoundsException("No note " + note);
+        return note;
+    }
+}
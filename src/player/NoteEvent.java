@@ -0,0 +1,77 @@
+package player;
+
+import javax.sound.midi.ShortMessage;
+
+/**
+ * A note turned on or off at a tick by one voice of a song, as read from a
+ * NoteEventMerger
+ */
+public class NoteEvent {
+
+    private final long tick;
+    private final int command; // ShortMessage.NOTE_ON or NOTE_OFF
+    private final int pitch;
+    private final int voice;
+
+    /**
+     * Constructs a NoteEvent
+     *
+     * @param tick
+     *            : the tick of the event
+     * @param command
+     *            : ShortMessage.NOTE_ON or ShortMessage.NOTE_OFF
+     * @param pitch
+     *            : the midi note
+     * @param voice
+     *            : the index of the voice in the song's voice map
+     */
+    public NoteEvent(long tick, int command, int pitch, int voice) {
+        if (command != ShortMessage.NOTE_ON && command != ShortMessage.NOTE_OFF)
+            throw new IllegalArgumentException("Not a note command: " + command);
+        this.tick = tick;
+        this.command = command;
+        this.pitch = pitch;
+        this.voice = voice;
+    }
+
+    /**
+     * @return the tick of the event
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return ShortMessage.NOTE_ON or ShortMessage.NOTE_OFF
+     */
+    public int getCommand() {
+        return command;
+    }
+
+    /**
+     * @return true if the event turns the note on
+     */
+    public boolean isNoteOn() {
+        return command == ShortMessage.NOTE_ON;
+    }
+
+    /**
+     * @return the midi note
+     */
+    public int getPitch() {
+        return pitch;
+    }
+
+    /**
+     * @return the index of the voice in the song's voice map
+     */
+    public int getVoice() {
+        return voice;
+    }
+
+    @Override
+    public String toString() {
+        return (isNoteOn() ? "NOTE_ON " : "NOTE_OFF ") + pitch + " @" + tick
+                + " voice " + voice;
+    }
+}
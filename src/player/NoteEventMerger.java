@@ -0,0 +1,232 @@
+package player;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Reads the notes of a song as a single stream of NOTE_ON and NOTE_OFF
+ * events in the order of their ticks. MusicVisitor renders a song voice by
+ * voice; here each voice is read by a cursor that is only ever one note
+ * ahead, the cursors are kept in a heap by the start of their next note,
+ * and the NOTE_OFF of every note that has started waits in a second heap
+ * until its tick comes. The merger thus holds a cursor per voice and an
+ * event per sounding note, whatever the length of the song.
+ *
+ * Events of the same tick come NOTE_OFF first, so a note repeated without a
+ * pause is turned off before it sounds again, then by voice, then in the
+ * order of the voice.
+ *
+ * A merger can stop at an end tick: the notes that start later are never
+ * read, and those still sounding are turned off at the end.
+ */
+public class NoteEventMerger implements Iterator<NoteEvent> {
+
+    private static final Comparator<VoiceCursor> BY_START = new Comparator<VoiceCursor>() {
+        @Override
+        public int compare(VoiceCursor first, VoiceCursor second) {
+            if (first.start != second.start)
+                return Long.compare(first.start, second.start);
+            return Integer.compare(first.voice, second.voice);
+        }
+    };
+
+    private static final Comparator<NoteEvent> BY_TICK = new Comparator<NoteEvent>() {
+        @Override
+        public int compare(NoteEvent first, NoteEvent second) {
+            if (first.getTick() != second.getTick())
+                return Long.compare(first.getTick(), second.getTick());
+            if (first.getVoice() != second.getVoice())
+                return Integer.compare(first.getVoice(), second.getVoice());
+            return Integer.compare(first.getPitch(), second.getPitch());
+        }
+    };
+
+    private final PriorityQueue<VoiceCursor> voices;
+    private final PriorityQueue<NoteEvent> noteOffs = new PriorityQueue<NoteEvent>(16, BY_TICK);
+    private final long end; // no event comes after this tick
+
+    /**
+     * Creates a NoteEventMerger for the voices of a song
+     *
+     * @param song
+     *            : the song to read
+     * @param start
+     *            : the tick at which every voice starts
+     * @param numTicks
+     *            : ticks per whole note; for lengths resolved to ticks while
+     *            parsing, the Song's getTicksForNote()
+     */
+    public NoteEventMerger(Song song, long start, int numTicks) {
+        this(song, start, numTicks, null);
+    }
+
+    /**
+     * Creates a NoteEventMerger for the voices of a song, with every note
+     * quantized as Quantizer.quantize(List) does
+     *
+     * @param song
+     *            : the song to read
+     * @param start
+     *            : the tick at which every voice starts
+     * @param numTicks
+     *            : ticks per whole note
+     * @param quantizer
+     *            : brings the notes to its resolution, or null to keep them
+     *            as they are
+     */
+    public NoteEventMerger(Song song, long start, int numTicks, Quantizer quantizer) {
+        this(song.getVoiceMap().values(), 0, start, numTicks, quantizer, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a NoteEventMerger for some of the voices of a song
+     *
+     * @param voiceList
+     *            : the voices to read
+     * @param firstVoice
+     *            : the index in the song of the first of them
+     * @param start
+     *            : the tick at which every voice starts
+     * @param numTicks
+     *            : ticks per whole note
+     * @param quantizer
+     *            : brings the notes to its resolution, or null
+     * @param end
+     *            : the tick at which the notes still sounding are turned off
+     *            and the events stop
+     */
+    NoteEventMerger(Collection<Voice> voiceList, int firstVoice, long start, int numTicks,
+            Quantizer quantizer, long end) {
+        if (quantizer != null && quantizer.isExact())
+            quantizer = null;
+        this.end = end;
+        voices = new PriorityQueue<VoiceCursor>(Math.max(1, voiceList.size()), BY_START);
+        int index = firstVoice;
+        for (Voice voice : voiceList)
+            addIfSounding(new VoiceCursor(voice, index++, start, numTicks, quantizer));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !voices.isEmpty() || !noteOffs.isEmpty();
+    }
+
+    @Override
+    public NoteEvent next() {
+        VoiceCursor cursor = voices.peek();
+        NoteEvent noteOff = noteOffs.peek();
+        if (noteOff != null && (cursor == null || noteOff.getTick() <= cursor.start))
+            return noteOffs.poll();
+        if (cursor == null)
+            throw new NoSuchElementException();
+
+        voices.poll();
+        NoteEvent noteOn = new NoteEvent(cursor.start, ShortMessage.NOTE_ON, cursor.pitch, cursor.voice);
+        noteOffs.add(new NoteEvent(Math.min(cursor.start + cursor.duration, end), ShortMessage.NOTE_OFF,
+                cursor.pitch, cursor.voice));
+        addIfSounding(cursor);
+        return noteOn;
+    }
+
+    /**
+     * Helper method that moves a cursor on to its next note and puts it back
+     * in the heap if that note starts before the end
+     */
+    private void addIfSounding(VoiceCursor cursor) {
+        if (cursor.advance() && cursor.start < end)
+            voices.add(cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads the sounding notes of a voice one at a time, from its columns if
+     * it has them and from its chords otherwise
+     */
+    private static class VoiceCursor {
+        private final int voice;
+        private final int numTicks;
+        private final Quantizer quantizer;
+        private final NoteColumns columns;
+        private final List<Chord> chords;
+
+        private int chord = 0; // next chord to read, if there are no columns
+        private int note = 0; // next note to read, of the chord or the columns
+        private long chordStart; // exact start of the chord, if there are no columns
+        private final long origin;
+
+        // the note read last
+        private int pitch;
+        private long start;
+        private long duration;
+
+        VoiceCursor(Voice voice, int index, long origin, int numTicks, Quantizer quantizer) {
+            this.voice = index;
+            this.numTicks = numTicks;
+            this.quantizer = quantizer;
+            this.origin = origin;
+            this.chordStart = origin;
+            this.columns = voice.getColumns();
+            this.chords = columns == null ? voice.getAllChords() : null;
+        }
+
+        /**
+         * Moves on to the next sounding note
+         *
+         * @return false if the voice has no more notes
+         */
+        boolean advance() {
+            return columns != null ? advanceColumns() : advanceChords();
+        }
+
+        private boolean advanceColumns() {
+            while (note < columns.size()) {
+                int index = note++;
+                if (columns.getMidiNote(index) != NoteColumns.REST) {
+                    read(columns.getMidiNote(index), origin + columns.getStart(index),
+                            columns.getDuration(index));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean advanceChords() {
+            while (chord < chords.size()) {
+                List<Note> notes = chords.get(chord).getAllNotes();
+                while (note < notes.size()) {
+                    Note next = notes.get(note++);
+                    if (next.getPitch() != null) {
+                        read(next.getPitch().toMidiNote(), chordStart,
+                                NoteSinkVisitor.getDuration(next, numTicks));
+                        return true;
+                    }
+                }
+                chordStart += NoteSinkVisitor.getDuration(chords.get(chord), numTicks);
+                chord++;
+                note = 0;
+            }
+            return false;
+        }
+
+        private void read(int pitch, long start, long duration) {
+            this.pitch = pitch;
+            if (quantizer == null) {
+                this.start = start;
+                this.duration = duration;
+            } else {
+                this.start = quantizer.quantize(start);
+                this.duration = quantizer.quantizeDuration(start, this.start, duration);
+            }
+        }
+    }
+}
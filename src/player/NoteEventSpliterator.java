@@ -0,0 +1,94 @@
+package player;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads the events of some voices of a song through a NoteEventMerger, which
+ * is only created when the first event is read. Before that, the voices can
+ * be split in two halves, so that a parallel stream reads each voice on its
+ * own thread. The events of a spliterator come in the order of their ticks,
+ * but once it is split the halves are not merged again, so the stream is
+ * not ORDERED.
+ */
+class NoteEventSpliterator implements Spliterator<NoteEvent> {
+
+    private List<Voice> voices;
+    private int firstVoice; // index in the song of voices.get(0)
+    private final long start;
+    private final int numTicks;
+    private final long end;
+    private NoteEventMerger merger; // null until the first event is read
+
+    /**
+     * Creates a NoteEventSpliterator
+     *
+     * @param voices
+     *            : the voices to read
+     * @param firstVoice
+     *            : the index in the song of the first of them
+     * @param start
+     *            : the tick at which every voice starts
+     * @param numTicks
+     *            : ticks per whole note
+     * @param end
+     *            : the tick at which the notes still sounding are turned off
+     *            and the events stop
+     */
+    NoteEventSpliterator(List<Voice> voices, int firstVoice, long start,
+            int numTicks, long end) {
+        this.voices = voices;
+        this.firstVoice = firstVoice;
+        this.start = start;
+        this.numTicks = numTicks;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super NoteEvent> action) {
+        if (merger == null)
+            merger = new NoteEventMerger(voices, firstVoice, start, numTicks,
+                    null, end);
+        if (!merger.hasNext())
+            return false;
+        action.accept(merger.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<NoteEvent> trySplit() {
+        if (merger != null || voices.size() < 2)
+            return null;
+        int half = voices.size() / 2;
+        NoteEventSpliterator prefix = new NoteEventSpliterator(
+                voices.subList(0, half), firstVoice, start, numTicks, end);
+        voices = voices.subList(half, voices.size());
+        firstVoice += half;
+        return prefix;
+    }
+
+    /**
+     * @return two events per note of the voices, rests included, ignoring
+     *         the end
+     */
+    @Override
+    public long estimateSize() {
+        if (merger != null)
+            return Long.MAX_VALUE; // unknown once started
+        long notes = 0;
+        for (Voice voice : voices) {
+            if (voice.getColumns() != null)
+                notes += voice.getColumns().size();
+            else
+                for (Chord chord : voice.getAllChords())
+                    notes += chord.getAllNotes().size();
+        }
+        return 2 * notes;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+}
@@ -0,0 +1,21 @@
+package player;
+
+/**
+ * Receives the notes of a piece as they are rendered, one call per sounding
+ * note, e.g. from NoteSinkVisitor. Unlike the lists of AugmentedMIDI returned
+ * by MusicVisitor, nothing has to be allocated for a note to be passed on.
+ */
+public interface NoteSink {
+
+    /**
+     * Receives a note
+     * 
+     * @param pitch
+     *            : the midi note
+     * @param start
+     *            : the tick at which the note starts
+     * @param duration
+     *            : the number of ticks the note lasts
+     */
+    public void note(int pitch, long start, long duration);
+}
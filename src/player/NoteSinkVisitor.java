@@ -0,0 +1,115 @@
+package player;
+
+import player.MusicInterface.MusicalVisitor;
+
+/**
+ * Renders music into a NoteSink in a single pass. Where MusicVisitor returns
+ * a new list from every node, copies it into the list of the parent and makes
+ * a visitor per child, this visitor keeps the current tick in a field and
+ * hands every note straight to the sink, so rendering allocates nothing per
+ * node. Voices stored in NoteColumns are read from their arrays.
+ */
+public class NoteSinkVisitor implements MusicalVisitor<Void> {
+
+    private final NoteSink sink;
+    private final int numTicks; // ticks per whole note
+    private final long origin; // tick at which each voice starts
+    private long start; // tick of the current chord
+
+    /**
+     * Creates an instance of NoteSinkVisitor
+     * 
+     * @param sink
+     *            : receives the notes
+     * @param start
+     *            : the tick at which the music starts
+     * @param numTicks
+     *            : ticks per whole note; for lengths resolved to ticks while
+     *            parsing, the Song's getTicksForNote()
+     */
+    public NoteSinkVisitor(NoteSink sink, long start, int numTicks) {
+        this.sink = sink;
+        this.origin = start;
+        this.start = start;
+        this.numTicks = numTicks;
+    }
+
+    /**
+     * Renders music into a sink
+     * 
+     * @param music
+     *            : a Song, Voice, Chord or Note
+     * @param start
+     *            : the tick at which the music starts
+     * @param numTicks
+     *            : ticks per whole note
+     * @param sink
+     *            : receives the notes
+     */
+    public static void render(MusicInterface music, long start, int numTicks,
+            NoteSink sink) {
+        music.accept(new NoteSinkVisitor(sink, start, numTicks));
+    }
+
+    @Override
+    public Void on(Note n) {
+        if (n.getPitch() != null) // rests are not passed on
+            sink.note(n.getPitch().toMidiNote(), start, getDuration(n));
+        return null;
+    }
+
+    @Override
+    public Void on(Chord c) {
+        for (Note note : c.getAllNotes())
+            on(note);
+        return null;
+    }
+
+    @Override
+    public Void on(Voice v) {
+        NoteColumns columns = v.getColumns();
+        if (columns != null) {
+            for (int note = 0; note < columns.size(); note++) {
+                if (columns.getMidiNote(note) != NoteColumns.REST)
+                    sink.note(columns.getMidiNote(note), start
+                            + columns.getStart(note), columns.getDuration(note));
+            }
+            start += columns.getTicks();
+            return null;
+        }
+        for (Chord chord : v.getAllChords()) {
+            on(chord);
+            start += getDuration(chord);
+        }
+        return null;
+    }
+
+    @Override
+    public Void on(Song s) {
+        for (Voice voice : s.getVoiceMap().values()) {
+            start = origin; // every voice starts at the beginning
+            on(voice);
+        }
+        return null;
+    }
+
+    /**
+     * @return the length of m in ticks
+     */
+    private long getDuration(MusicInterface m) {
+        return getDuration(m, numTicks);
+    }
+
+    /**
+     * @param m
+     *            : a Song, Voice, Chord or Note
+     * @param numTicks
+     *            : ticks per whole note
+     * @return the length of m in ticks
+     */
+    static long getDuration(MusicInterface m, int numTicks) {
+        if (m.getTicks() >= 0)
+            return m.getTicks();
+        return (long) m.getLength().getNum() * numTicks / m.getLength().getDenom();
+    }
+}
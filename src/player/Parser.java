@@ -10,7 +10,8 @@ import sound.Pitch;
 public class Parser {
 
     private final Lexer lexer;
-    private boolean deleteToken; // for repeats
+    private boolean skipTokens; // for repeats: skip the first ending
+    private ChordListener chordListener; // told about every parsed chord
 
     /**
      * Constructs an instance of the parser
@@ -21,26 +22,71 @@ public class Parser {
         this.lexer = lexer;
     }
 
+    /**
+     * Sets the listener that is told about each Chord as soon as it is parsed,
+     * e.g. to start playing before the whole file is parsed.
+     * 
+     * @param listener
+     *            the ChordListener, or null for none
+     */
+    public void setChordListener(ChordListener listener) {
+        this.chordListener = listener;
+    }
+
     /**
      * Parses the Header of the abc music file
      * 
      * @return : A Song with the specifications mentioned in the header
      */
     public Song parseFileHeader() {
-        return new Song(lexer.getHeaderLexer().getHeaderMap());
+        return new Song(lexer.getHeaderLexer());
     }
 
     /**
-     * Helper method which returns the next Token from the body of the abc file
+     * Parses only the Header of an abc music file. The body is not lexed, so
+     * this is much cheaper than a Lexer when only the header fields are
+     * needed.
      * 
-     * @return nextToken The next body Token
+     * @param file
+     *            : a CharSequence holding an abc music file
+     * @return : A Song with the specifications mentioned in the header and no
+     *         chords
+     * @throws IllegalArgumentException
+     *             if the Key field is missing from the abc file header
      */
-    private BodyToken getNextBodyToken() {
-        BodyToken nextToken = lexer.getNextToken();
-        if (deleteToken) {
-            lexer.deleteLastToken();
+    public static Song parseHeader(CharSequence file) {
+        int headerEnd = HeadLexer.findHeaderEnd(file);
+        if (headerEnd < 0)
+            throw new IllegalArgumentException("Key field missing from abc file");
+        return new Song(new HeadLexer(file, 0, headerEnd));
+    }
+
+    /**
+     * Helper method which moves to the next Token from the body of the abc
+     * file. Its text can then be read from the lexer.
+     * 
+     * @return nextType The type of the next body Token
+     */
+    private BodyToken.Type nextTokenType() {
+        BodyToken.Type nextType = lexer.nextTokenType();
+        if (skipTokens) {
+            lexer.skipLastToken();
         }
-        return nextToken;
+        return nextType;
+    }
+
+    /**
+     * Helper method which appends a parsed Chord to a voice of the Song and
+     * passes it on to the ChordListener
+     * 
+     * @param song
+     * @param voice
+     * @param chord
+     */
+    private void addChord(Song song, String voice, Chord chord) {
+        song.addChord(voice, chord);
+        if (chordListener != null)
+            chordListener.chordParsed(voice, chord);
     }
 
     /**
@@ -52,25 +98,73 @@ public class Parser {
      *             if the Token stream cannot be parsed
      */
     public Song parse() {
+        return parseBody(parseFileHeader());
+    }
+
+    /**
+     * Parses an abc music file in two passes. A first, fast pass over the body
+     * finds the resolution of the song, so that while parsing the notes get
+     * their lengths in ticks straight away and the chords their start ticks in
+     * their voices. The resulting Song holds no MultiplicativeFactor lengths
+     * and is rendered without any arithmetic.
+     * 
+     * @return finalSong A Song that represents the content of the body of the
+     *         abc file, with lengths in ticks of getTicksForNote() per whole
+     *         note
+     * @throws RuntimeException
+     *             if the Token stream cannot be parsed
+     */
+    public Song parseTicks() {
+        return parseTicks(false);
+    }
+
+    /**
+     * Parses an abc music file in two passes like parseTicks(), optionally
+     * storing the notes of each voice in columns of primitive arrays rather
+     * than as Chord and Note objects, which takes several times less memory.
+     * 
+     * @param columns
+     *            whether to store the voices in NoteColumns
+     * @return finalSong A Song that represents the content of the body of the
+     *         abc file, with lengths in ticks of getTicksForNote() per whole
+     *         note
+     * @throws RuntimeException
+     *             if the Token stream cannot be parsed
+     */
+    public Song parseTicks(boolean columns) {
         Song finalSong = parseFileHeader();
-        this.deleteToken = false;
+        finalSong.fixTicksForNote(TickResolution.ticksPerWholeNote(
+                lexer.getBody(), finalSong.getDefaultNoteLength()));
+        if (columns)
+            finalSong.storeInColumns();
+        return parseBody(finalSong);
+    }
+
+    /**
+     * Parses the body of an abc music file into a Song.
+     * 
+     * @param finalSong
+     *            the Song made from the header
+     * @return finalSong holding the content of the body
+     */
+    private Song parseBody(Song finalSong) {
+        this.skipTokens = false;
         String presentVoice = null;
         boolean stop = false;
 
-        Modifiers defaultMods = Modifiers.getStartMods(finalSong.getSongKey().trim());
-        Modifiers currentMods = Modifiers.clone(defaultMods);
+        Modifiers currentMods = Modifiers.getStartMods(finalSong.getSongKey().trim());
 
         if (finalSong.containsDefaultVoice()) 
             presentVoice = finalSong.Voice_Default;
         
 
         while (!stop) {
-            BodyToken nextToken = getNextBodyToken();
-            switch (nextToken.getBodyTokenType()) {
+            BodyToken.Type nextType = nextTokenType();
+            switch (nextType) {
 
             case VOICE:
                 // create a new Voice with declared name
-                String extraVoice = nextToken.getBodyTokenText().substring(2);
+                String extraVoice = lexer.tokenText().substring(2);
                 if (finalSong.containsDefaultVoice())
                     throw new RuntimeException(
                             "There cannot be a voice declared in the file and not declared in the header");
@@ -79,23 +173,24 @@ public class Parser {
                             "Encountered voice in body that was not declared in header of abc file");
                 else
                     presentVoice = extraVoice;
+                // accidentals of one voice do not carry over to the next
+                currentMods.reset();
                 break;
 
             case ACCIDENTAL:
                 Chord accentedChord = new Chord();
-                Note accentedNote = processAccidental(
-                        nextToken.getBodyTokenText(), presentVoice,
-                        currentMods, finalSong);
+                Note accentedNote = processAccidental(lexer.tokenText(),
+                        presentVoice, currentMods, finalSong);
                 accentedChord.addNote(accentedNote);
-                finalSong.addChord(presentVoice, accentedChord);
+                addChord(finalSong, presentVoice, accentedChord);
                 break;
 
             case NOTE_REST:
                 Chord newChord = new Chord();
-                Note newNote = processNoteRest(nextToken.getBodyTokenText(),
-                        null, presentVoice, currentMods, finalSong);
+                Note newNote = processNoteRest(lexer.tokenChar(0), null,
+                        presentVoice, currentMods, finalSong);
                 newChord.addNote(newNote);
-                finalSong.addChord(presentVoice, newChord);
+                addChord(finalSong, presentVoice, newChord);
                 break;
 
             case END_CHORD:
@@ -103,22 +198,23 @@ public class Parser {
                         "Found chord end before chord beginning");
 
             case BEGIN_CHORD:
-                MultiplicativeFactor chordLength = null;
+                Note firstNote = null;
                 Chord noteChord = new Chord();
-                while (lexer.peekToken().getBodyTokenType() != BodyToken.Type.END_CHORD) {
+                while (lexer.peekTokenType() != BodyToken.Type.END_CHORD) {
                     Note followingNote = processAccentedNote(presentVoice,
                             currentMods, finalSong);
-                    if (chordLength == null)
-                        chordLength = followingNote.getLength();
-                    else if (followingNote.getLength().compareTo(chordLength) == 1)
-                        followingNote.setLength(chordLength);
-                    // if a note in a chord is longer, we set the length of the
-                    // note to be that of the chord
+                    if (firstNote == null)
+                        firstNote = followingNote;
+                    else {
+                        followingNote.setLength(firstNote.getLength());
+                        followingNote.setTicks(firstNote.getTicks());
+                    }
+                    // every note of a chord takes the length of its first note
                     noteChord.addNote(followingNote);
                 }
 
-                getNextBodyToken(); // disregard end chord token
-                finalSong.addChord(presentVoice, noteChord);
+                nextTokenType(); // disregard end chord token
+                addChord(finalSong, presentVoice, noteChord);
                 break;
 
             case BEGIN_TUPLET:
@@ -126,27 +222,28 @@ public class Parser {
                         currentMods, finalSong);
                 for (Note tupletNote : tupletNotes) {
                     Chord tupletChord = new Chord();
-                    finalSong.syncTicks(tupletNote.getLength().getDenom());
+                    if (!finalSong.hasFixedTicks())
+                        finalSong.syncTicks(tupletNote.getLength().getDenom());
                     tupletChord.addNote(tupletNote);
-                    finalSong.addChord(presentVoice, tupletChord);
+                    addChord(finalSong, presentVoice, tupletChord);
                 }
                 break;
 
             case REPEAT_BEGIN:case SECTION_BEGIN:case SECTION_END:case BAR:
-                currentMods = Modifiers.clone(defaultMods);
+                currentMods.reset();
                 break;
 
             case REPEAT_END:
-                if (!this.deleteToken)
-                    lexer.deleteLastToken();
+                if (!this.skipTokens)
+                    lexer.skipLastToken();
                 lexer.goBack();
-                this.deleteToken = false;
+                this.skipTokens = false;
                 break;
 
             case EXTRA_REPEAT:
-                if (nextToken.getBodyTokenText().charAt(1) == '1') {
-                    lexer.deleteLastToken();
-                    this.deleteToken = true;
+                if (lexer.tokenChar(1) == '1') {
+                    lexer.skipLastToken();
+                    this.skipTokens = true;
                 }
                 break;
 
@@ -166,7 +263,7 @@ public class Parser {
 
             default:
                 throw new RuntimeException("Unrecognised token of type, "
-                        + nextToken.getBodyTokenType().toString()
+                        + nextType.toString()
                         + "encountered");
             }
         }
@@ -184,42 +281,77 @@ public class Parser {
      */
     private List<Note> processTuplet(String currentVoice,
             Modifiers currentMods, Song finalSong) {
-        BodyToken isInteger = getNextBodyToken();
-        if (isInteger.getBodyTokenType() != BodyToken.Type.MULT_FACTOR)
+        if (nextTokenType() != BodyToken.Type.MULT_FACTOR)
             throw new RuntimeException(
                     "Tuplet declaration must be followed by an Integer Multiplicative Factor. Instead followed by: "
-                            + isInteger.getBodyTokenText());
+                            + lexer.tokenText());
 
-        String integerNumber = isInteger.getBodyTokenText();
         // Checks if the tuplet is formatted correctly
-        if (!integerNumber.equals("2") && !integerNumber.equals("3")
-                && !integerNumber.equals("4"))
+        if (lexer.tokenLength() != 1 || lexer.tokenChar(0) < '2'
+                || lexer.tokenChar(0) > '4')
             throw new RuntimeException(
                     "Tuplet declaration must always be followed by an Integer (2,3,4). Instead followed by: "
-                            + integerNumber);
+                            + lexer.tokenText());
 
-        MultiplicativeFactor lengthModifier = null;
         // Integer representation of a numerical char
-        int numberOfNotes = integerNumber.charAt(0) - '0';
+        int numberOfNotes = lexer.tokenChar(0) - '0';
+        MultiplicativeFactor lengthModifier = tupletModifier(numberOfNotes);
 
         List<Note> tupletNotes = new ArrayList<Note>();
-        if (numberOfNotes == 4)
-            lengthModifier = new MultiplicativeFactor(3, 4);
-        else if (numberOfNotes == 3)
-            lengthModifier = new MultiplicativeFactor(2, 3);
-        else if (numberOfNotes == 2)
-            lengthModifier = new MultiplicativeFactor(3, 2);
-
         for (int j = 0; j < numberOfNotes; j = j + 1) {
             Note accentedNote = processAccentedNote(currentVoice, currentMods,
                     finalSong);
-            Note modifiedLengthNote = new Note(accentedNote.getPitch(),
-                    accentedNote.getLength().product(lengthModifier));
+            Note modifiedLengthNote;
+            if (accentedNote.getLength() != null)
+                modifiedLengthNote = new Note(accentedNote.getPitch(),
+                        accentedNote.getLength().product(lengthModifier));
+            else
+                modifiedLengthNote = new Note(accentedNote.getPitch(), toTicks(
+                        accentedNote.getTicks(), lengthModifier));
             tupletNotes.add(modifiedLengthNote);
         }
         return tupletNotes;
     }
 
+    /**
+     * Returns the factor applied to the lengths of the notes of a tuplet
+     * 
+     * @param numberOfNotes
+     *            the number of notes in the tuplet
+     * @return 3/2, 2/3 or 3/4 for tuplets of 2, 3 or 4 notes, null otherwise
+     */
+    static MultiplicativeFactor tupletModifier(int numberOfNotes) {
+        switch (numberOfNotes) {
+        case 4:
+            return MultiplicativeFactor.valueOf(3, 4);
+        case 3:
+            return MultiplicativeFactor.valueOf(2, 3);
+        case 2:
+            return MultiplicativeFactor.valueOf(3, 2);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Helper method that scales a length in ticks
+     * 
+     * @param ticks
+     *            a length in ticks
+     * @param factor
+     *            the factor applied to it
+     * @return ticks times factor
+     * @throws RuntimeException
+     *             if the result is not a whole number of ticks
+     */
+    private static long toTicks(long ticks, MultiplicativeFactor factor) {
+        long scaled = ticks * factor.getNum();
+        if (scaled % factor.getDenom() != 0)
+            throw new RuntimeException("A length of " + factor + " times "
+                    + ticks + " ticks is not a whole number of ticks");
+        return scaled / factor.getDenom();
+    }
+
 
     /**
      * Parses an accidental, and returns the note following it.
@@ -234,13 +366,12 @@ public class Parser {
      */
     private Note processAccidental(String accidentalString,
             String currentVoice, Modifiers currentMods, Song finalSong) {
-        BodyToken isNoteOrRest = lexer.peekToken();
-        if (isNoteOrRest.getBodyTokenType() != BodyToken.Type.NOTE_REST)
+        if (lexer.peekTokenType() != BodyToken.Type.NOTE_REST)
             throw new RuntimeException(
                     "Accidental must be succeded by a note or a rest");
-        BodyToken nextNoteOrRest = getNextBodyToken();
-        Note n = processNoteRest(nextNoteOrRest.getBodyTokenText(),
-                accidentalString, currentVoice, currentMods, finalSong);
+        nextTokenType();
+        Note n = processNoteRest(lexer.tokenChar(0), accidentalString,
+                currentVoice, currentMods, finalSong);
         return n;
     }
 
@@ -256,30 +387,23 @@ public class Parser {
      * @return Note an abstract representation of a note from the abc file
      *         including the effect of all of its modifiers
      */
-    private Note processNoteRest(String value, String accidental,
+    private Note processNoteRest(char value, String accidental,
             String presentVoice, Modifiers currentMods, Song finalSong) {
-        String lengthMod = null;
-        String octaveMod = null;
-        if (lexer.peekToken().getBodyTokenType() == BodyToken.Type.OCTAVE_MOD) {
-            octaveMod = getNextBodyToken().getBodyTokenText();
-            if (lexer.peekToken().getBodyTokenType() == BodyToken.Type.MULT_FACTOR)
-                lengthMod = getNextBodyToken().getBodyTokenText();
-        } else if (lexer.peekToken().getBodyTokenType() == BodyToken.Type.MULT_FACTOR)
-            lengthMod = getNextBodyToken().getBodyTokenText();
-
         // We change the pitch according to the modifiers or lower case letters
         // that appear
         Pitch pitch;
-        if (value.charAt(0) == 'z')
+        if (value == 'z')
             pitch = null;
         else
-            pitch = new Pitch(Character.toUpperCase(value.charAt(0)));
+            pitch = Pitch.valueOf(Character.toUpperCase(value));
 
-        if (Character.isLowerCase(value.charAt(0)) && value.charAt(0) != 'z')
+        if (Character.isLowerCase(value) && value != 'z')
             pitch = pitch.octaveTranspose(1);
 
-        if (pitch != null && octaveMod != null) {
-            for (char octaveShift : octaveMod.toCharArray()) {
+        if (lexer.peekTokenType() == BodyToken.Type.OCTAVE_MOD) {
+            nextTokenType();
+            for (int i = 0; pitch != null && i < lexer.tokenLength(); i++) {
+                char octaveShift = lexer.tokenChar(i);
                 switch (octaveShift) {
                 case '\'':
                     pitch = pitch.octaveTranspose(1);
@@ -293,25 +417,32 @@ public class Parser {
                 }
             }
         }
+
+        String lengthMod = null;
+        if (lexer.peekTokenType() == BodyToken.Type.MULT_FACTOR) {
+            nextTokenType();
+            lengthMod = lexer.tokenText();
+        }
         
         if (pitch != null && accidental != null) {
             currentMods.applyMods(pitch, accidental);
         }
         
-        MultiplicativeFactor noteDuration = new MultiplicativeFactor(1, 1);
+        MultiplicativeFactor noteDuration = MultiplicativeFactor.valueOf(1, 1);
         
         if (lengthMod != null)
             noteDuration = MultiplicativeFactor.multFactorFromString(lengthMod);
-        finalSong.syncTicks(noteDuration.product(
-                finalSong.getDefaultNoteLength()).getDenom());
+        MultiplicativeFactor noteLength = finalSong.getDefaultNoteLength()
+                .product(noteDuration);
         
         if (pitch != null)
-            return new Note(currentMods.applyModsTo(pitch), finalSong
-                    .getDefaultNoteLength().product(noteDuration));
-        
-        else
-            return new Note(pitch, finalSong.getDefaultNoteLength().product(
-                    noteDuration));
+            pitch = currentMods.applyModsTo(pitch);
+
+        if (finalSong.hasFixedTicks())
+            return new Note(pitch, toTicks(finalSong.getTicksForNote(),
+                    noteLength));
+        finalSong.syncTicks(noteLength.getDenom());
+        return new Note(pitch, noteLength);
     }
     
     /**
@@ -325,14 +456,15 @@ public class Parser {
     private Note processAccentedNote(String presentVoice,
             Modifiers currentMods, Song finalSong) {
         Note currentNote = null;
-        if (lexer.peekToken().getBodyTokenType() == BodyToken.Type.ACCIDENTAL)
-            currentNote = processAccidental(getNextBodyToken()
-                    .getBodyTokenText(), presentVoice, currentMods, finalSong);
-        else if (lexer.peekToken().getBodyTokenType() == BodyToken.Type.NOTE_REST)
-            currentNote = processNoteRest(
-                    getNextBodyToken().getBodyTokenText(), null, presentVoice,
+        if (lexer.peekTokenType() == BodyToken.Type.ACCIDENTAL) {
+            nextTokenType();
+            currentNote = processAccidental(lexer.tokenText(), presentVoice,
                     currentMods, finalSong);
-        else
+        } else if (lexer.peekTokenType() == BodyToken.Type.NOTE_REST) {
+            nextTokenType();
+            currentNote = processNoteRest(lexer.tokenChar(0), null,
+                    presentVoice, currentMods, finalSong);
+        } else
             throw new RuntimeException(
                     "Expected to encounter Note. Instead encountered: "
                             + lexer.peekToken());
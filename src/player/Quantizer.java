@@ -0,0 +1,176 @@
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings rendered notes down to a bounded resolution. The exact resolution of
+ * a song is the least common multiple of all its note lengths, which grows
+ * quickly when tuplets and very short notes are mixed, and every MIDI event
+ * is then counted in that many ticks.
+ *
+ * A Quantizer caps the ticks per quarter note. Rather than rounding each
+ * duration, which lets the rounding errors of a voice add up, it rounds the
+ * position of every note start and end to the nearest tick. The error of one
+ * note is thus carried into the next one, each boundary is off by at most half
+ * a tick, and voices that meet in the exact song still meet after
+ * quantizing. The largest error is recorded for the report.
+ */
+public class Quantizer {
+
+    private final long fromTicksPerQuarter; // resolution of the rendered notes
+    private final long toTicksPerQuarter; // resolution after quantizing
+    private long maxErrorNumerator = 0; // in quarter notes, over the denominator below
+
+    /**
+     * Constructs a Quantizer for notes of the given resolution
+     *
+     * @param ticksPerQuarter
+     *            : resolution of the notes to quantize, e.g. the Song's
+     *            getTicksForNote() / 4
+     * @param maxTicksPerQuarter
+     *            : the resolution to stay within, e.g. 960
+     */
+    public Quantizer(int ticksPerQuarter, int maxTicksPerQuarter) {
+        if (ticksPerQuarter <= 0 || maxTicksPerQuarter <= 0)
+            throw new IllegalArgumentException("Resolutions must be positive");
+        this.fromTicksPerQuarter = ticksPerQuarter;
+        this.toTicksPerQuarter = Math.min(ticksPerQuarter, maxTicksPerQuarter);
+    }
+
+    /**
+     * @return the ticks per quarter note of the quantized notes
+     */
+    public int getTicksPerQuarter() {
+        return (int) toTicksPerQuarter;
+    }
+
+    /**
+     * @return true if the notes keep their resolution and are not changed
+     */
+    public boolean isExact() {
+        return toTicksPerQuarter == fromTicksPerQuarter;
+    }
+
+    /**
+     * Quantizes notes to the capped resolution. A note keeps at least one tick
+     * if it had any.
+     *
+     * @param notes
+     *            : notes at the resolution given to the constructor
+     * @return the notes at getTicksPerQuarter(), in the same order; notes
+     *         itself if the resolution is not capped
+     */
+    public List<AugmentedMIDI> quantize(List<AugmentedMIDI> notes) {
+        if (isExact())
+            return notes;
+        List<AugmentedMIDI> quantized = new ArrayList<AugmentedMIDI>(notes.size());
+        for (AugmentedMIDI note : notes) {
+            long start = quantize(note.getStart());
+            long duration = quantizeDuration(note.getStart(), start,
+                    note.getDuration());
+            quantized.add(new AugmentedMIDI(note.getPitch(), (int) start,
+                    (int) duration));
+        }
+        return quantized;
+    }
+
+    /**
+     * Wraps a NoteSink so that the notes it receives are quantized like
+     * quantize(List) does
+     *
+     * @param target
+     *            : receives the notes at getTicksPerQuarter()
+     * @return a NoteSink for notes at the resolution given to the
+     *         constructor; target itself if the resolution is not capped
+     */
+    public NoteSink quantizing(final NoteSink target) {
+        if (isExact())
+            return target;
+        return new NoteSink() {
+            @Override
+            public void note(int pitch, long start, long duration) {
+                long quantizedStart = quantize(start);
+                target.note(pitch, quantizedStart, quantizeDuration(start,
+                        quantizedStart, duration));
+            }
+        };
+    }
+
+    /**
+     * Quantizes the end of a note whose start has been quantized, keeping at
+     * least one tick if the note had any
+     *
+     * @param start
+     *            : the exact start of the note
+     * @param quantizedStart
+     *            : its quantized start
+     * @param duration
+     *            : its exact duration
+     * @return the quantized duration, at least one tick if duration is not 0
+     */
+    public long quantizeDuration(long start, long quantizedStart,
+            long duration) {
+        long end = start + duration;
+        long quantizedDuration = quantize(end) - quantizedStart;
+        if (quantizedDuration == 0 && duration > 0) {
+            quantizedDuration = 1;
+            recordError(end, quantizedStart + quantizedDuration);
+        }
+        return quantizedDuration;
+    }
+
+    /**
+     * Rounds a position to the nearest tick of the capped resolution, halves
+     * up
+     *
+     * @param tick
+     *            : a position at the resolution given to the constructor
+     * @return the nearest position at getTicksPerQuarter()
+     */
+    public long quantize(long tick) {
+        long rounded = (2 * tick * toTicksPerQuarter + fromTicksPerQuarter)
+                / (2 * fromTicksPerQuarter);
+        recordError(tick, rounded);
+        return rounded;
+    }
+
+    /**
+     * @return the largest distance between a quantized position and its exact
+     *         position, in quarter notes
+     */
+    public double getMaxError() {
+        return (double) maxErrorNumerator
+                / (fromTicksPerQuarter * toTicksPerQuarter);
+    }
+
+    /**
+     * @param quarterTempo
+     *            : the tempo in quarter notes per minute
+     * @return the largest timing error in milliseconds at the given tempo
+     */
+    public double getMaxErrorMillis(int quarterTempo) {
+        return getMaxError() * 60000 / quarterTempo;
+    }
+
+    @Override
+    public String toString() {
+        return "Quantized from " + fromTicksPerQuarter + " to "
+                + toTicksPerQuarter + " ticks per quarter note, "
+                + "maximum timing error " + getMaxError() + " quarter notes";
+    }
+
+    /**
+     * Helper method that records the error of a quantized position
+     *
+     * @param tick
+     *            : the exact position, at the original resolution
+     * @param quantized
+     *            : the position at the capped resolution
+     */
+    private void recordError(long tick, long quantized) {
+        long error = Math.abs(tick * toTicksPerQuarter - quantized
+                * fromTicksPerQuarter);
+        maxErrorNumerator = Math.max(maxErrorNumerator, error);
+    }
+}
@@ -0,0 +1,83 @@
+package player;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BodyTokenizer backed by a single alternation regular expression, one group
+ * per token type. This is the reference definition of the body tokens.
+ */
+public class RegexBodyTokenizer implements BodyTokenizer {
+
+    // Regular expression representing all possible tokens patterns in the abc
+    // file body
+    private final static String regex = "(V:[^\\n]+)|" + // VOICE
+            "(%[^\\n]*)|" + // COMMENT
+            "(\\[[12])|" + // EXTRA_REPEAT
+            "([\\^_=]+)|" + // ACCIDENTAL
+            "([a-gA-Gz])|" + // NOTE_REST
+            "([1-9]*/[1-9]*|[1-9]+)|" + // MULT_FACTOR
+            "([\',]+)|" + // OCTAVE_MOD
+            "(\\[\\|)|" + // SECTION_BEGIN
+            "(\\|])|" + // SECTION_END
+            "(\\|:)|" + // REPEAT_BEGIN
+            "(:\\|)|" + // REPEAT_END
+            "(\\[)|" + // BEGIN_CHORD
+            "(])|" + // END_CHORD
+            "(\\()|" + // BEGIN_TUPLET
+            "(\\|)"; // BAR
+
+    private static final Pattern REGEX_Body_Tokens = Pattern.compile(regex);
+
+    // Array of all possible body token types, in group order
+    private static final BodyToken.Type[] Body_Tokens_Types = {
+            BodyToken.Type.VOICE, BodyToken.Type.COMMENT,
+            BodyToken.Type.EXTRA_REPEAT, BodyToken.Type.ACCIDENTAL,
+            BodyToken.Type.NOTE_REST, BodyToken.Type.MULT_FACTOR,
+            BodyToken.Type.OCTAVE_MOD, BodyToken.Type.SECTION_BEGIN,
+            BodyToken.Type.SECTION_END, BodyToken.Type.REPEAT_BEGIN,
+            BodyToken.Type.REPEAT_END, BodyToken.Type.BEGIN_CHORD,
+            BodyToken.Type.END_CHORD, BodyToken.Type.BEGIN_TUPLET,
+            BodyToken.Type.BAR, };
+
+    private Matcher regexExpressionMatcher; // expression matcher
+    private BodyToken.Type type; // type of the last match
+
+    @Override
+    public void reset(CharSequence body) {
+        if (regexExpressionMatcher == null)
+            regexExpressionMatcher = REGEX_Body_Tokens.matcher(body);
+        else
+            regexExpressionMatcher.reset(body);
+    }
+
+    @Override
+    public boolean find(int from) {
+        if (!regexExpressionMatcher.find(from))
+            return false;
+        // Finds the regex group that matched. Every alternative is wrapped in
+        // exactly one group, so only that group takes part in the match.
+        for (int i = 1; i <= Body_Tokens_Types.length; i++) {
+            if (regexExpressionMatcher.start(i) != -1) {
+                type = Body_Tokens_Types[i - 1];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int start() {
+        return regexExpressionMatcher.start();
+    }
+
+    @Override
+    public int end() {
+        return regexExpressionMatcher.end();
+    }
+
+    @Override
+    public BodyToken.Type type() {
+        return type;
+    }
+}
@@ -0,0 +1,212 @@
+package player;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes songs as Standard MIDI Files of type 1 straight to bytes, without
+ * the ShortMessage, MidiEvent and Track objects of javax.sound.midi. The
+ * tracks are those of MidiExporter: the title and tempo first, then a track
+ * per voice on a channel of its own.
+ *
+ * The notes of a voice are rendered into an EventBuffer, split into NOTE_ON
+ * and NOTE_OFF events packed into longs and sorted as such, then encoded with
+ * variable-length delta times and running status: a status byte is only
+ * written when it differs from the one of the previous event. Nothing is
+ * allocated per note; each track is encoded into a byte array reused from
+ * track to track, as a track chunk starts with its length.
+ */
+public class SmfWriter {
+
+    private static final int NOTE_OFF = 0x80; // status bytes, before the channel
+    private static final int NOTE_ON = 0x90;
+    private static final int META = 0xFF;
+    private static final int TRACK_NAME = 0x03; // meta message types
+    private static final int SET_TEMPO = 0x51;
+    private static final int END_OF_TRACK = 0x2F;
+    private static final int VELOCITY = 100;
+    private static final long MAX_DELTA = 0x0FFFFFFF; // fits in 4 bytes of 7 bits
+
+    // a packed event: | tick | 1 if NOTE_ON, so NOTE_OFFs of a tick come first | pitch: 8 bits |
+    private static final int PITCH_BITS = 8;
+    private static final int TICK_SHIFT = PITCH_BITS + 1;
+
+    private byte[] bytes = new byte[1024]; // the track being encoded
+    private int length = 0;
+    private int runningStatus = -1; // status of the previous event, -1 if none
+
+    /**
+     * Writes a song to a stream as a Standard MIDI File of type 1
+     *
+     * @param song
+     *            : a parsed song
+     * @param maxTicksPerQuarter
+     *            : the highest resolution of the file; finer songs are
+     *            quantized
+     * @param out
+     *            : receives the file; it is not closed
+     * @throws IOException
+     *             if the stream cannot be written
+     * @throws IllegalArgumentException
+     *             if a note is out of the MIDI range or too far from the
+     *             previous one
+     */
+    public static void write(Song song, int maxTicksPerQuarter, OutputStream out)
+            throws IOException {
+        new SmfWriter().writeSong(song, maxTicksPerQuarter, out);
+    }
+
+    private void writeSong(Song song, int maxTicksPerQuarter, OutputStream out)
+            throws IOException {
+        // ticks for each quarter = Num(ticks/fullNote) / 4
+        Quantizer quantizer = new Quantizer(song.getTicksForNote() / 4, maxTicksPerQuarter);
+
+        // header chunk: type 1, number of tracks, ticks per quarter note
+        putAscii("MThd");
+        putInt(6);
+        putShort(1);
+        putShort(1 + song.getVoiceMap().size());
+        putShort(quantizer.getTicksPerQuarter());
+        flush(out);
+
+        startTrack();
+        if (song.getSongTitle() != null)
+            putMeta(TRACK_NAME, song.getSongTitle().getBytes(StandardCharsets.UTF_8));
+        int microsPerQuarter = 60000000 / song.getQuarterTempo();
+        putMeta(SET_TEMPO, new byte[] { (byte) (microsPerQuarter >> 16),
+                (byte) (microsPerQuarter >> 8), (byte) microsPerQuarter });
+        endTrack(out);
+
+        EventBuffer notes = new EventBuffer();
+        long[] events = new long[16];
+        int index = 0;
+        for (Voice voice : song.getVoiceMap().values()) {
+            startTrack();
+            putMeta(TRACK_NAME, voice.getVoiceName().getBytes(StandardCharsets.UTF_8));
+
+            notes.clear();
+            NoteSinkVisitor.render(voice, 0, song.getTicksForNote(), quantizer.quantizing(notes));
+            if (events.length < 2 * notes.size())
+                events = new long[2 * notes.size()];
+            int count = packEvents(notes, events);
+            Arrays.parallelSort(events, 0, count);
+            putEvents(events, count, MidiExporter.channel(index++));
+            endTrack(out);
+        }
+    }
+
+    /**
+     * Helper method that splits notes into packed NOTE_ON and NOTE_OFF events
+     *
+     * @return the number of events
+     */
+    private static int packEvents(EventBuffer notes, long[] events) {
+        int count = 0;
+        for (int note = 0; note < notes.size(); note++) {
+            int pitch = notes.getPitch(note);
+            if (pitch < 0 || pitch > 127)
+                throw new IllegalArgumentException("Pitch out of the MIDI range: " + pitch);
+            long start = notes.getStart(note);
+            long duration = notes.getDuration(note);
+            if (duration == 0)
+                continue; // would sound for no time, and its NOTE_OFF would sort first
+            events[count++] = start << TICK_SHIFT | 1 << PITCH_BITS | pitch;
+            events[count++] = (start + duration) << TICK_SHIFT | pitch;
+        }
+        return count;
+    }
+
+    /**
+     * Helper method that encodes sorted packed events
+     */
+    private void putEvents(long[] events, int count, int channel) {
+        long tick = 0;
+        for (int i = 0; i < count; i++) {
+            long event = events[i];
+            long eventTick = event >>> TICK_SHIFT;
+            boolean noteOn = (event >>> PITCH_BITS & 1) != 0;
+            putVariableLength(eventTick - tick);
+            tick = eventTick;
+            int status = (noteOn ? NOTE_ON : NOTE_OFF) | channel;
+            if (status != runningStatus) {
+                put(status);
+                runningStatus = status;
+            }
+            put((int) (event & 0x7F));
+            put(VELOCITY);
+        }
+    }
+
+    private void startTrack() {
+        putAscii("MTrk");
+        putInt(0); // length, filled in by endTrack
+        runningStatus = -1;
+    }
+
+    private void endTrack(OutputStream out) throws IOException {
+        putMeta(END_OF_TRACK, new byte[0]);
+        int trackLength = length - 8;
+        bytes[4] = (byte) (trackLength >>> 24);
+        bytes[5] = (byte) (trackLength >>> 16);
+        bytes[6] = (byte) (trackLength >>> 8);
+        bytes[7] = (byte) trackLength;
+        flush(out);
+    }
+
+    /**
+     * Helper method that writes a meta event at the tick of the previous
+     * event; meta events cancel running status
+     */
+    private void putMeta(int type, byte[] data) {
+        putVariableLength(0);
+        put(META);
+        put(type);
+        putVariableLength(data.length);
+        for (byte b : data)
+            put(b);
+        runningStatus = -1;
+    }
+
+    /**
+     * Helper method that writes a variable-length quantity: 7 bits per byte,
+     * most significant first, with the top bit set on all bytes but the last
+     */
+    private void putVariableLength(long delta) {
+        if (delta < 0 || delta > MAX_DELTA)
+            throw new IllegalArgumentException("Delta time out of range: " + delta);
+        int shift = 21;
+        while (shift > 0 && delta >>> shift == 0)
+            shift -= 7;
+        for (; shift > 0; shift -= 7)
+            put((int) (delta >>> shift & 0x7F | 0x80));
+        put((int) (delta & 0x7F));
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++)
+            put(text.charAt(i));
+    }
+
+    private void putInt(int value) {
+        putShort(value >>> 16);
+        putShort(value);
+    }
+
+    private void putShort(int value) {
+        put(value >>> 8);
+        put(value);
+    }
+
+    private void put(int b) {
+        if (length == bytes.length)
+            bytes = Arrays.copyOf(bytes, 2 * length);
+        bytes[length++] = (byte) b;
+    }
+
+    private void flush(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+        length = 0;
+    }
+}
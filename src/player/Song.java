@@ -1,8 +1,11 @@
 package player;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import auxiliary.Mathematics;
 import auxiliary.MultiplicativeFactor;
@@ -32,11 +35,55 @@ public class Song implements MusicInterface {
 	private int tempo;
 
 	private Map<String,Voice> voiceMap;
-	private MultiplicativeFactor length;
+	private MultiplicativeFactor length; // null once the resolution is fixed
+	private long ticks = -1; // length in ticks once the resolution is fixed
 
+	// header fields other than V that a Song reads
+	private static final char[] HEADER_FIELDS = { 'X', 'T', 'C', 'L', 'M', 'Q', 'K' };
 
+
+	/**
+	 * Constructs a Song with the fields of the given header map
+	 * @param headerMap the header fields and their values, as given by HeadLexer.getHeaderMap()
+	 */
 	public Song(Map<Character, List<String>> headerMap) {
+		setDefaults();
+
+		for(Map.Entry<Character, List<String>> entry : headerMap.entrySet()) {
+		    // if the header field is not V parse appropriately
+			if (!entry.getKey().equals('V'))
+				setField(entry.getKey(), entry.getValue().get(0));
+
+			else // if the header field is V,
+				for(String voice : entry.getValue())
+					addVoice(voice);
+		}
+		finishVoices();
+	}
+
+	/**
+	 * Constructs a Song with the fields of the given header, read straight
+	 * from its field array
+	 * @param header a lexed header
+	 */
+	public Song(HeadLexer header) {
+		setDefaults();
+
+		for (char field : HEADER_FIELDS) {
+			String value = header.getField(field);
+			if (value != null)
+				setField(field, value);
+		}
+		for (String voice : header.getVoices())
+			addVoice(voice);
+		finishVoices();
+	}
 
+	/**
+	 * Helper method that sets the fields that may be missing from the header
+	 * to their defaults
+	 */
+	private void setDefaults() {
 		this.defaultNoteLength = Length_Default;
 		this.meter = Meter_Default;
 		this.tempo = Tempo_Default;
@@ -45,63 +92,70 @@ public class Song implements MusicInterface {
 		this.ticksForNote = 4;//standard quarter note
 		this.defaultVoice=false;
 
-		this.voiceMap = new HashMap<String,Voice>();
+		this.voiceMap = new LinkedHashMap<String,Voice>(); // voices in header order
+		this.length= new MultiplicativeFactor(0,1);
+	}
 
-		for(Map.Entry<Character, List<String>> entry : headerMap.entrySet()) {
-		    // if the header field is not V parse appropriately
-			if (!entry.getKey().equals('V')){
-
-				switch(entry.getKey()) {
-				case 'L':
-					this.defaultNoteLength = MultiplicativeFactor.multFactorFromString(entry.getValue().get(0).trim());
-					break;
-
-				case 'M':
-					this.meter = entry.getValue().get(0).trim(); 
-					break;
-
-				case 'Q':
-					this.tempo = Integer.valueOf(entry.getValue().get(0).trim());
-					break;
-
-				case 'X': 
-					this.trackNumber = entry.getValue().get(0).trim();
-					break;
-
-				case 'T': 
-					this.songTitle = entry.getValue().get(0).trim();
-					break;
-
-				case 'C':
-					this.composerName = entry.getValue().get(0).trim();
-					break;
-
-				case 'K':
-					this.key = entry.getValue().get(0).trim();
-					break;
-
-				default:
-					throw new RuntimeException("Invalid field in Header  : " + entry.getKey());
-				}
-			}
-			
-			else // if the header field is V,
+	/**
+	 * Helper method that sets a header field other than V
+	 * @param field the letter of the field
+	 * @param value the value of the field
+	 */
+	private void setField(char field, String value) {
+		switch(field) {
+		case 'L':
+			this.defaultNoteLength = MultiplicativeFactor.multFactorFromString(value.trim());
+			break;
+
+		case 'M':
+			this.meter = value.trim(); 
+			break;
+
+		case 'Q':
+			this.tempo = Integer.valueOf(value.trim());
+			break;
+
+		case 'X': 
+			this.trackNumber = value.trim();
+			break;
+
+		case 'T': 
+			this.songTitle = value.trim();
+			break;
+
+		case 'C':
+			this.composerName = value.trim();
+			break;
+
+		case 'K':
+			this.key = value.trim();
+			break;
+
+		default:
+			throw new RuntimeException("Invalid field in Header  : " + field);
+		}
+	}
 
-				for(String voice : entry.getValue()){
-					if (this.voiceMap.containsKey(voice)) // check if this voice has already been listed in the header
-						throw new IllegalArgumentException("A duplicate voice has been listed in the header of the abc file");
-					else
-						voiceMap.put(voice, new Voice(voice)); // if it has not then added as a new list.
-				}
+	/**
+	 * Helper method that adds a voice declared in the header
+	 * @param voice the name of the voice
+	 */
+	private void addVoice(String voice) {
+		if (this.voiceMap.containsKey(voice)) // check if this voice has already been listed in the header
+			throw new IllegalArgumentException("A duplicate voice has been listed in the header of the abc file");
+		else
+			voiceMap.put(voice, new Voice(voice)); // if it has not then added as a new list.
+	}
 
-		}
-		
+	/**
+	 * Helper method that creates the default voice if no voice is specified
+	 */
+	private void finishVoices() {
 		if(voiceMap.isEmpty()){ // create a default voice if no voice is specified
 
 			voiceMap.put(Voice_Default, new Voice(Voice_Default));
 			this.defaultVoice=true;
 		}
-		this.length= new MultiplicativeFactor(0,1);
 	}
 
 	@Override
@@ -113,6 +167,11 @@ public class Song implements MusicInterface {
 	public MultiplicativeFactor getLength() {
 		return length;
 	}
+
+	@Override
+	public long getTicks() {
+		return ticks;
+	}
 	
 	/**
 	 * Method to display all song info as specified in the header of abc File.
@@ -148,6 +207,38 @@ public class Song implements MusicInterface {
 		this.ticksForNote = ticks;
 	}
 
+	/**
+	 * Fixes the ticks for each note before any chord is added, so that chords
+	 * can be given with their lengths already in ticks. The length of the song
+	 * is then counted in ticks as well.
+	 * 
+	 * @param ticks, the duration in ticks of a whole note
+	 */
+	public void fixTicksForNote(int ticks) {
+		this.ticksForNote = ticks;
+		this.length = null;
+		this.ticks = 0;
+	}
+
+	/**
+	 * Makes every voice store its notes in columns of primitive arrays, see
+	 * Voice.storeInColumns(). Requires the ticks for each note to be fixed.
+	 * @throws IllegalStateException if they are not or a voice holds chords
+	 */
+	public void storeInColumns() {
+		if (!hasFixedTicks())
+			throw new IllegalStateException("Only lengths in ticks can be stored in columns");
+		for (Voice voice : voiceMap.values())
+			voice.storeInColumns();
+	}
+
+	/**
+	 * @return true if the ticks for each note were fixed before parsing
+	 */
+	public boolean hasFixedTicks() {
+		return length == null;
+	}
+
 	public int getTicksForNote(){
 		return ticksForNote;
 	}
@@ -179,7 +270,71 @@ public class Song implements MusicInterface {
 	public int getSongTempo() {
 		return tempo;
 	}
+
+	/**
+	 * @return the tempo in quarter notes per minute
+	 */
+	public int getQuarterTempo() {
+		//tempo expressed in quarters: Num(quarter/minute) = Num(defaultNotes/minute) * Num(fullNote/defaultNote) * Num(quarter/fullNote)
+		return ((4 * tempo * defaultNoteLength.getNum()) / defaultNoteLength.getDenom());
+	}
+
+	/**
+	 * @param seconds the time from the start of the song
+	 * @param numTicks ticks per whole note
+	 * @return the tick reached after that many seconds at the song's tempo
+	 */
+	public long getTicksForSeconds(double seconds, int numTicks) {
+		// Num(ticks) = Num(seconds) * Num(quarter/second) * Num(ticks/quarter)
+		return (long) (seconds * getQuarterTempo() * numTicks / (60 * 4));
+	}
+
+	/**
+	 * @param bars a number of bars
+	 * @param numTicks ticks per whole note
+	 * @return the tick at which that many bars of the song's meter end
+	 */
+	public long getTicksForBars(int bars, int numTicks) {
+		MultiplicativeFactor bar;
+		if (meter.equals("C"))
+			bar = new MultiplicativeFactor(4, 4); // common time
+		else if (meter.equals("C|"))
+			bar = new MultiplicativeFactor(2, 2); // cut time
+		else
+			bar = MultiplicativeFactor.multFactorFromString(meter);
+		return (long) bars * bar.getNum() * numTicks / bar.getDenom();
+	}
+
+	/**
+	 * Reads the notes of the song lazily as NOTE_ON and NOTE_OFF events, see
+	 * NoteEventMerger. A sequential stream gives the events in the order of
+	 * their ticks, and nothing is rendered beyond the events that are read.
+	 * A parallel stream reads the voices on separate threads, in no
+	 * particular order.
+	 * @param numTicks ticks per whole note, e.g. getTicksForNote()
+	 * @return the events of every voice
+	 */
+	public Stream<NoteEvent> events(int numTicks) {
+		return events(numTicks, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads the beginning of the song lazily as NOTE_ON and NOTE_OFF events,
+	 * e.g. up to getTicksForSeconds(30, numTicks) or getTicksForBars(8, numTicks).
+	 * Notes starting at the end or later are not read, and notes still
+	 * sounding at the end are turned off there.
+	 * @param numTicks ticks per whole note, e.g. getTicksForNote()
+	 * @param end the tick at which the events stop
+	 * @return the events of every voice before the end
+	 */
+	public Stream<NoteEvent> events(int numTicks, long end) {
+		List<Voice> voices = new ArrayList<Voice>(voiceMap.values());
+		return StreamSupport.stream(new NoteEventSpliterator(voices, 0, 0, numTicks, end), false);
+	}
 	
+	/**
+	 * @return the voices by name, iterated in the order of the header
+	 */
 	public Map<String,Voice> getVoiceMap() {
 		return voiceMap; 
 	}
@@ -194,13 +349,44 @@ public class Song implements MusicInterface {
 		if(voiceMap.containsKey(voice))
 		{
 			voiceMap.get(voice).addChord(chord);
-			if (length.compareTo(voiceMap.get(voice).getLength()) < 0) {
-				length = voiceMap.get(voice).getLength(); //song length is as long as the longest voice
-			}
+			updateLength(voiceMap.get(voice));
 		}
 		else {
 			throw new IllegalArgumentException("Voice: " + voice +",  does not exist in header");
 		}
 	}
-}
 
+	/**
+	 * Replaces count Chords of the specified voice, starting at index from,
+	 * with the given Chords. If the voice has not been specified, throws
+	 * IllegalArgumentException
+	 * @param voice
+	 * @param from index of the first Chord to replace
+	 * @param count number of Chords to replace
+	 * @param chords the Chords put in their place
+	 */
+	public void replaceChords(String voice, int from, int count, List<Chord> chords) {
+		if (!voiceMap.containsKey(voice))
+			throw new IllegalArgumentException("Voice: " + voice +",  does not exist in header");
+		voiceMap.get(voice).replaceChords(from, count, chords);
+
+		if (hasFixedTicks())
+			ticks = 0;
+		else
+			length = new MultiplicativeFactor(0, 1);
+		for (Voice v : voiceMap.values())
+			updateLength(v);
+	}
+
+	/**
+	 * Helper method that makes the song as long as the given voice if it is
+	 * longer
+	 * @param voice
+	 */
+	private void updateLength(Voice voice) {
+		if (hasFixedTicks())
+			ticks = Math.max(ticks, voice.getTicks());
+		else if (length.compareTo(voice.getLength()) < 0)
+			length = voice.getLength(); //song length is as long as the longest voice
+	}
+}
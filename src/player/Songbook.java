@@ -0,0 +1,176 @@
+package player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A collection of abc tunes stored in one file. Each tune starts with an
+ * index number line ("X:") at the beginning of a line and runs up to the next
+ * one; anything before the first tune is ignored.
+ * 
+ * The songbook only records where each tune starts. Tunes are handed out as
+ * subSequences of the source, which do not copy the content when the source
+ * is a CharBuffer from AbcFileReader.
+ */
+public class Songbook {
+
+    // Tunes per task below which a range of tunes is parsed sequentially
+    private static final int SEQUENTIAL_TUNES = 4;
+
+    private final CharSequence source;
+    private final int[] tuneStarts; // offset of each tune, plus source length
+
+    /**
+     * Splits the given content into tunes
+     * 
+     * @param source
+     *            : the content of an abc songbook
+     */
+    public Songbook(CharSequence source) {
+        this.source = source;
+
+        int[] starts = new int[16];
+        int count = 0;
+        int length = source.length();
+        for (int i = 0; i + 1 < length; i++) {
+            if (source.charAt(i) == 'X' && source.charAt(i + 1) == ':'
+                    && (i == 0 || source.charAt(i - 1) == '\n')) {
+                if (count + 1 == starts.length)
+                    starts = Arrays.copyOf(starts, 2 * starts.length);
+                starts[count++] = i;
+            }
+        }
+        starts[count] = length;
+        this.tuneStarts = Arrays.copyOf(starts, count + 1);
+    }
+
+    /**
+     * Loads and splits the songbook at the given location
+     * 
+     * @param filePath
+     *            : a String specifying the location of an abc songbook
+     * @return the Songbook
+     * @throws RuntimeException
+     *             if the file is not found or if an IO exception is
+     *             encountered.
+     */
+    public static Songbook read(String filePath) {
+        return new Songbook(AbcFileReader.read(filePath));
+    }
+
+    /**
+     * @return the number of tunes in the songbook
+     */
+    public int size() {
+        return tuneStarts.length - 1;
+    }
+
+    /**
+     * @param index
+     *            : position of the tune, 0 <= index < size()
+     * @return index of the tune's first character in the source
+     */
+    public int getTuneOffset(int index) {
+        return tuneStarts[index];
+    }
+
+    /**
+     * @param index
+     *            : position of the tune, 0 <= index < size()
+     * @return the text of the tune, without copying it from the source
+     */
+    public CharSequence getTune(int index) {
+        return source.subSequence(tuneStarts[index], tuneStarts[index + 1]);
+    }
+
+    /**
+     * Lexes and parses a single tune. A tune that cannot be parsed is reported
+     * in its entry rather than thrown.
+     * 
+     * @param index
+     *            : position of the tune, 0 <= index < size()
+     * @return SongbookEntry holding the Song or the parse error
+     */
+    public SongbookEntry parse(int index) {
+        try {
+            Song song = new Parser(new Lexer(getTune(index))).parse();
+            return new SongbookEntry(index, tuneStarts[index], song, null);
+        } catch (RuntimeException e) {
+            return new SongbookEntry(index, tuneStarts[index], null, e);
+        }
+    }
+
+    /**
+     * Parses only the header of a single tune, without lexing its body. The
+     * Song of the entry has the header fields and no chords. A header that
+     * cannot be parsed is reported in its entry rather than thrown.
+     * 
+     * @param index
+     *            : position of the tune, 0 <= index < size()
+     * @return SongbookEntry holding the Song or the parse error
+     */
+    public SongbookEntry parseHeader(int index) {
+        try {
+            Song song = Parser.parseHeader(getTune(index));
+            return new SongbookEntry(index, tuneStarts[index], song, null);
+        } catch (RuntimeException e) {
+            return new SongbookEntry(index, tuneStarts[index], null, e);
+        }
+    }
+
+    /**
+     * Parses every tune in parallel on the common ForkJoinPool
+     * 
+     * @return one SongbookEntry per tune, in file order
+     */
+    public List<SongbookEntry> parseAll() {
+        return parseAll(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses every tune in parallel on the given pool. Tunes are independent,
+     * so a tune that fails does not affect the others.
+     * 
+     * @param pool
+     *            : the ForkJoinPool to parse on
+     * @return one SongbookEntry per tune, in file order
+     */
+    public List<SongbookEntry> parseAll(ForkJoinPool pool) {
+        SongbookEntry[] entries = new SongbookEntry[size()];
+        pool.invoke(new ParseTask(entries, 0, entries.length));
+        return new ArrayList<SongbookEntry>(Arrays.asList(entries));
+    }
+
+    /**
+     * Parses the tunes in [from, to), splitting the range in halves until it is
+     * small enough to be parsed sequentially
+     */
+    private class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SongbookEntry[] entries;
+        private final int from;
+        private final int to;
+
+        ParseTask(SongbookEntry[] entries, int from, int to) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_TUNES) {
+                for (int i = from; i < to; i++)
+                    entries[i] = parse(i);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask(entries, from, middle), new ParseTask(
+                        entries, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package player;
+
+/**
+ * The outcome of parsing one tune of a Songbook: either the parsed Song or
+ * the exception that stopped the tune from being parsed.
+ */
+public class SongbookEntry {
+
+    private final int index;
+    private final int offset;
+    private final Song song;
+    private final RuntimeException error;
+
+    /**
+     * Constructs a SongbookEntry
+     * 
+     * @param index
+     *            : position of the tune in the songbook, starting at 0
+     * @param offset
+     *            : index of the tune's first character in the songbook
+     * @param song
+     *            : the parsed Song, or null if parsing failed
+     * @param error
+     *            : the exception raised while parsing, or null if it succeeded
+     */
+    public SongbookEntry(int index, int offset, Song song,
+            RuntimeException error) {
+        this.index = index;
+        this.offset = offset;
+        this.song = song;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the tune in the songbook, starting at 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return index of the tune's first character in the songbook
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return true if the tune was parsed into a Song
+     */
+    public boolean isParsed() {
+        return error == null;
+    }
+
+    /**
+     * @return the parsed Song, or null if parsing failed
+     */
+    public Song getSong() {
+        return song;
+    }
+
+    /**
+     * @return the exception raised while parsing, or null if it succeeded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "Tune " + index + " at " + offset + ": "
+                + (isParsed() ? song.getSongTitle() : error.getMessage());
+    }
+}
@@ -0,0 +1,123 @@
+package player;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import auxiliary.MultiplicativeFactor;
+
+import sound.NoteScheduler;
+
+/**
+ * ChordListener that turns chords into notes for a NoteScheduler as soon as
+ * the Parser recognises them, so that playing can start before the whole
+ * file is parsed.
+ *
+ * The resolution of the song is not known until parsing ends, so a fixed
+ * number of ticks per quarter note is used instead. Note boundaries are
+ * rounded to the nearest tick from their exact position in the voice, which
+ * keeps voices aligned even when a length does not divide the resolution.
+ *
+ * A note is only handed to the scheduler once every voice has been parsed up
+ * to its start, so that notes reach the scheduler in the order of the piece.
+ * Until then it waits here, in the queue of its voice. When the voices are
+ * interleaved bar by bar, only a few bars wait. When they are written one
+ * after the other, the notes of the first voices wait until the last one is
+ * parsed, and playing starts then. The scheduler never blocks the Parser on
+ * notes that cannot be played yet.
+ */
+public class StreamingRenderer implements ChordListener {
+
+    private final NoteScheduler scheduler;
+    private final long ticksPerWholeNote;
+    private final Map<String, MultiplicativeFactor> voicePositions; // in whole notes
+    private final Map<String, ArrayDeque<long[]>> waitingNotes; // {note, startTick, numTicks}
+
+    /**
+     * Constructs a StreamingRenderer for the voices of the given song
+     *
+     * @param song
+     *            : a Song holding at least the header of the piece
+     * @param scheduler
+     *            : the NoteScheduler the notes are added to
+     * @param ticksPerQuarterNote
+     *            : resolution of the scheduler
+     */
+    public StreamingRenderer(Song song, NoteScheduler scheduler,
+            int ticksPerQuarterNote) {
+        this.scheduler = scheduler;
+        this.ticksPerWholeNote = 4L * ticksPerQuarterNote;
+        this.voicePositions = new HashMap<String, MultiplicativeFactor>();
+        this.waitingNotes = new HashMap<String, ArrayDeque<long[]>>();
+        for (String voice : song.getVoiceMap().keySet()) {
+            voicePositions.put(voice, new MultiplicativeFactor(0, 1));
+            waitingNotes.put(voice, new ArrayDeque<long[]>());
+        }
+    }
+
+    @Override
+    public void chordParsed(String voice, Chord chord) {
+        MultiplicativeFactor position = voicePositions.get(voice);
+        long startTick = toTicks(position);
+        ArrayDeque<long[]> waiting = waitingNotes.get(voice);
+
+        for (Note note : chord.getAllNotes()) {
+            if (note.getPitch() == null)
+                continue; // rests are not played
+            long endTick = toTicks(position.sum(note.getLength()));
+            waiting.add(new long[] { note.getPitch().toMidiNote(), startTick,
+                    endTick - startTick });
+        }
+
+        voicePositions.put(voice, position.sum(chord.getLength()));
+        long ready = readyTicks();
+        handOver(ready);
+        scheduler.ready(ready);
+    }
+
+    /**
+     * Hands the notes still waiting to the scheduler, once the Parser is
+     * done. Blocks while the buffer of the scheduler is full.
+     */
+    public void flush() {
+        handOver(Long.MAX_VALUE);
+    }
+
+    /**
+     * Helper method that hands the waiting notes starting before a tick to
+     * the scheduler
+     */
+    private void handOver(long tick) {
+        try {
+            for (ArrayDeque<long[]> waiting : waitingNotes.values()) {
+                while (!waiting.isEmpty() && waiting.peek()[1] < tick) {
+                    long[] note = waiting.poll();
+                    scheduler.addNote((int) note[0], note[1], note[2]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scheduling notes", e);
+        }
+    }
+
+    /**
+     * @return the tick before which every voice has been parsed
+     */
+    private long readyTicks() {
+        long ready = Long.MAX_VALUE;
+        for (MultiplicativeFactor position : voicePositions.values())
+            ready = Math.min(ready, toTicks(position));
+        return ready;
+    }
+
+    /**
+     * @param position
+     *            : a position in whole notes
+     * @return the nearest tick
+     */
+    private long toTicks(MultiplicativeFactor position) {
+        return (2 * position.getNum() * ticksPerWholeNote + position.getDenom())
+                / (2 * position.getDenom());
+    }
+}
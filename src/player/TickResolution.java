@@ -0,0 +1,119 @@
+package player;
+
+import auxiliary.MultiplicativeFactor;
+
+/**
+ * Finds the resolution of a song before it is parsed: the smallest number of
+ * ticks per whole note in which every note of the body lasts a whole number
+ * of ticks. This is the value Song.syncTicks grows to while parsing, so a
+ * Parser that knows it up front can give lengths in ticks straight away.
+ *
+ * The body is scanned once with a DfaBodyTokenizer, without building
+ * BodyTokens. Only the tokens that carry lengths are read: the length factor
+ * after a note or rest and the number of notes of a tuplet.
+ */
+public class TickResolution {
+
+    private static final long STANDARD_TICKS = 4; // Song starts from a quarter note
+
+    private TickResolution() {
+    }
+
+    /**
+     * Computes the resolution of a body
+     *
+     * @param body
+     *            : the body of an abc file
+     * @param defaultNoteLength
+     *            : the default length of a note, from the L field
+     * @return the number of ticks of a whole note
+     * @throws RuntimeException
+     *             if the resolution does not fit in an int
+     */
+    public static int ticksPerWholeNote(CharSequence body,
+            MultiplicativeFactor defaultNoteLength) {
+        BodyTokenizer tokenizer = new DfaBodyTokenizer();
+        tokenizer.reset(body);
+
+        long ticks = STANDARD_TICKS;
+        boolean inNote = false; // a note or rest whose length is not read yet
+        boolean tupletStart = false; // the tuplet count comes next
+        int tupletNotes = 0; // notes of the current tuplet still to come
+        MultiplicativeFactor tupletModifier = null;
+
+        for (int location = 0; location < body.length()
+                && tokenizer.find(location); location = tokenizer.end()) {
+            BodyToken.Type type = tokenizer.type();
+
+            if (inNote) {
+                if (type == BodyToken.Type.OCTAVE_MOD)
+                    continue;
+                MultiplicativeFactor factor = MultiplicativeFactor.valueOf(1, 1);
+                if (type == BodyToken.Type.MULT_FACTOR)
+                    factor = MultiplicativeFactor.multFactorFromString(body
+                            .subSequence(tokenizer.start(), tokenizer.end())
+                            .toString());
+                ticks = syncNote(ticks, defaultNoteLength.product(factor),
+                        tupletNotes > 0 ? tupletModifier : null);
+                if (tupletNotes > 0)
+                    tupletNotes--;
+                inNote = false;
+                if (type == BodyToken.Type.MULT_FACTOR)
+                    continue;
+            }
+
+            if (tupletStart && type == BodyToken.Type.MULT_FACTOR
+                    && tokenizer.end() - tokenizer.start() == 1) {
+                tupletNotes = body.charAt(tokenizer.start()) - '0';
+                tupletModifier = Parser.tupletModifier(tupletNotes);
+                if (tupletModifier == null)
+                    tupletNotes = 0; // the Parser reports the error
+            }
+            tupletStart = type == BodyToken.Type.BEGIN_TUPLET;
+            inNote = type == BodyToken.Type.NOTE_REST;
+        }
+        if (inNote)
+            ticks = syncNote(ticks, defaultNoteLength,
+                    tupletNotes > 0 ? tupletModifier : null);
+        return (int) ticks;
+    }
+
+    /**
+     * Grows the resolution so that a note lasts a whole number of ticks
+     *
+     * @param ticks
+     *            : the resolution so far
+     * @param length
+     *            : the length of the note
+     * @param tupletModifier
+     *            : the factor of the tuplet the note is in, or null
+     * @return the new resolution
+     */
+    private static long syncNote(long ticks, MultiplicativeFactor length,
+            MultiplicativeFactor tupletModifier) {
+        ticks = lcm(ticks, length.getDenom());
+        if (tupletModifier != null)
+            ticks = lcm(ticks, length.product(tupletModifier).getDenom());
+        return ticks;
+    }
+
+    /**
+     * @return the least common multiple of an int resolution and a positive int
+     * @throws RuntimeException
+     *             if it does not fit in an int
+     */
+    private static long lcm(long ticks, int denom) {
+        long a = ticks, b = denom;
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+        long lcm = ticks / a * denom;
+        if (lcm > Integer.MAX_VALUE)
+            throw new RuntimeException(
+                    "Note lengths are too fine to be counted in int ticks: "
+                            + lcm + " ticks per whole note");
+        return lcm;
+    }
+}
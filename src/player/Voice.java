@@ -2,14 +2,17 @@ package player;
 
 import java.util.List;
 import java.util.ArrayList;
+import auxiliary.Mathematics;
 import auxiliary.MultiplicativeFactor;
 
 
 public class Voice implements MusicInterface {
 
 	private final String VoiceName;
-	private MultiplicativeFactor length;
+	private MultiplicativeFactor length; // null once chords are given in ticks
+	private long ticks; // length in ticks, for chords given in ticks
 	private List<Chord> Allchords;
+	private NoteColumns columns; // holds the notes instead of Allchords if not null
 
 	/**
 	 * Constructs a voice, given its name
@@ -30,6 +33,34 @@ public class Voice implements MusicInterface {
 	public MultiplicativeFactor getLength() {
 		return length;
 	}
+
+	@Override
+	public long getTicks() {
+		if (columns != null)
+			return columns.getTicks();
+		return length == null ? ticks : -1;
+	}
+
+	/**
+	 * Makes the voice store its notes in columns of primitive arrays rather
+	 * than as Chord and Note objects. Only Chords given in ticks can then be
+	 * added, and getAllChords() builds the Chords from the columns.
+	 * @throws IllegalStateException if the voice already holds chords
+	 */
+	public void storeInColumns() {
+		if (!Allchords.isEmpty())
+			throw new IllegalStateException("Voice " + VoiceName + " already holds chords");
+		columns = new NoteColumns();
+		length = null;
+	}
+
+	/**
+	 * Return the columns holding the notes of the voice
+	 * @return : the NoteColumns, or null if the voice holds Chord objects
+	 */
+	public NoteColumns getColumns() {
+		return columns;
+	}
 	
 	/**
 	 * Return the name of the voice
@@ -44,6 +75,8 @@ public class Voice implements MusicInterface {
 	 * @return : List of chords in the voice 
 	 */
 	public List<Chord> getAllChords(){
+		if (columns != null)
+			return columns.getChords();
 		return Allchords;
 	}
 
@@ -52,7 +85,84 @@ public class Voice implements MusicInterface {
 	 * @param chord the chord to be added
 	 */
 	public void addChord(Chord chord) {
+		if (columns != null) {
+			chord.setStart(columns.addChord(chord));
+			return;
+		}
+		checkTicks(chord);
+		if (chord.getTicks() >= 0) {
+			length = null;
+			chord.setStart(ticks);
+			ticks += chord.getTicks();
+		}
+		else
+			length = length.sum(chord.getLength());
 		Allchords.add(chord);
-		length = length.sum(chord.getLength());
+	}
+
+	/**
+	 * Replaces count Chords starting at index from with the given Chords
+	 * @param from index of the first Chord to replace
+	 * @param count number of Chords to replace
+	 * @param chords the Chords put in their place
+	 */
+	public void replaceChords(int from, int count, List<Chord> chords) {
+		if (columns != null) {
+			List<Chord> all = new ArrayList<Chord>(columns.getChords());
+			all.subList(from, from + count).clear();
+			all.addAll(from, chords);
+			columns = new NoteColumns();
+			for (Chord chord : all)
+				addChord(chord);
+			return;
+		}
+		for (Chord chord : chords)
+			checkTicks(chord);
+		if (length == null) {
+			replaceTickChords(from, count, chords);
+			return;
+		}
+
+		List<Chord> replaced = Allchords.subList(from, from + count);
+		MultiplicativeFactor removed = new MultiplicativeFactor(0, 1);
+		for (Chord chord : replaced)
+			removed = removed.sum(chord.getLength());
+		replaced.clear();
+		Allchords.addAll(from, chords);
+
+		// the constructor drops signs, so the difference is taken by hand, in
+		// longs as the products overflow ints for fine resolutions
+		long num = (long) length.getNum() * removed.getDenom()
+				- (long) removed.getNum() * length.getDenom();
+		long denom = (long) length.getDenom() * removed.getDenom();
+		long gcd = num == 0 ? denom : Mathematics.gcd(num, denom);
+		length = new MultiplicativeFactor(Math.toIntExact(num / gcd), Math.toIntExact(denom / gcd));
+		for (Chord chord : chords)
+			length = length.sum(chord.getLength());
+	}
+
+	/**
+	 * Helper method that replaces Chords given in ticks and moves the
+	 * following Chords to their new start
+	 */
+	private void replaceTickChords(int from, int count, List<Chord> chords) {
+		Allchords.subList(from, from + count).clear();
+		Allchords.addAll(from, chords);
+
+		ticks = from == 0 ? 0 : Allchords.get(from - 1).getStart() + Allchords.get(from - 1).getTicks();
+		for (Chord chord : Allchords.subList(from, Allchords.size())) {
+			chord.setStart(ticks);
+			ticks += chord.getTicks();
+		}
+	}
+
+	/**
+	 * Helper method that checks that a Chord is given in ticks if and only if
+	 * the Chords already in the voice are
+	 * @throws IllegalArgumentException if it is not
+	 */
+	private void checkTicks(Chord chord) {
+		if (!Allchords.isEmpty() && (chord.getTicks() >= 0) != (length == null))
+			throw new IllegalArgumentException("Chords given in ticks and in whole notes cannot be mixed in a voice");
 	}
 }
@@ -0,0 +1,230 @@
+package player;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Renders songs to WAV files offline, as fast as the processor allows and
+ * without a sound card. The software synthesizer of the JDK (Gervill) is
+ * opened with AudioSynthesizer.openStream instead of a line, so it produces
+ * PCM only when it is read. The NOTE_ON and NOTE_OFF events of a
+ * NoteEventMerger are sent to it with timestamps a buffer ahead of the
+ * samples being read, and the samples are written to the file through a
+ * FileChannel. Each voice plays on the channel MidiExporter gives it.
+ *
+ * AudioSynthesizer is not part of the public API, so it is reached by
+ * reflection. From Java 9 on, this needs the JVM option
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED
+ *
+ * Usage: WavRenderer abcFile wavFile
+ */
+public class WavRenderer {
+
+    public static final float SAMPLE_RATE = 44100;
+
+    private static final String AUDIO_SYNTHESIZER = "com.sun.media.sound.AudioSynthesizer";
+    private static final int CHANNELS = 2;
+    private static final int SAMPLE_BITS = 16;
+    private static final int FRAME_BYTES = CHANNELS * SAMPLE_BITS / 8;
+    private static final int BUFFER_FRAMES = 16384;
+    private static final int HEADER_BYTES = 44;
+    private static final long MAX_DATA_BYTES = 0xFFFFFFFFL - (HEADER_BYTES - 8);
+    private static final long TAIL_MICROS = 1000000; // lets the last notes ring out
+    private static final int VELOCITY = 100;
+
+    /**
+     * Renders a song to a WAV file of 16-bit stereo PCM at SAMPLE_RATE
+     *
+     * @param song
+     *            : a parsed song
+     * @param wavFile
+     *            : the file to write
+     * @return the number of frames written
+     * @throws IOException
+     *             if the file cannot be written, or the song is too long for
+     *             a WAV file
+     * @throws MidiUnavailableException
+     *             if the synthesizer cannot render offline
+     * @throws IllegalArgumentException
+     *             if a note is out of the MIDI range
+     */
+    public static long render(Song song, File wavFile)
+            throws IOException, MidiUnavailableException {
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, SAMPLE_BITS, CHANNELS, true, false);
+        Synthesizer synthesizer = MidiSystem.getSynthesizer();
+        AudioInputStream audio = openStream(synthesizer, format);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(wavFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            Receiver receiver = synthesizer.getReceiver();
+            // seconds per tick = 60 / (quarters per minute * ticks per quarter)
+            double microsPerTick = 60000000.0 * 4 / song.getQuarterTempo() / song.getTicksForNote();
+
+            NoteEventMerger events = new NoteEventMerger(song, 0, song.getTicksForNote());
+            NoteEvent next = events.hasNext() ? events.next() : null;
+            long lastMicros = 0;
+            byte[] bytes = new byte[BUFFER_FRAMES * FRAME_BYTES];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long frames = 0;
+            channel.position(HEADER_BYTES);
+            while (true) {
+                // the synthesizer starts each event at its timestamp, so every
+                // event up to the end of the buffer is sent before it is read
+                long bufferEnd = toMicros(frames + BUFFER_FRAMES);
+                while (next != null && Math.round(next.getTick() * microsPerTick) < bufferEnd) {
+                    lastMicros = Math.round(next.getTick() * microsPerTick);
+                    receiver.send(message(next), lastMicros);
+                    next = events.hasNext() ? events.next() : null;
+                }
+                long count = BUFFER_FRAMES;
+                if (next == null)
+                    count = Math.min(count, toFrames(lastMicros + TAIL_MICROS) - frames);
+                if (count <= 0)
+                    break;
+                if ((frames + count) * FRAME_BYTES > MAX_DATA_BYTES)
+                    throw new IOException("The song is too long for a WAV file");
+                readFully(audio, bytes, (int) count * FRAME_BYTES);
+                buffer.clear().limit((int) count * FRAME_BYTES);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                frames += count;
+            }
+
+            ByteBuffer header = header(format, frames * FRAME_BYTES);
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            return frames;
+        } finally {
+            if (channel != null)
+                channel.close();
+            synthesizer.close();
+        }
+    }
+
+    /**
+     * Parses an abc file and renders it to a WAV file
+     *
+     * @param abcFile
+     *            : the name of the abc file
+     * @param wavFile
+     *            : the file to write
+     * @return the number of frames written
+     * @throws IOException
+     *             if the file cannot be written
+     * @throws MidiUnavailableException
+     *             if the synthesizer cannot render offline
+     */
+    public static long export(String abcFile, File wavFile)
+            throws IOException, MidiUnavailableException {
+        Song song = new Parser(new Lexer(AbcFileReader.read(abcFile))).parseTicks(true);
+        return render(song, wavFile);
+    }
+
+    /**
+     * Helper method that opens the synthesizer on a stream instead of a line
+     */
+    private static AudioInputStream openStream(Synthesizer synthesizer, AudioFormat format)
+            throws MidiUnavailableException {
+        try {
+            Class<?> audioSynthesizer = Class.forName(AUDIO_SYNTHESIZER);
+            if (!audioSynthesizer.isInstance(synthesizer))
+                throw new MidiUnavailableException("The synthesizer cannot render offline: "
+                        + synthesizer.getDeviceInfo().getName());
+            Method openStream = audioSynthesizer.getMethod("openStream", AudioFormat.class, Map.class);
+            return (AudioInputStream) openStream.invoke(synthesizer, format, null);
+        } catch (ReflectiveOperationException e) {
+            if (e instanceof InvocationTargetException
+                    && e.getCause() instanceof MidiUnavailableException)
+                throw (MidiUnavailableException) e.getCause();
+            String message = "No software synthesizer to render offline";
+            if (e instanceof IllegalAccessException)
+                message += "; run with --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED";
+            MidiUnavailableException unavailable = new MidiUnavailableException(message);
+            unavailable.initCause(e);
+            throw unavailable;
+        }
+    }
+
+    private static ShortMessage message(NoteEvent event) {
+        try {
+            return new ShortMessage(event.getCommand(), MidiExporter.channel(event.getVoice()),
+                    event.getPitch(), VELOCITY);
+        } catch (InvalidMidiDataException e) {
+            throw new IllegalArgumentException("Pitch out of the MIDI range: " + event.getPitch(), e);
+        }
+    }
+
+    private static long toMicros(long frames) {
+        return (long) Math.ceil(frames * 1e6 / SAMPLE_RATE);
+    }
+
+    private static long toFrames(long micros) {
+        return (long) Math.ceil(micros * (double) SAMPLE_RATE / 1e6);
+    }
+
+    /**
+     * Helper method that reads the synthesizer until the buffer is full; its
+     * stream never ends
+     */
+    private static void readFully(AudioInputStream audio, byte[] bytes, int length)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = audio.read(bytes, read, length - read);
+            if (count < 0)
+                throw new IOException("The synthesizer stream ended");
+            read += count;
+        }
+    }
+
+    /**
+     * @return the RIFF header of a WAV file of PCM samples
+     */
+    private static ByteBuffer header(AudioFormat format, long dataBytes) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) (HEADER_BYTES - 8 + dataBytes));
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16); // size of the format chunk
+        header.putShort((short) 1); // PCM
+        header.putShort((short) format.getChannels());
+        header.putInt((int) format.getSampleRate());
+        header.putInt((int) format.getSampleRate() * format.getFrameSize());
+        header.putShort((short) format.getFrameSize());
+        header.putShort((short) format.getSampleSizeInBits());
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) dataBytes);
+        header.flip();
+        return header;
+    }
+
+    public static void main(String[] args) throws IOException, MidiUnavailableException {
+        if (args.length < 2) {
+            System.out.println("Usage: WavRenderer abcFile wavFile");
+            return;
+        }
+        long start = System.nanoTime();
+        long frames = export(args[0], new File(args[1]));
+        System.out.println(String.format("%.1f s of audio in %.1f ms", frames / SAMPLE_RATE,
+                (System.nanoTime() - start) / 1e6));
+    }
+}
@@ -0,0 +1,292 @@
+package sound;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Plays notes while they are still being added. Unlike SequencePlayer, which
+ * needs the whole track before it starts, a NoteScheduler starts sounding as
+ * soon as the first notes are ready and sends the later ones to a MIDI
+ * Receiver when they are due.
+ *
+ * Notes are handed over through a bounded queue, so a producer that gets too
+ * far ahead of playback waits instead of buffering the whole piece.
+ */
+public class NoteScheduler {
+
+    private static final int DEFAULT_CHANNEL = 0; // midi channel - for our purpose always 0
+    private static final int DEFAULT_VELOCITY = 100; // the volume
+    private static final int DEFAULT_CAPACITY = 4096; // notes buffered ahead of playback
+    private static final long IDLE_WAIT_NANOS = 10000000L; // 10 ms
+
+    private final Receiver receiver;
+    private final boolean ownsReceiver; // close the receiver when done
+    private final double nanosPerTick;
+    private final long startTicks;
+    private final int capacity;
+
+    private final BlockingQueue<long[]> queue; // {note, startTick, numTicks}
+    private final PriorityQueue<long[]> pending; // {tick, command, note}
+
+    private volatile long readyTicks = 0; // all notes before this tick added
+    private volatile boolean finished = false; // no more notes will be added
+    private Thread thread;
+    private volatile long firstNoteNanos = -1; // when the first note sounded
+
+    /*
+     * Rep invariant:
+     *   receiver is non-null,
+     *   nanosPerTick is positive,
+     *   capacity is positive
+     */
+
+    /**
+     * Makes a scheduler that plays through the default MIDI receiver
+     *
+     * @param beatsPerMinute
+     *            the number of beats per minute, where each beat is equal to a
+     *            quarter note in duration
+     * @param ticksPerQuarterNote
+     *            the number of ticks per quarter note
+     * @param startTicks
+     *            number of ticks that must be ready before playing starts
+     * @throws MidiUnavailableException
+     */
+    public NoteScheduler(int beatsPerMinute, int ticksPerQuarterNote,
+            long startTicks) throws MidiUnavailableException {
+        this(beatsPerMinute, ticksPerQuarterNote, startTicks,
+                DEFAULT_CAPACITY, MidiSystem.getReceiver(), true);
+    }
+
+    /**
+     * Makes a scheduler that plays through the given MIDI receiver. The
+     * receiver is left open when playing is done.
+     *
+     * @param beatsPerMinute
+     *            the number of beats per minute, where each beat is equal to a
+     *            quarter note in duration
+     * @param ticksPerQuarterNote
+     *            the number of ticks per quarter note
+     * @param startTicks
+     *            number of ticks that must be ready before playing starts
+     * @param capacity
+     *            number of notes that may be buffered ahead of playback
+     * @param receiver
+     *            the Receiver the MIDI messages are sent to
+     */
+    public NoteScheduler(int beatsPerMinute, int ticksPerQuarterNote,
+            long startTicks, int capacity, Receiver receiver) {
+        this(beatsPerMinute, ticksPerQuarterNote, startTicks, capacity,
+                receiver, false);
+    }
+
+    private NoteScheduler(int beatsPerMinute, int ticksPerQuarterNote,
+            long startTicks, int capacity, Receiver receiver,
+            boolean ownsReceiver) {
+        this.receiver = receiver;
+        this.ownsReceiver = ownsReceiver;
+        this.nanosPerTick = 60e9 / ((double) beatsPerMinute * ticksPerQuarterNote);
+        this.startTicks = startTicks;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<long[]>(capacity);
+        this.pending = new PriorityQueue<long[]>(2 * capacity,
+                new java.util.Comparator<long[]>() {
+                    @Override
+                    public int compare(long[] a, long[] b) {
+                        if (a[0] != b[0])
+                            return a[0] < b[0] ? -1 : 1;
+                        // at the same tick, release notes before striking
+                        // new ones so that repeated pitches sound again
+                        return (int) (a[1] - b[1]);
+                    }
+                });
+        checkRep();
+    }
+
+    /**
+     * Schedules the note to be played starting at startTick for the duration
+     * of numTicks. Notes may be added in any order, but each one should be
+     * added before it is due. Blocks while the buffer is full.
+     *
+     * @param note
+     *            the pitch value for the note to be played; must be a valid
+     *            note
+     * @param startTick
+     *            the starting tick; must be >= 0
+     * @param numTicks
+     *            the number of ticks for which this note should be played;
+     *            must be >= 0
+     * @throws InterruptedException
+     *             if interrupted while waiting for space in the buffer
+     */
+    public void addNote(int note, long startTick, long numTicks)
+            throws InterruptedException {
+        queue.put(new long[] { note, startTick, numTicks });
+    }
+
+    /**
+     * Declares that every note starting before the given tick has been added.
+     * Playing starts once startTicks are ready.
+     *
+     * @param tick
+     *            a tick no smaller than in previous calls
+     */
+    public void ready(long tick) {
+        readyTicks = tick;
+    }
+
+    /**
+     * Declares that all notes have been added
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Starts the thread that plays the notes. It waits for the first ticks to
+     * be ready, then plays in real time until finish() has been called and
+     * every note has been played.
+     */
+    public void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    schedule();
+                } catch (InterruptedException e) {
+                    // stopped playing
+                } finally {
+                    if (ownsReceiver)
+                        receiver.close();
+                }
+            }
+        }, "NoteScheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Blocks until every note has been played
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * Stops playing at once
+     */
+    public void stop() {
+        thread.interrupt();
+    }
+
+    /**
+     * @return System.nanoTime() at which the first note was played, or -1 if
+     *         none has been played yet
+     */
+    public long getFirstNoteNanos() {
+        return firstNoteNanos;
+    }
+
+    /**
+     * The playing loop, run on the scheduler thread
+     */
+    private void schedule() throws InterruptedException {
+        long startNanos = -1;
+
+        while (true) {
+            boolean done = finished; // read before draining, see below
+            boolean ready = readyTicks >= startTicks;
+            // Notes added before finish() or ready() are in the queue by now
+            drainQueue();
+
+            if (startNanos < 0) {
+                if (!done && !ready && pending.size() < 2 * capacity) {
+                    waitForNotes(IDLE_WAIT_NANOS);
+                    continue;
+                }
+                startNanos = System.nanoTime();
+            }
+
+            long nowTick = (long) ((System.nanoTime() - startNanos) / nanosPerTick);
+            while (!pending.isEmpty() && pending.peek()[0] <= nowTick)
+                send(pending.poll());
+
+            if (pending.isEmpty()) {
+                if (done && queue.isEmpty())
+                    return;
+                waitForNotes(IDLE_WAIT_NANOS);
+            } else {
+                long dueNanos = startNanos
+                        + (long) (pending.peek()[0] * nanosPerTick);
+                waitForNotes(Math.min(IDLE_WAIT_NANOS, dueNanos
+                        - System.nanoTime()));
+            }
+        }
+    }
+
+    /**
+     * Moves notes from the queue to the pending events, as long as fewer than
+     * capacity notes are pending
+     */
+    private void drainQueue() {
+        long[] note;
+        while (pending.size() < 2 * capacity && (note = queue.poll()) != null)
+            addEvents(note);
+    }
+
+    /**
+     * Waits for a note to be added, for at most the given time
+     */
+    private void waitForNotes(long nanos) throws InterruptedException {
+        if (nanos <= 0 || pending.size() >= 2 * capacity) {
+            if (nanos > 0)
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            return;
+        }
+        long[] note = queue.poll(nanos, TimeUnit.NANOSECONDS);
+        if (note != null)
+            addEvents(note);
+    }
+
+    /**
+     * Turns a note into its NOTE_ON and NOTE_OFF events
+     */
+    private void addEvents(long[] note) {
+        pending.add(new long[] { note[1], ShortMessage.NOTE_ON, note[0] });
+        pending.add(new long[] { note[1] + note[2], ShortMessage.NOTE_OFF,
+                note[0] });
+    }
+
+    /**
+     * Sends an event to the receiver
+     */
+    private void send(long[] event) {
+        try {
+            ShortMessage msg = new ShortMessage();
+            msg.setMessage((int) event[1], DEFAULT_CHANNEL, (int) event[2],
+                    DEFAULT_VELOCITY);
+            receiver.send(msg, -1);
+            if (firstNoteNanos < 0 && event[1] == ShortMessage.NOTE_ON)
+                firstNoteNanos = System.nanoTime();
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Cannot play note with the pitch "
+                    + event[2], e);
+        }
+    }
+
+    private void checkRep() {
+        assert receiver != null : "receiver should be non-null";
+        assert nanosPerTick > 0 : "should be positive duration per tick";
+        assert capacity > 0 : "should be positive capacity";
+    }
+}
@@ -12,11 +12,17 @@ package sound;
  *   new Pitch('F').transpose(-2) makes E-flat.
  *   new Pitch('C').transpose(OCTAVE) makes high C.
  *   new Pitch('C').transpose(-OCTAVE) makes low C.
+ *
+ * Pitch.valueOf('C') gives middle C without making a new Pitch. Pitches are
+ * immutable, and the pitches of the MIDI range with up to two sharps or flats
+ * are shared instances looked up in a table, so valueOf and the transpose
+ * methods do not allocate for the notes of a piece.
  */
 public class Pitch {
     private final int value;
     private final int accidental;
     private final int octave;
+    private final int midiNote; // toMidiNote(), computed once
     
     /*
      * Rep invariant:
@@ -41,10 +47,27 @@ public class Pitch {
         7   // G
     };
     
+    // shared instances: every value of the octaves of the MIDI range, with up
+    // to MAX_ACCIDENTALS sharps or flats
+    private static final int MIN_OCTAVE = -5; // MIDI note 0 is C,,,,,
+    private static final int MAX_OCTAVE = 5; // MIDI note 127 is G'''''
+    private static final int MAX_ACCIDENTALS = 2;
+    private static final Pitch[] shared = new Pitch[12
+            * (2 * MAX_ACCIDENTALS + 1) * (MAX_OCTAVE - MIN_OCTAVE + 1)];
+
+    static {
+        for (int octave = MIN_OCTAVE; octave <= MAX_OCTAVE; octave++)
+            for (int accidental = -MAX_ACCIDENTALS; accidental <= MAX_ACCIDENTALS; accidental++)
+                for (int value : scale)
+                    shared[sharedIndex(value, accidental, octave)] = new Pitch(
+                            value, accidental, octave);
+    }
+
     private Pitch(int value, int accidental, int octave) {
         this.value = value;
         this.accidental = accidental;
         this.octave = octave;
+        this.midiNote = value + accidental + (OCTAVE * octave) + 60;
         checkRep();
     }
     
@@ -55,14 +78,64 @@ public class Pitch {
      * For example, new Pitch('C') constructs middle C.
      */
     public Pitch(char c) {
+        this(scale[letterIndex(c)], 0, 0);
+    }
+
+    /**
+     * Get a Pitch without making a new one.
+     * @param c a note in {'A',...,'G'}
+     * @return the shared Pitch equal to new Pitch(c)
+     */
+    public static Pitch valueOf(char c) {
+        return shared[sharedIndex(scale[letterIndex(c)], 0, 0)];
+    }
+
+    /**
+     * Get the Pitch of a midi note spelled with the given accidental.
+     * @param midiNote the midi note of the pitch
+     * @param accidental the number of sharps, or minus the number of flats
+     * @return the Pitch p such that p.toMidiNote() == midiNote and
+     * p.getAccidental() == accidental
+     * @throws IllegalArgumentException if no natural note with that
+     * accidental gives midiNote
+     */
+    public static Pitch fromMidiNote(int midiNote, int accidental) {
+        int natural = midiNote - 60 - accidental;
+        int value = Math.floorMod(natural, OCTAVE);
+        if (!isValid(value))
+            throw new IllegalArgumentException("No pitch with " + accidental
+                    + " accidentals has the midi note " + midiNote);
+        return valueOf(value, accidental, Math.floorDiv(natural, OCTAVE));
+    }
+
+    /**
+     * @return the shared Pitch for value, accidental and octave if there is
+     * one, a new Pitch otherwise
+     */
+    private static Pitch valueOf(int value, int accidental, int octave) {
+        if (octave < MIN_OCTAVE || octave > MAX_OCTAVE
+                || Math.abs(accidental) > MAX_ACCIDENTALS)
+            return new Pitch(value, accidental, octave);
+        return shared[sharedIndex(value, accidental, octave)];
+    }
+
+    /**
+     * @return the index in the shared table of a pitch in its range
+     */
+    private static int sharedIndex(int value, int accidental, int octave) {
+        return ((octave - MIN_OCTAVE) * (2 * MAX_ACCIDENTALS + 1)
+                + accidental + MAX_ACCIDENTALS) * OCTAVE + value;
+    }
+
+    /**
+     * @return the index in scale of the note c
+     * @throws IllegalArgumentException if c is not in {'A',...,'G'}
+     */
+    private static int letterIndex(char c) {
         int index = c - 'A';
         if (index < 0 || index >= scale.length)
             throw new IllegalArgumentException(c + " must be in the range A-G");
-        
-        this.value = scale[index];
-        this.accidental = 0;
-        this.octave = 0;
-        checkRep();
+        return index;
     }
     
     /**
@@ -77,7 +150,7 @@ public class Pitch {
      * semitone is E flat; E transposed by 1 semitone is E sharp.
      */
     public Pitch accidentalTranspose(int semitonesUp) {
-        return new Pitch(value, accidental + semitonesUp, octave);
+        return valueOf(value, accidental + semitonesUp, octave);
     }
 
     /**
@@ -86,7 +159,7 @@ public class Pitch {
      * E' ; transposing E down by 1 octave produces E, .
      */
     public Pitch octaveTranspose(int octavesUp) {
-        return new Pitch(value, accidental, octave + octavesUp);
+        return valueOf(value, accidental, octave + octavesUp);
     }
 
     /**
@@ -124,7 +197,7 @@ public class Pitch {
             }
         }
 
-        return new Pitch(newValue, newAccidental, newOctave);
+        return valueOf(newValue, newAccidental, newOctave);
     }
 
     /**
@@ -135,12 +208,34 @@ public class Pitch {
         return this.toMidiNote() - that.toMidiNote();
     }
     
+    /**
+     * @return the number of semitones above C of the natural note of this
+     * pitch, in {0, 2, 4, 5, 7, 9, 11}
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * @return the number of sharps of this pitch, or minus the number of flats
+     */
+    public int getAccidental() {
+        return accidental;
+    }
+
+    /**
+     * @return the number of octaves this pitch is above the middle octave
+     */
+    public int getOctave() {
+        return octave;
+    }
+
     /**
      * 
      * @return the midi note of this pitch
      */
     public int toMidiNote() {
-        return this.value + this.accidental + (OCTAVE * this.octave) + 60;
+        return midiNote;
     }
     
     
@@ -165,7 +260,9 @@ public class Pitch {
     
     @Override
     public int hashCode() {
-        return value + accidental;
+        // the midi note and the accidental tell pitches apart: with the same
+        // accidental, the same midi note means the same value and octave
+        return 31 * midiNote + accidental;
     }
     
     /**
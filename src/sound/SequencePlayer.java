@@ -1,8 +1,11 @@
 package sound;
 
 import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaEventListener;
+import javax.sound.midi.MetaMessage;
 import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiMessage;
 import javax.sound.midi.MidiSystem;
@@ -18,11 +21,16 @@ import javax.sound.midi.Track;
 public class SequencePlayer {
 
     private Sequencer sequencer;
+    private Sequence sequence;
     private Track track;
     private int beatsPerMinute;
 
     private static int DEFAULT_CHANNEL = 0;    // midi channel - for our purpose always 0
     private static int DEFAULT_VELOCITY = 100; // the volume
+    private static final int END_OF_TRACK = 0x2F; // type of the meta message sent at the end of a track
+
+    private CompletableFuture<Void> playing; // completes when the current playback ends, null before play
+    private MetaEventListener endListener;   // listens for the end of the current playback
 
     /*
      * Rep invariant:
@@ -44,7 +52,7 @@ public class SequencePlayer {
 
         // Create a sequence object with with tempo-based timing, where
         // the resolution of the time step is based on ticks per quarter note.
-        Sequence sequence = new Sequence(Sequence.PPQ, ticksPerQuarterNote);
+        this.sequence = new Sequence(Sequence.PPQ, ticksPerQuarterNote);
         this.beatsPerMinute = beatsPerMinute;
 
         // Create an empty track. Notes will be added to this track.
@@ -67,6 +75,25 @@ public class SequencePlayer {
         this.track.add(event);
     }
 
+    /**
+     * Schedules a single event. Events added in the order of their ticks are
+     * appended to the end of the track, where addNote() may have to insert
+     * them far back.
+     *
+     * @param eventType ShortMessage.NOTE_ON or ShortMessage.NOTE_OFF
+     * @param note the pitch value of the note; must be a valid note
+     * @param tick the tick of the event; must be >= 0
+     */
+    public void addEvent(int eventType, int note, long tick) {
+        try {
+            addMidiEvent(eventType, note, Math.toIntExact(tick));
+        } catch (InvalidMidiDataException e) {
+            String msg = MessageFormat.format("Cannot add event {0} with the pitch {1} at tick {2}",
+                    eventType, note, tick);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
     /**
      * Schedules the note to be played starting at startTick for the duration of numTicks.
      * 
@@ -88,22 +115,109 @@ public class SequencePlayer {
     }
 
     /**
-     * The sequencer is opened to begin playing its track.
+     * The sequencer is opened to begin playing its track, and this method
+     * waits until the track ends or stop() is called.
      */
     public void play() throws MidiUnavailableException {
-        sequencer.open();
-        sequencer.setTempoInBPM(this.beatsPerMinute);
+        playAsync().join();
+    }
+
+    /**
+     * The sequencer is opened to begin playing its track, and this method
+     * returns at once. The sequencer tells its listeners when the track ends,
+     * so no thread is kept busy while the track plays.
+     *
+     * @return a future that completes once the track has ended or stop() has
+     * been called, and the sequencer is closed
+     * @throws IllegalStateException if the track is already playing
+     */
+    public synchronized CompletableFuture<Void> playAsync() throws MidiUnavailableException {
+        if (playing != null && !playing.isDone())
+            throw new IllegalStateException("The track is already playing");
+
+        final CompletableFuture<Void> done = new CompletableFuture<Void>();
+        endListener = new MetaEventListener() {
+            @Override
+            public void meta(MetaMessage message) {
+                if (message.getType() == END_OF_TRACK)
+                    finish(done);
+            }
+        };
+        playing = done;
+        sequencer.addMetaEventListener(endListener);
+        try {
+            sequencer.open();
+            sequencer.setSequence(sequence); // closing the sequencer drops it
+            sequencer.setTempoInBPM(this.beatsPerMinute);
+
+            // start playing!
+            sequencer.start();
+        } catch (MidiUnavailableException e) {
+            finish(done);
+            throw e;
+        } catch (InvalidMidiDataException e) {
+            finish(done);
+            throw new RuntimeException("Cannot play the sequence", e);
+        }
+        return done;
+    }
+
+    /**
+     * Pauses the track where it is; resume() continues from there
+     */
+    public synchronized void pause() {
+        if (playing != null && !playing.isDone())
+            sequencer.stop();
+    }
 
-        // start playing!
-        sequencer.start();
+    /**
+     * Continues a track paused by pause()
+     */
+    public synchronized void resume() {
+        if (playing != null && !playing.isDone() && !sequencer.isRunning()) {
+            sequencer.setTempoInBPM(this.beatsPerMinute);
+            sequencer.start();
+        }
+    }
 
-        // busy-wait until the sequencer stops playing.
-        while (sequencer.isRunning()) {
-            Thread.yield();
+    /**
+     * Stops the track and closes the sequencer, which completes the future
+     * returned by playAsync()
+     */
+    public void stop() {
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            done = playing;
         }
+        if (done != null)
+            finish(done);
+    }
+
+    /**
+     * @return true if a track has been started and has neither ended nor been
+     * stopped, even if it is paused
+     */
+    public synchronized boolean isPlaying() {
+        return playing != null && !playing.isDone();
+    }
 
-        // when done playing, close the sequencer
-        sequencer.close();
+    /**
+     * Closes the sequencer at the end of a playback and completes its future,
+     * once, whether the track ended or was stopped
+     *
+     * @param done the future of the playback
+     */
+    private void finish(CompletableFuture<Void> done) {
+        synchronized (this) {
+            if (done != playing || done.isDone())
+                return;
+            sequencer.removeMetaEventListener(endListener);
+            if (sequencer.isOpen()) {
+                sequencer.stop();
+                sequencer.close();
+            }
+        }
+        done.complete(null);
     }
 
     /**
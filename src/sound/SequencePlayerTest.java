@@ -1,5 +1,10 @@
 package sound;
 
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
@@ -161,4 +166,49 @@ public class SequencePlayerTest {
         }   
     }
     
+
+    /**
+     * Test that playAsync completes at the end of the track
+     */
+    @Test
+    public void testPlayAsyncCompletes() throws Exception {
+        // 3000 quarter notes per minute: the track lasts 80 ms
+        SequencePlayer player = new SequencePlayer(3000, 1);
+        player.addNote(new Pitch('C').toMidiNote(), 0, 2);
+        player.addNote(new Pitch('E').toMidiNote(), 2, 2);
+
+        CompletableFuture<Void> done = player.playAsync();
+        assertTrue(player.isPlaying());
+        done.get(10, TimeUnit.SECONDS);
+        assertFalse(player.isPlaying());
+    }
+
+    /**
+     * Test that stop completes the future of a paused track
+     */
+    @Test
+    public void testStopPausedTrack() throws Exception {
+        // a minute of quarter notes
+        SequencePlayer player = new SequencePlayer(60, 1);
+        for (int tick = 0; tick < 60; tick++)
+            player.addNote(new Pitch('C').toMidiNote(), tick, 1);
+
+        CompletableFuture<Void> done = player.playAsync();
+        player.pause();
+        player.resume();
+        player.pause();
+        assertTrue(player.isPlaying());
+        assertFalse(done.isDone());
+
+        player.stop();
+        assertTrue(done.isDone());
+        assertFalse(player.isPlaying());
+
+        // the track can be played again
+        CompletableFuture<Void> again = player.playAsync();
+        assertTrue(player.isPlaying());
+        player.stop();
+        again.get(10, TimeUnit.SECONDS);
+    }
+
 }
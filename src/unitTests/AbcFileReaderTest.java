@@ -0,0 +1,71 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import player.AbcFileReader;
+import player.Main;
+
+public class AbcFileReaderTest {
+
+    /**
+     * Writes the given content to a temporary file
+     * 
+     * @param content
+     *            the text to write
+     * @return path of the temporary file
+     */
+    private String writeTempFile(String content) throws IOException {
+        File file = File.createTempFile("abcReader", ".abc");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file.getPath();
+    }
+
+    /**
+     * Windows and old Mac line endings are read as '\n'
+     */
+    @Test
+    public void lineEndingTest() throws IOException {
+        String path = writeTempFile("X:1\r\nT:Title\rK:C\r\nC D|\n");
+        assertEquals("X:1\nT:Title\nK:C\nC D|\n", AbcFileReader.read(path)
+                .toString());
+    }
+
+    /**
+     * The last line is terminated even if the file is not
+     */
+    @Test
+    public void lastLineTest() throws IOException {
+        String path = writeTempFile("X:1\nT:Title\nK:C\nC D|");
+        assertEquals("X:1\nT:Title\nK:C\nC D|\n", AbcFileReader.read(path)
+                .toString());
+        assertEquals("", AbcFileReader.read(writeTempFile("")).toString());
+    }
+
+    /**
+     * The loader agrees with the String based helper on the sample files
+     */
+    @Test
+    public void sampleFileTest() {
+        String content = Main.readFileIntoString("sample_abc/invention.abc");
+        assertTrue(content.startsWith("X:1868\nT:Invention no. 1\n"));
+        assertEquals(content, AbcFileReader.read("sample_abc/invention.abc")
+                .toString());
+    }
+
+    /**
+     * Missing files are reported as RuntimeException
+     */
+    @Test(expected = RuntimeException.class)
+    public void missingFileTest() {
+        AbcFileReader.read("sample_abc/doesNotExist.abc");
+    }
+}
@@ -163,6 +163,80 @@ public class BodyLexerTest {
         assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "A"));
         assertEquals(lexer.peek(), new BodyToken(BodyToken.Type.EOF, "")); 
     }
-}
     
-    
\ No newline at end of file
+    /**
+     * Test that peek(k) looks several tokens ahead without moving the lexer,
+     * and that the lookahead is dropped when the lexer rewinds
+     */
+    @Test
+    public void peekAheadTest() {
+        BodyLexer lexer = new BodyLexer("|: A, B :|");
+        
+        assertEquals(lexer.peek(2), new BodyToken(BodyToken.Type.OCTAVE_MOD, ","));
+        assertEquals(lexer.peek(5), new BodyToken(BodyToken.Type.EOF, ""));
+        assertEquals(lexer.peek(9), new BodyToken(BodyToken.Type.EOF, ""));
+        assertEquals(lexer.peek(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+        
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+        assertEquals(lexer.peek(1), new BodyToken(BodyToken.Type.OCTAVE_MOD, ","));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "A"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.OCTAVE_MOD, ","));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "B"));
+        assertEquals(lexer.peek(), new BodyToken(BodyToken.Type.REPEAT_END, ":|"));
+        
+        lexer.goBack();
+        assertEquals(lexer.peek(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+    }
+    
+    /**
+     * Test that goBack() rewinds to the closest voice, repeat begin or section
+     * begin that has not been skipped, or to the start of the body
+     */
+    @Test
+    public void goBackTest() {
+        BodyLexer lexer = new BodyLexer("A V:1\n|: B [| C :|");
+        
+        lexer.goBack();
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "A"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.VOICE, "V:1"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "B"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.SECTION_BEGIN, "[|"));
+        lexer.skipLastToken();
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "C"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.REPEAT_END, ":|"));
+        
+        lexer.goBack();
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.REPEAT_BEGIN, "|:"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "B"));
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.NOTE_REST, "C"));
+    }
+    
+    /**
+     * Test that the type cursor reads the same tokens as getNextBodyToken,
+     * and that the text of the last token is read from the body
+     */
+    @Test
+    public void typeCursorTest() {
+        BodyLexer lexer = new BodyLexer("^C,,3/2 [|");
+        
+        assertEquals(lexer.peekType(2), BodyToken.Type.OCTAVE_MOD);
+        assertEquals(lexer.nextType(), BodyToken.Type.ACCIDENTAL);
+        assertEquals(lexer.tokenText(), "^");
+        assertEquals(lexer.nextType(), BodyToken.Type.NOTE_REST);
+        assertEquals(lexer.tokenChar(0), 'C');
+        assertEquals(lexer.nextType(), BodyToken.Type.OCTAVE_MOD);
+        assertEquals(lexer.tokenLength(), 2);
+        assertEquals(lexer.peekType(), BodyToken.Type.MULT_FACTOR);
+        assertEquals(lexer.tokenText(), ",,"); // peeking keeps the last token
+        assertEquals(lexer.getNextBodyToken(), new BodyToken(BodyToken.Type.MULT_FACTOR, "3/2"));
+        assertEquals(lexer.tokenText(), "3/2");
+        assertEquals(lexer.nextType(), BodyToken.Type.SECTION_BEGIN);
+        
+        assertEquals(lexer.nextType(), BodyToken.Type.EOF);
+        assertEquals(lexer.tokenLength(), 0);
+        assertSame(lexer.getNextBodyToken(), BodyToken.END_OF_FILE);
+        assertSame(lexer.peek(), BodyToken.END_OF_FILE);
+    }
+}
@@ -0,0 +1,83 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import player.BodyLexer;
+import player.BodyToken;
+import player.DfaBodyTokenizer;
+import player.Main;
+import player.RegexBodyTokenizer;
+
+/**
+ * Differential tests checking that DfaBodyTokenizer produces exactly the
+ * tokens of the reference RegexBodyTokenizer
+ */
+public class BodyTokenizerTest {
+
+    /**
+     * Lexes the text with both tokenizers and compares the token streams
+     * 
+     * @param text
+     *            abc text to lex
+     * @return number of tokens compared
+     */
+    private int assertSameTokens(String text) {
+        BodyLexer regexLexer = new BodyLexer(text, new RegexBodyTokenizer());
+        BodyLexer dfaLexer = new BodyLexer(text, new DfaBodyTokenizer());
+        int count = 0;
+        BodyToken expected;
+        do {
+            expected = regexLexer.getNextBodyToken();
+            assertEquals("token " + count + " of: " + text, expected,
+                    dfaLexer.getNextBodyToken());
+            count++;
+        } while (expected.getBodyTokenType() != BodyToken.Type.EOF);
+        return count;
+    }
+
+    /**
+     * Every sample file, header included, lexes the same way
+     */
+    @Test
+    public void sampleFilesTest() {
+        File[] samples = new File("sample_abc").listFiles();
+        assertTrue(samples.length > 0);
+        for (File sample : samples) {
+            assertTrue(assertSameTokens(Main.readFileIntoString(sample
+                    .getPath())) > 1);
+        }
+    }
+
+    /**
+     * Tokens that share a prefix, and prefixes that are not tokens
+     */
+    @Test
+    public void ambiguousPrefixTest() {
+        assertSameTokens("[12 [| [ |] |: | :| : ::| ||: [|: :|:");
+        assertSameTokens("V:\nV: x\nV:");
+        assertSameTokens("10/0 1/ /2 / 3/4/ 123 0");
+        assertSameTokens("%\n% comment |: V:1\n%");
+        assertSameTokens("^^=_ ,,'' (3 ] ) w H z Z");
+    }
+
+    /**
+     * Random strings over the characters used by the grammar
+     */
+    @Test
+    public void randomTextTest() {
+        String alphabet = "V:%[]12345^_=aAgGzZh/',|( \n0";
+        Random random = new Random(6005);
+        for (int run = 0; run < 500; run++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++)
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            assertSameTokens(text.toString());
+        }
+    }
+}
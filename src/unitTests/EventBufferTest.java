@@ -0,0 +1,83 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.nio.LongBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.EventBuffer;
+import player.Lexer;
+import player.MusicVisitor;
+import player.NoteSink;
+import player.Parser;
+import player.Song;
+
+public class EventBufferTest {
+
+    @Test
+    public void packedSortsByStart() {
+        EventBuffer buffer = new EventBuffer(2);
+        buffer.note(64, 12, 3);
+        buffer.note(60, 0, (1 << 24) - 1);
+        buffer.note(255, (1L << 31) - 1, 1);
+        buffer.note(62, 12, 2);
+        assertTrue(buffer.isPacked());
+
+        buffer.sortByStart();
+        assertEquals("60@0+16777215 62@12+2 64@12+3 255@2147483647+1", describe(buffer));
+        LongBuffer view = buffer.asLongBuffer();
+        assertEquals(4, view.remaining());
+        assertEquals(62, EventBuffer.packedPitch(view.get(1)));
+        assertEquals(12, EventBuffer.packedStart(view.get(1)));
+        assertEquals(2, EventBuffer.packedDuration(view.get(1)));
+    }
+
+    @Test
+    public void widensWhenNotesDoNotFit() {
+        EventBuffer buffer = new EventBuffer();
+        buffer.note(64, 12, 3);
+        buffer.note(60, 5, 1 << 24);
+        buffer.note(-3, 1L << 40, 1);
+        buffer.note(62, 5, 2);
+        assertFalse(buffer.isPacked());
+        assertEquals("64@12+3 60@5+16777216 -3@1099511627776+1 62@5+2", describe(buffer));
+
+        buffer.sortByStart();
+        assertEquals("62@5+2 60@5+16777216 64@12+3 -3@1099511627776+1", describe(buffer));
+    }
+
+    @Test
+    public void renderMatchesVisitor() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/invention.abc"))).parseTicks(true);
+        List<AugmentedMIDI> notes = MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote());
+        EventBuffer buffer = EventBuffer.render(song, 0, song.getTicksForNote());
+
+        assertTrue(buffer.isPacked());
+        assertEquals(notes.size(), buffer.size());
+        for (int i = 0; i < notes.size(); i++) {
+            assertEquals(notes.get(i).getPitch(), buffer.getPitch(i));
+            assertEquals(notes.get(i).getStart(), buffer.getStart(i));
+            assertEquals(notes.get(i).getDuration(), buffer.getDuration(i));
+        }
+        buffer.sortByStart();
+        for (int i = 1; i < buffer.size(); i++)
+            assertTrue(buffer.getStart(i - 1) <= buffer.getStart(i));
+    }
+
+    private static String describe(EventBuffer buffer) {
+        final StringBuilder description = new StringBuilder();
+        buffer.forEach(new NoteSink() {
+            @Override
+            public void note(int pitch, long start, long duration) {
+                if (description.length() > 0)
+                    description.append(' ');
+                description.append(pitch).append('@').append(start).append('+').append(duration);
+            }
+        });
+        return description.toString();
+    }
+}
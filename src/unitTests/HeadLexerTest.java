@@ -74,4 +74,27 @@ public class HeadLexerTest {
         assertEquals(new IllegalArgumentException(), new HeadLexer(
                 "X:1\nT:Title\nC:Composer\nB:voice\nK:C"));
     }
+    
+    /**
+     * Fields read from part of a file, through the field array and the map
+     */
+    @Test
+    public void test7() {
+        String file = "X:1\nT:Title % a comment\nV:upper\nV:lower\nL:1/4\nK:Am\nA B c|\nK:C\n";
+        int end = HeadLexer.findHeaderEnd(file);
+        assertEquals(file.indexOf("K:Am") + 4, end);
+        assertEquals(-1, HeadLexer.findHeaderEnd("X:1\nT:Title\n"));
+        
+        HeadLexer h = new HeadLexer(file, 0, end);
+        assertEquals("Title ", h.getField('T'));
+        assertEquals("1/4", h.getField('L'));
+        assertEquals("Am", h.getField('K'));
+        assertNull(h.getField('C'));
+        assertEquals(java.util.Arrays.asList("upper", "lower"), h.getVoices());
+        
+        Map<Character,List<String>> m = h.getHeaderMap();
+        assertEquals(5, m.size());
+        assertEquals(h.getVoices(), m.get('V'));
+        assertEquals("Am", m.get('K').get(0));
+    }
 }
@@ -0,0 +1,220 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import player.Chord;
+import player.IncrementalParser;
+import player.Lexer;
+import player.Main;
+import player.Note;
+import player.Parser;
+import player.Song;
+import player.Voice;
+
+public class IncrementalParserTest {
+
+    private static final String TUNE = "X:1\nT:Edits\nL:1/4\nV:1\nV:2\nK:D\n"
+            + "V:1\n|: A B c d | ^f e d c | e f g a :| [1 B A G F :|[2 G4 |]\n"
+            + "V:2\nD, E, F, G, | A,2 B,2 | (3A,B,C D2 |]\n";
+
+    /**
+     * Changing a note in a bar is applied incrementally
+     */
+    @Test
+    public void changeNoteTest() {
+        IncrementalParser parser = new IncrementalParser(TUNE);
+        int note = TUNE.indexOf("A,2");
+        parser.edit(note, note + 1, "G");
+
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * Changing a bar that is repeated changes every time it is played, and
+     * bars may get more or fewer chords
+     */
+    @Test
+    public void repeatedBarTest() {
+        IncrementalParser parser = new IncrementalParser(TUNE);
+        int bar = TUNE.indexOf("A B c d");
+        parser.edit(bar, bar + 7, "A B");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+
+        bar = parser.getText().indexOf("^f e d c");
+        parser.edit(bar, bar + 8, "[^fa] e/2 e/2 d c _B");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * Adding a bar line, changing an ending or editing the header parses the
+     * whole file again
+     */
+    @Test
+    public void fallbackTest() {
+        IncrementalParser parser = new IncrementalParser(TUNE);
+        int bar = TUNE.indexOf("A,2 B,2");
+        parser.edit(bar + 3, bar + 3, " |");
+        assertFalse(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+
+        int ending = parser.getText().indexOf("B A G F");
+        parser.edit(ending, ending + 1, "c");
+        assertFalse(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+
+        int key = parser.getText().indexOf("K:D");
+        parser.edit(key + 2, key + 3, "C");
+        assertFalse(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * A syntax error is reported, and the Song comes back once it is fixed
+     */
+    @Test
+    public void errorTest() {
+        IncrementalParser parser = new IncrementalParser(TUNE);
+        int note = TUNE.indexOf("D, E,");
+        try {
+            parser.edit(note, note, "^");
+            parser.edit(note + 1, note + 1, "2");
+            fail("expected a parse error");
+        } catch (RuntimeException e) {
+            // "^2D," is not valid
+        }
+        parser.edit(note + 1, note + 2, "");
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * The chords of a tuplet all start at the same token, and are only
+     * spliced in once
+     */
+    @Test
+    public void tupletTest() {
+        String tune = "X:1\nT:Tuplet\nL:1/4\nK:C\nA B|(3ABc d|e f|\n";
+        IncrementalParser parser = new IncrementalParser(tune);
+        int bar = tune.indexOf("c d");
+        parser.edit(bar, bar + 1, "B,");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * Notes put in a bar that had none, inside a repeated section, are
+     * played every time the section is
+     */
+    @Test
+    public void emptyRepeatedBarTest() {
+        String tune = "X:1\nT:Empty\nL:1/4\nK:C\n|: A B | % c\n| C D :| E F|\n";
+        IncrementalParser parser = new IncrementalParser(tune);
+        int comment = tune.indexOf("% c");
+        parser.edit(comment, comment, "G ");
+        assertFalse(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+
+        // outside a repeat, the notes go in place incrementally
+        comment = parser.getText().indexOf("E F|");
+        parser.edit(comment + 4, comment + 4, " % d\n|");
+        comment = parser.getText().indexOf("% d");
+        parser.edit(comment, comment, "c ");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * Removing the only tuplet brings the resolution back down
+     */
+    @Test
+    public void resolutionTest() {
+        IncrementalParser parser = new IncrementalParser(TUNE);
+        int tuplet = TUNE.indexOf("(3A,B,C");
+        parser.edit(tuplet, tuplet + 7, "A,2");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+
+        int note = parser.getText().indexOf("A,2");
+        parser.edit(note + 2, note + 3, "/3");
+        assertTrue(parser.isLastEditIncremental());
+        assertSameMusic(parser.getText(), parser.getSong());
+    }
+
+    /**
+     * Random note changes and insertions in the sample files give the same
+     * Song as parsing the edited file
+     */
+    @Test
+    public void randomEditsTest() {
+        String[] samples = { "sample_abc/invention.abc", "sample_abc/fur_elise.abc",
+                "sample_abc/little_night_music.abc", "sample_abc/paddy.abc",
+                "sample_abc/tupletTest.abc" };
+        Random random = new Random(6005);
+        for (String sample : samples)
+            randomEdits(Main.readFileIntoString(sample), random);
+    }
+
+    private static void randomEdits(String file, Random random) {
+        IncrementalParser parser = new IncrementalParser(file);
+        String notes = "CDEFGABcdefgab";
+
+        for (int i = 0; i < 200; i++) {
+            String text = parser.getText();
+            int position = text.indexOf("K:") + 4
+                    + random.nextInt(text.length() - text.indexOf("K:") - 4);
+            char c = text.charAt(position);
+            if (notes.indexOf(c) < 0)
+                continue;
+            String note = String.valueOf(notes.charAt(random.nextInt(notes.length())));
+            int edit = random.nextInt(3);
+            if (edit == 0)
+                parser.edit(position, position + 1, note);
+            else if (edit == 1)
+                parser.edit(position, position, note + " ");
+            else if (text.charAt(position - 1) == '|')
+                parser.edit(position, position, "(3" + note + note + note + " ");
+            else
+                continue; // a tuplet goes at the start of a bar
+            assertSameMusic(parser.getText(), parser.getSong());
+        }
+    }
+
+    /**
+     * Asserts that song holds the same chords as a Song parsed from file
+     */
+    private static void assertSameMusic(String file, Song song) {
+        Song expected = new Parser(new Lexer(file)).parse();
+        assertEquals(describe(expected), describe(song));
+        assertEquals(expected.getTicksForNote(), song.getTicksForNote());
+    }
+
+    /**
+     * @return the pitches and lengths of the notes in every voice
+     */
+    private static Map<String, List<String>> describe(Song song) {
+        Map<String, List<String>> voices = new TreeMap<String, List<String>>();
+        for (Voice voice : song.getVoiceMap().values()) {
+            List<String> chords = new ArrayList<String>();
+            for (Chord chord : voice.getAllChords()) {
+                StringBuilder notes = new StringBuilder();
+                for (Note note : chord.getAllNotes())
+                    notes.append(note.getPitch() == null ? "z" : note
+                            .getPitch().toMidiNote()).append(' ');
+                chords.add(notes.append(chord.getLength()).toString());
+            }
+            chords.add(voice.getLength().toString());
+            voices.put(voice.getVoiceName(), chords);
+        }
+        return voices;
+    }
+}
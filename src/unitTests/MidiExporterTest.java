@@ -0,0 +1,92 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.Test;
+
+import player.AbcFileReader;
+import player.BatchConverter;
+import player.BatchConverter.Conversion;
+import player.Lexer;
+import player.MidiExporter;
+import player.MusicVisitor;
+import player.Parser;
+import player.Song;
+
+public class MidiExporterTest {
+
+    @Test
+    public void trackPerVoice() throws Exception {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/invention.abc"))).parseTicks(true);
+        File file = File.createTempFile("invention", ".mid");
+        try {
+            MidiExporter.write(song, MidiExporter.MAX_TICKS_PER_QUARTER, file);
+            assertEquals(1, MidiSystem.getMidiFileFormat(file).getType());
+
+            Sequence sequence = MidiSystem.getSequence(file);
+            assertEquals(song.getTicksForNote() / 4, sequence.getResolution());
+            Track[] tracks = sequence.getTracks();
+            assertEquals(1 + song.getVoiceMap().size(), tracks.length);
+
+            int noteOns = 0;
+            for (int track = 1; track < tracks.length; track++) {
+                for (int i = 0; i < tracks[track].size(); i++) {
+                    MidiEvent event = tracks[track].get(i);
+                    if (event.getMessage() instanceof ShortMessage
+                            && ((ShortMessage) event.getMessage()).getCommand() == ShortMessage.NOTE_ON) {
+                        noteOns++;
+                        assertEquals(track - 1, ((ShortMessage) event.getMessage()).getChannel());
+                    }
+                }
+            }
+            assertEquals(MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote()).size(), noteOns);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void batchReportsEveryFile() throws IOException {
+        Path input = Files.createTempDirectory("abc");
+        Path output = Files.createTempDirectory("mid");
+        try {
+            Files.createDirectories(input.resolve("nested"));
+            Files.copy(Paths.get("sample_abc/scale.abc"), input.resolve("scale.abc"));
+            Files.copy(Paths.get("sample_abc/paddy.abc"), input.resolve("nested/paddy.abc"));
+            Files.write(input.resolve("broken.abc"), "X:1\nT:Broken\nK:Q\nC|\n".getBytes("UTF-8"));
+
+            List<Conversion> conversions = BatchConverter.convert(input, output, 2);
+            assertEquals(3, conversions.size());
+            assertTrue(conversions.get(0).getAbcFile().endsWith("broken.abc"));
+            assertNotNull(conversions.get(0).getError());
+            assertNull(conversions.get(1).getError());
+            assertTrue(Files.size(output.resolve("nested/paddy.mid")) > 0);
+            assertNull(conversions.get(2).getError());
+            assertTrue(Files.size(output.resolve("scale.mid")) > 0);
+        } finally {
+            delete(input.toFile());
+            delete(output.toFile());
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+}
@@ -33,9 +33,21 @@ public void testMultiplication() {
 public void testSlashInteger() {
     assertEquals(new MultiplicativeFactor(-1, 97), MultiplicativeFactor.multFactorFromString("/-97"));
 }
-
-
-
-
+@Test
+public void testSumPowersOfTwo() {
+    assertEquals(new MultiplicativeFactor(7, 8), MultiplicativeFactor.multFactorFromString("1/8").sum(new MultiplicativeFactor(3, 4)));
+    assertEquals(new MultiplicativeFactor(1, 1), new MultiplicativeFactor(3, 4).sum(new MultiplicativeFactor(1, 4)));
+    assertEquals(new MultiplicativeFactor(11, 12), new MultiplicativeFactor(2, 3).sum(new MultiplicativeFactor(1, 4)));
+}
+@Test
+public void testCompareTo() {
+    assertEquals(-1, new MultiplicativeFactor(1, 3).compareTo(new MultiplicativeFactor(1, 2)));
+    assertEquals(1, new MultiplicativeFactor(3, 2).compareTo(new MultiplicativeFactor(4, 3)));
+    assertEquals(0, new MultiplicativeFactor(2, 4).compareTo(MultiplicativeFactor.valueOf(1, 2)));
+}
+@Test(expected = ArithmeticException.class)
+public void testSumOverflow() {
+    new MultiplicativeFactor(1, 65537).sum(new MultiplicativeFactor(1, 65539));
+}
 
 }
@@ -0,0 +1,184 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.Lexer;
+import player.MusicVisitor;
+import player.NoteEvent;
+import player.NoteEventMerger;
+import player.Parser;
+import player.Quantizer;
+import player.Song;
+
+public class NoteEventMergerTest {
+
+    private static final String[] FILES = { "sample_abc/invention.abc",
+            "sample_abc/prelude.abc", "sample_abc/little_night_music.abc",
+            "sample_abc/chordTest.abc", "sample_abc/tupletTest.abc" };
+
+    @Test
+    public void voicesInterleaveByTick() {
+        Song song = new Parser(new Lexer("X:1\nT:Two\nV:1\nV:2\nK:C\nV:1\nC2 C2|\nV:2\nE z G A|\n")).parse();
+        int c = 60, e = 64, g = 67, a = 69;
+        // at 8 ticks per whole note, a 1/8 note lasts a tick
+        String expected = "NOTE_ON " + c + " @0 voice 0, NOTE_ON " + e + " @0 voice 1, "
+                + "NOTE_OFF " + e + " @1 voice 1, "
+                + "NOTE_OFF " + c + " @2 voice 0, NOTE_ON " + c + " @2 voice 0, NOTE_ON " + g + " @2 voice 1, "
+                + "NOTE_OFF " + g + " @3 voice 1, NOTE_ON " + a + " @3 voice 1, "
+                + "NOTE_OFF " + c + " @4 voice 0, NOTE_OFF " + a + " @4 voice 1";
+        assertEquals(expected, join(events(new NoteEventMerger(song, 0, song.getTicksForNote()))));
+    }
+
+    @Test
+    public void samplesAreOrderedAndComplete() {
+        for (String file : FILES) {
+            CharSequence text = AbcFileReader.read(file);
+            for (Song song : new Song[] { new Parser(new Lexer(text)).parse(),
+                    new Parser(new Lexer(text)).parseTicks(true) }) {
+                List<AugmentedMIDI> notes = MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote());
+                List<NoteEvent> events = events(new NoteEventMerger(song, 0, song.getTicksForNote()));
+                assertOrdered(file, events);
+                assertEquals(file, describe(notes), describeEvents(events));
+            }
+        }
+    }
+
+    @Test
+    public void quantizedLikeTheList() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/tupletTest.abc"))).parseTicks(true);
+        int ticksPerQuarter = song.getTicksForNote() / 4;
+        Quantizer quantizer = new Quantizer(ticksPerQuarter, 2);
+        assertFalse(quantizer.isExact());
+        List<AugmentedMIDI> expected = new Quantizer(ticksPerQuarter, 2).quantize(
+                MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote()));
+
+        List<NoteEvent> events = events(new NoteEventMerger(song, 0, song.getTicksForNote(), quantizer));
+        assertOrdered("quantized", events);
+        assertEquals(describe(expected), describeEvents(events));
+    }
+
+    @Test
+    public void streamIsLazyMerge() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/invention.abc"))).parseTicks(true);
+        List<NoteEvent> merged = events(new NoteEventMerger(song, 0, song.getTicksForNote()));
+        assertEquals(join(merged), join(song.events(song.getTicksForNote()).collect(Collectors.<NoteEvent>toList())));
+        assertEquals(join(merged.subList(0, 10)),
+                join(song.events(song.getTicksForNote()).limit(10).collect(Collectors.<NoteEvent>toList())));
+    }
+
+    @Test
+    public void streamStopsAtEnd() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/invention.abc"))).parseTicks(true);
+        int numTicks = song.getTicksForNote();
+        long end = song.getTicksForBars(2, numTicks);
+        assertEquals(2 * numTicks, end); // C is 4/4
+        assertEquals(song.getQuarterTempo() * numTicks / 4 / 2, song.getTicksForSeconds(30, numTicks));
+
+        List<NoteEvent> beginning = song.events(numTicks, end).collect(Collectors.<NoteEvent>toList());
+        assertOrdered("beginning", beginning);
+        List<String> noteOns = new ArrayList<String>();
+        int noteOffs = 0;
+        for (NoteEvent event : beginning) {
+            assertTrue(event.toString(), event.getTick() <= end);
+            if (event.isNoteOn())
+                noteOns.add(event.toString());
+            else
+                noteOffs++;
+        }
+        assertEquals(noteOns.size(), noteOffs);
+        List<String> expected = new ArrayList<String>();
+        for (NoteEvent event : events(new NoteEventMerger(song, 0, numTicks)))
+            if (event.isNoteOn() && event.getTick() < end)
+                expected.add(event.toString());
+        assertEquals(expected, noteOns);
+        assertEquals(end, beginning.get(beginning.size() - 1).getTick()); // cut off
+    }
+
+    @Test
+    public void parallelStreamSplitsByVoice() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/invention.abc"))).parse();
+        Spliterator<NoteEvent> second = song.events(song.getTicksForNote()).spliterator();
+        Spliterator<NoteEvent> first = second.trySplit();
+        assertNotNull(first);
+        assertNull(first.trySplit()); // a single voice
+
+        List<NoteEvent> all = events(new NoteEventMerger(song, 0, song.getTicksForNote()));
+        List<NoteEvent> parallel = song.events(song.getTicksForNote()).parallel()
+                .collect(Collectors.<NoteEvent>toList());
+        assertEquals(sorted(all), sorted(parallel));
+    }
+
+    @Test
+    public void estimateCountsEveryNoteOfAChord() {
+        Song song = new Parser(new Lexer(AbcFileReader.read("sample_abc/chordTest.abc"))).parse();
+        long events = song.events(song.getTicksForNote()).count();
+        // rests are counted too, so the estimate is never below the events
+        long estimate = song.events(song.getTicksForNote()).spliterator().estimateSize();
+        assertTrue(estimate + " < " + events, estimate >= events);
+    }
+
+    private static List<String> sorted(List<NoteEvent> events) {
+        List<String> described = new ArrayList<String>();
+        for (NoteEvent event : events)
+            described.add(event.toString());
+        Collections.sort(described);
+        return described;
+    }
+
+    private static List<NoteEvent> events(NoteEventMerger merger) {
+        List<NoteEvent> events = new ArrayList<NoteEvent>();
+        while (merger.hasNext())
+            events.add(merger.next());
+        return events;
+    }
+
+    private static void assertOrdered(String file, List<NoteEvent> events) {
+        for (int i = 1; i < events.size(); i++) {
+            NoteEvent previous = events.get(i - 1), event = events.get(i);
+            assertTrue(file + " " + event, previous.getTick() <= event.getTick());
+            if (previous.getTick() == event.getTick())
+                assertTrue(file + " " + event, !previous.isNoteOn() || event.isNoteOn()); // NOTE_OFF first
+        }
+    }
+
+    /**
+     * @return the NOTE_ON and NOTE_OFF events of the notes, sorted
+     */
+    private static List<String> describe(List<AugmentedMIDI> notes) {
+        List<String> events = new ArrayList<String>();
+        for (AugmentedMIDI note : notes) {
+            events.add("on " + note.getPitch() + " @" + note.getStart());
+            events.add("off " + note.getPitch() + " @" + (note.getStart() + note.getDuration()));
+        }
+        Collections.sort(events);
+        return events;
+    }
+
+    private static List<String> describeEvents(List<NoteEvent> events) {
+        List<String> described = new ArrayList<String>();
+        for (NoteEvent event : events)
+            described.add((event.isNoteOn() ? "on " : "off ") + event.getPitch() + " @" + event.getTick());
+        Collections.sort(described);
+        return described;
+    }
+
+    private static String join(List<NoteEvent> events) {
+        StringBuilder joined = new StringBuilder();
+        for (NoteEvent event : events) {
+            if (joined.length() > 0)
+                joined.append(", ");
+            joined.append(event);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+import org.junit.Test;
+
+import player.Lexer;
+import player.Parser;
+import player.Song;
+import player.StreamingRenderer;
+import sound.NoteScheduler;
+
+public class NoteSchedulerTest {
+
+    /**
+     * Receiver that records the {command, note} of every message it gets
+     */
+    private static class RecordingReceiver implements Receiver {
+        private final List<int[]> messages = new ArrayList<int[]>();
+
+        @Override
+        public synchronized void send(MidiMessage message, long timeStamp) {
+            ShortMessage msg = (ShortMessage) message;
+            messages.add(new int[] { msg.getCommand(), msg.getData1() });
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public synchronized List<int[]> getMessages() {
+            return new ArrayList<int[]>(messages);
+        }
+    }
+
+    /**
+     * Notes start sounding once the first ticks are ready, before finish()
+     */
+    @Test(timeout = 10000)
+    public void playsBeforeFinishTest() throws InterruptedException {
+        RecordingReceiver receiver = new RecordingReceiver();
+        // 10 ms per tick
+        NoteScheduler scheduler = new NoteScheduler(6000, 1, 2, 16, receiver);
+        scheduler.start();
+
+        scheduler.addNote(60, 0, 1);
+        scheduler.addNote(62, 1, 1);
+        scheduler.ready(2);
+        while (receiver.getMessages().isEmpty())
+            Thread.sleep(1);
+        assertTrue(scheduler.getFirstNoteNanos() > 0);
+
+        scheduler.finish();
+        scheduler.await();
+        List<int[]> messages = receiver.getMessages();
+        assertEquals(4, messages.size());
+        // the first note is released before the second one is struck
+        assertArrayEquals(new int[] { ShortMessage.NOTE_ON, 60 }, messages.get(0));
+        assertArrayEquals(new int[] { ShortMessage.NOTE_OFF, 60 }, messages.get(1));
+        assertArrayEquals(new int[] { ShortMessage.NOTE_ON, 62 }, messages.get(2));
+        assertArrayEquals(new int[] { ShortMessage.NOTE_OFF, 62 }, messages.get(3));
+    }
+
+    /**
+     * Nothing is played until the first ticks are ready or finish() is called
+     */
+    @Test(timeout = 10000)
+    public void waitsUntilReadyTest() throws InterruptedException {
+        RecordingReceiver receiver = new RecordingReceiver();
+        NoteScheduler scheduler = new NoteScheduler(6000, 1, 4, 16, receiver);
+        scheduler.start();
+
+        scheduler.addNote(60, 0, 1);
+        scheduler.ready(1);
+        Thread.sleep(100);
+        assertTrue(receiver.getMessages().isEmpty());
+        assertEquals(-1, scheduler.getFirstNoteNanos());
+
+        scheduler.finish();
+        scheduler.await();
+        assertEquals(2, receiver.getMessages().size());
+    }
+
+    /**
+     * Notes reach the scheduler while the Parser is running, in the order
+     * of the piece
+     */
+    @Test(timeout = 10000)
+    public void streamingRendererTest() throws InterruptedException {
+        String abc = "X:1\nT:Streaming\nL:1/4\nQ:100\nV:1\nV:2\nK:C\n"
+                + "V:1\nC D E F|\nV:2\nc/2 c/2 d3|\n";
+        RecordingReceiver receiver = new RecordingReceiver();
+        // 0.1 ms per tick, 4 ticks per quarter, starts once the bar is ready
+        NoteScheduler scheduler = new NoteScheduler(150000, 4, 16, 64, receiver);
+        Parser parser = new Parser(new Lexer(abc));
+        Song header = parser.parseFileHeader();
+        StreamingRenderer renderer = new StreamingRenderer(header, scheduler, 4);
+        parser.setChordListener(renderer);
+
+        scheduler.start();
+        parser.parse();
+        renderer.flush();
+        scheduler.finish();
+        scheduler.await();
+
+        List<Integer> struck = new ArrayList<Integer>();
+        for (int[] message : receiver.getMessages())
+            if (message[0] == ShortMessage.NOTE_ON)
+                struck.add(message[1]);
+        // C c at tick 0, c at 2, D d at 4, E at 8, F at 12
+        assertEquals(7, struck.size());
+        Collections.sort(struck.subList(0, 2));
+        Collections.sort(struck.subList(3, 5));
+        assertEquals(Arrays.asList(60, 72, 72, 62, 74, 64, 65), struck);
+        assertEquals(14, receiver.getMessages().size());
+    }
+
+    /**
+     * Voices written one after the other are played together: the notes of
+     * the first voice wait for the second instead of filling the buffer and
+     * holding the Parser back
+     */
+    @Test(timeout = 10000)
+    public void voicesOneAfterTheOtherTest() throws InterruptedException {
+        StringBuilder abc = new StringBuilder("X:1\nT:Voices\nL:1/4\nQ:100\nV:1\nV:2\nK:C\nV:1\n");
+        for (int bar = 0; bar < 8; bar++)
+            abc.append("C D E F|");
+        abc.append("\nV:2\n");
+        for (int bar = 0; bar < 8; bar++)
+            abc.append("c d e f|");
+        abc.append('\n');
+        RecordingReceiver receiver = new RecordingReceiver();
+        // 1 ms per tick, 4 ticks per quarter, a buffer of 2 notes
+        NoteScheduler scheduler = new NoteScheduler(15000, 4, 16, 2, receiver);
+        Parser parser = new Parser(new Lexer(abc));
+        Song header = parser.parseFileHeader();
+        StreamingRenderer renderer = new StreamingRenderer(header, scheduler, 4);
+        parser.setChordListener(renderer);
+
+        scheduler.start();
+        parser.parse();
+        renderer.flush();
+        scheduler.finish();
+        scheduler.await();
+
+        List<Integer> struck = new ArrayList<Integer>();
+        for (int[] message : receiver.getMessages())
+            if (message[0] == ShortMessage.NOTE_ON)
+                struck.add(message[1]);
+        assertEquals(64, struck.size());
+        // the two voices strike together, quarter after quarter
+        for (int quarter = 0; quarter < 32; quarter++) {
+            List<Integer> together = struck.subList(2 * quarter, 2 * quarter + 2);
+            Collections.sort(together);
+            assertEquals(together.get(0) + 12, (int) together.get(1));
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package unitTests;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 
+import player.AbcFileReader;
+import player.AugmentedMIDI;
+import player.Chord;
 import player.Lexer;
+import player.MusicVisitor;
+import player.NoteSink;
+import player.NoteSinkVisitor;
 import player.Parser;
 import player.Song;
 
@@ -206,5 +217,130 @@ public class ParserTest {
         Assert.assertEquals(1, song.getVoiceMap().get("default Voice").getAllChords().get(0).getAllNotes().size());
 
     }
+    
+    @Test(timeout = 10000)
+    public void testParseManyRepeatedSections() {
+        // every section plays C D E F, then C D G A
+        int sections = 20000;
+        StringBuilder tune = new StringBuilder("X:1\nT:Repeats\nK:C\n");
+        for (int i = 0; i < sections; i++)
+            tune.append("|: C D |[1 E F :|[2 G A |\n");
+        Parser parser = new Parser(new Lexer(tune));
+
+        Song song = parser.parse();
+        List<Chord> chords = song.getVoiceMap().get("default Voice").getAllChords();
+        Assert.assertEquals(8 * sections, chords.size());
+        String expected = "CDEFCDGA";
+        for (int i = 0; i < 16; i++)
+            Assert.assertEquals(new Pitch(expected.charAt(i % 8)), chords.get(
+                    chords.size() - 16 + i).getAllNotes().get(0).getPitch());
+    }
+
+    @Test
+    public void testParseTicksMatchesParse() {
+        String[] files = { "sample_abc/tupletTest.abc", "sample_abc/chordTest.abc",
+                "sample_abc/fur_elise.abc", "sample_abc/invention.abc",
+                "sample_abc/little_night_music.abc", "sample_abc/prelude.abc" };
+        for (String file : files) {
+            CharSequence text = AbcFileReader.read(file);
+            Song song = new Parser(new Lexer(text)).parse();
+            Song tickSong = new Parser(new Lexer(text)).parseTicks();
+            Song columnSong = new Parser(new Lexer(text)).parseTicks(true);
+
+            Assert.assertTrue(tickSong.hasFixedTicks());
+            Assert.assertEquals(file, song.getTicksForNote(), tickSong.getTicksForNote());
+            String expected = describe(MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote()));
+            Assert.assertEquals(file, expected,
+                    describe(MusicVisitor.getMIDINotes(tickSong, 0, tickSong.getTicksForNote())));
+            Assert.assertEquals(file, expected,
+                    describe(MusicVisitor.getMIDINotes(columnSong, 0, columnSong.getTicksForNote())));
+            Assert.assertEquals(file, tickSong.getTicks(), columnSong.getTicks());
+            for (Song rendered : new Song[] { song, tickSong, columnSong })
+                Assert.assertEquals(file, expected, describe(sinkNotes(rendered)));
+        }
+    }
+
+    @Test
+    public void testParseTicksStarts() {
+        // 1/8 default: C is 3 ticks of 24, the triplet notes 2, E/ 1.5 of 24 -> 48 per whole note
+        for (boolean columns : new boolean[] { false, true }) {
+            Song song = new Parser(new Lexer("X:1\nT:Ticks\nK:C\nC (3DEF [E/^G/] z c2|")).parseTicks(columns);
+            Assert.assertEquals(48, song.getTicksForNote());
+            List<Chord> chords = song.getVoiceMap().get("default Voice").getAllChords();
+            long[] starts = { 0, 6, 10, 14, 18, 21, 27 };
+            long[] ticks = { 6, 4, 4, 4, 3, 6, 12 };
+            Assert.assertEquals(starts.length, chords.size());
+            for (int i = 0; i < chords.size(); i++) {
+                Assert.assertNull(chords.get(i).getLength());
+                Assert.assertEquals(starts[i], chords.get(i).getStart());
+                Assert.assertEquals(ticks[i], chords.get(i).getTicks());
+            }
+            Assert.assertEquals(new Pitch('G').accidentalTranspose(1), chords.get(4).getAllNotes().get(1).getPitch());
+            Assert.assertNull(chords.get(5).getAllNotes().get(0).getPitch());
+            Assert.assertEquals(39, song.getTicks());
+        }
+    }
+
+    @Test
+    public void testAccidentalsLastOneBar() {
+        // the key of G sharpens the F of the middle octave only
+        Song song = new Parser(new Lexer("X:1\nT:Bars\nK:G\n^c c _c, c, | c F f =F F\n")).parse();
+        List<Chord> chords = song.getVoiceMap().get("default Voice").getAllChords();
+        int[] midiNotes = { 73, 73, 59, 59, 72, 66, 77, 65, 65 };
+        Assert.assertEquals(midiNotes.length, chords.size());
+        for (int i = 0; i < midiNotes.length; i++)
+            Assert.assertEquals(midiNotes[i], chords.get(i).getAllNotes().get(0).getPitch().toMidiNote());
+    }
+
+    @Test
+    public void testParallelVoicesInHeaderOrder() {
+        // enough chords for the voices to be rendered in parallel
+        String[] voices = { "3", "1", "2" };
+        String[] bars = { "c d e f|", "C D E F|", "C, D, E, F,|" };
+        StringBuilder tune = new StringBuilder("X:1\nT:Voices\n");
+        for (String voice : voices)
+            tune.append("V:").append(voice).append('\n');
+        tune.append("K:C\n");
+        for (int line = 0; line < 200; line++)
+            for (int voice = 0; voice < voices.length; voice++) {
+                tune.append("V:").append(voices[voice]).append('\n');
+                for (int bar = 0; bar < 10; bar++)
+                    tune.append(bars[voice]);
+                tune.append('\n');
+            }
+        Song song = new Parser(new Lexer(tune)).parse();
+        Assert.assertEquals(Arrays.asList(voices), new ArrayList<String>(song.getVoiceMap().keySet()));
+
+        List<AugmentedMIDI> inTurn = MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote(), null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertEquals(describe(inTurn),
+                    describe(MusicVisitor.getMIDINotes(song, 0, song.getTicksForNote(), pool)));
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(3 * 200 * 10 * 4, inTurn.size());
+        Assert.assertEquals(new Pitch('C').octaveTranspose(1).toMidiNote(), inTurn.get(0).getPitch());
+        Assert.assertEquals(new Pitch('F').octaveTranspose(-1).toMidiNote(), inTurn.get(inTurn.size() - 1).getPitch());
+    }
+
+    private static List<AugmentedMIDI> sinkNotes(Song song) {
+        final List<AugmentedMIDI> notes = new ArrayList<AugmentedMIDI>();
+        NoteSinkVisitor.render(song, 0, song.getTicksForNote(), new NoteSink() {
+            @Override
+            public void note(int pitch, long start, long duration) {
+                notes.add(new AugmentedMIDI(pitch, (int) start, (int) duration));
+            }
+        });
+        return notes;
+    }
+
+    private static String describe(List<AugmentedMIDI> notes) {
+        StringBuilder description = new StringBuilder();
+        for (AugmentedMIDI note : notes)
+            description.append(note.getPitch()).append('@').append(note.getStart())
+                    .append('+').append(note.getDuration()).append(' ');
+        return description.toString();
+    }
 
 }
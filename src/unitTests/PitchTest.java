@@ -0,0 +1,37 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import sound.Pitch;
+
+public class PitchTest {
+
+    @Test
+    public void valueOfIsShared() {
+        assertSame(Pitch.valueOf('C'), Pitch.valueOf('C'));
+        assertEquals(new Pitch('C'), Pitch.valueOf('C'));
+        assertSame(Pitch.valueOf('D'), Pitch.valueOf('C').transpose(2));
+        assertSame(Pitch.valueOf('B').octaveTranspose(1).accidentalTranspose(-1),
+                new Pitch('B').accidentalTranspose(-1).octaveTranspose(1));
+    }
+
+    @Test
+    public void octavesHashApart() {
+        Pitch c = Pitch.valueOf('C');
+        assertTrue(c.hashCode() != c.octaveTranspose(1).hashCode());
+        assertTrue(c.hashCode() != c.octaveTranspose(-1).hashCode());
+        // same midi note, different pitches
+        assertTrue(Pitch.valueOf('F').hashCode() != Pitch.valueOf('E')
+                .accidentalTranspose(1).hashCode());
+    }
+
+    @Test
+    public void outsideTheTable() {
+        Pitch high = Pitch.valueOf('G').octaveTranspose(7);
+        assertEquals(60 + 7 + 7 * Pitch.OCTAVE, high.toMidiNote());
+        assertEquals(high, Pitch.valueOf('G').octaveTranspose(7));
+        assertEquals(64 + 3, Pitch.valueOf('E').accidentalTranspose(3).toMidiNote());
+    }
+}
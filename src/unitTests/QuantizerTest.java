@@ -0,0 +1,88 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import player.AugmentedMIDI;
+import player.NoteSink;
+import player.Quantizer;
+
+public class QuantizerTest {
+
+    @Test
+    public void exactWhenBelowCap() {
+        List<AugmentedMIDI> notes = new ArrayList<AugmentedMIDI>();
+        notes.add(new AugmentedMIDI(60, 0, 3));
+        Quantizer quantizer = new Quantizer(12, 960);
+
+        assertTrue(quantizer.isExact());
+        assertEquals(12, quantizer.getTicksPerQuarter());
+        assertSame(notes, quantizer.quantize(notes));
+        assertEquals(0.0, quantizer.getMaxError(), 0.0);
+    }
+
+    @Test
+    public void voicesDoNotDrift() {
+        // 9 notes of 7 ticks at 2880 per quarter are 7/3 ticks each at 960:
+        // rounding each duration would give 2 ticks and lose 3 by the end
+        List<AugmentedMIDI> voice = new ArrayList<AugmentedMIDI>();
+        for (int i = 0; i < 9; i++)
+            voice.add(new AugmentedMIDI(60, 7 * i, 7));
+        // another voice holding one note over the same time
+        voice.add(new AugmentedMIDI(48, 0, 63));
+
+        Quantizer quantizer = new Quantizer(2880, 960);
+        List<AugmentedMIDI> quantized = quantizer.quantize(voice);
+
+        assertEquals(960, quantizer.getTicksPerQuarter());
+        assertEquals(10, quantized.size());
+        int end = 0;
+        for (int i = 0; i < 9; i++) {
+            assertEquals(end, quantized.get(i).getStart());
+            end += quantized.get(i).getDuration();
+        }
+        assertEquals(21, end);
+        assertEquals(21, quantized.get(9).getDuration());
+        // each boundary is off by at most 1/3 of a tick
+        assertEquals(1.0 / 3 / 960, quantizer.getMaxError(), 1e-12);
+    }
+
+    @Test
+    public void shortNotesKeepATick() {
+        List<AugmentedMIDI> notes = new ArrayList<AugmentedMIDI>();
+        notes.add(new AugmentedMIDI(60, 0, 1));
+        Quantizer quantizer = new Quantizer(100, 10);
+
+        assertEquals(1, quantizer.quantize(notes).get(0).getDuration());
+        assertEquals(0.9 / 10, quantizer.getMaxError(), 1e-12);
+    }
+
+    @Test
+    public void sinkQuantizesLikeList() {
+        List<AugmentedMIDI> voice = new ArrayList<AugmentedMIDI>();
+        for (int i = 0; i < 9; i++)
+            voice.add(new AugmentedMIDI(60, 7 * i, 7));
+        voice.add(new AugmentedMIDI(62, 63, 1));
+        List<AugmentedMIDI> expected = new Quantizer(2880, 960).quantize(voice);
+
+        final List<AugmentedMIDI> quantized = new ArrayList<AugmentedMIDI>();
+        NoteSink sink = new Quantizer(2880, 960).quantizing(new NoteSink() {
+            @Override
+            public void note(int pitch, long start, long duration) {
+                quantized.add(new AugmentedMIDI(pitch, (int) start, (int) duration));
+            }
+        });
+        for (AugmentedMIDI note : voice)
+            sink.note(note.getPitch(), note.getStart(), note.getDuration());
+
+        assertEquals(expected.size(), quantized.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStart(), quantized.get(i).getStart());
+            assertEquals(expected.get(i).getDuration(), quantized.get(i).getDuration());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.Test;
+
+import player.AbcFileReader;
+import player.Lexer;
+import player.MidiExporter;
+import player.Parser;
+import player.SmfWriter;
+import player.Song;
+
+public class SmfWriterTest {
+
+    private static final String[] FILES = { "sample_abc/invention.abc",
+            "sample_abc/prelude.abc", "sample_abc/tupletTest.abc",
+            "sample_abc/chordTest.abc", "sample_abc/fur_elise.abc" };
+
+    @Test
+    public void matchesSequenceWrittenByMidiSystem() throws Exception {
+        for (String file : FILES) {
+            Song song = new Parser(new Lexer(AbcFileReader.read(file))).parseTicks(true);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            SmfWriter.write(song, 16, bytes);
+
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+            assertEquals(file, 1, MidiSystem.getMidiFileFormat(in).getType());
+            in.reset();
+            Sequence written = MidiSystem.getSequence(in);
+            Sequence expected = MidiExporter.toSequence(song, 16);
+            assertEquals(file, expected.getResolution(), written.getResolution());
+            assertEquals(file, expected.getTracks().length, written.getTracks().length);
+            for (int track = 0; track < expected.getTracks().length; track++)
+                assertEquals(file, describe(expected.getTracks()[track]),
+                        describe(written.getTracks()[track]));
+        }
+    }
+
+    /**
+     * @return the events of a track, sorted within each tick
+     */
+    private static List<String> describe(Track track) {
+        List<String> events = new ArrayList<String>();
+        for (int i = 0; i < track.size(); i++) {
+            MidiEvent event = track.get(i);
+            String tick = String.format("%10d ", event.getTick());
+            if (event.getMessage() instanceof ShortMessage) {
+                ShortMessage message = (ShortMessage) event.getMessage();
+                events.add(tick + message.getCommand() + " " + message.getChannel() + " "
+                        + message.getData1() + " " + message.getData2());
+            } else {
+                MetaMessage message = (MetaMessage) event.getMessage();
+                events.add(tick + "meta " + message.getType() + " "
+                        + new String(message.getData(), java.nio.charset.StandardCharsets.UTF_8));
+            }
+        }
+        Collections.sort(events);
+        return events;
+    }
+}
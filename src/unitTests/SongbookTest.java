@@ -0,0 +1,88 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import player.Main;
+import player.Songbook;
+import player.SongbookEntry;
+
+public class SongbookTest {
+
+    private static final String[] SAMPLES = { "sample_abc/fur_elise.abc",
+            "sample_abc/invention.abc", "sample_abc/paddy.abc",
+            "sample_abc/piece1.abc", "sample_abc/prelude.abc" };
+
+    /**
+     * Tunes are split at "X:" lines, text before the first tune is ignored
+     */
+    @Test
+    public void splitTest() {
+        Songbook songbook = new Songbook(
+                "% my tunes\nX:1\nT:One\nK:C\nC|\n\nX:2\nT:Two\nK:C\nD|\n");
+
+        assertEquals(2, songbook.size());
+        assertEquals("X:1\nT:One\nK:C\nC|\n\n", songbook.getTune(0).toString());
+        assertEquals("X:2\nT:Two\nK:C\nD|\n", songbook.getTune(1).toString());
+        assertEquals(11, songbook.getTuneOffset(0));
+        assertEquals(0, new Songbook("no tunes here\n").size());
+    }
+
+    /**
+     * Headers are parsed without the body, which may be broken
+     */
+    @Test
+    public void parseHeaderTest() {
+        Songbook songbook = new Songbook(
+                "X:1\nT:One\nC:Someone\nK:G\nC D E ]\nX:2\nT:Two\n");
+
+        SongbookEntry header = songbook.parseHeader(0);
+        assertTrue(header.isParsed());
+        assertEquals("One", header.getSong().getSongTitle());
+        assertEquals("Someone", header.getSong().getSongComposer());
+        assertEquals("G", header.getSong().getSongKey());
+        assertTrue(header.getSong().getVoiceMap().get(
+                header.getSong().Voice_Default).getAllChords().isEmpty());
+
+        assertFalse(songbook.parse(0).isParsed());
+        assertFalse(songbook.parseHeader(1).isParsed()); // no key field
+    }
+
+    /**
+     * Tunes are parsed in parallel and returned in file order, and a tune that
+     * fails to parse does not stop the others
+     */
+    @Test
+    public void parseAllTest() {
+        StringBuilder content = new StringBuilder();
+        int tunes = 0;
+        for (int copy = 0; copy < 20; copy++) {
+            for (String sample : SAMPLES) {
+                content.append(Main.readFileIntoString(sample)).append('\n');
+                tunes++;
+            }
+        }
+        content.append("X:7\nT:Broken\nK:C\nC D E ]\n");
+        content.append(Main.readFileIntoString(SAMPLES[0]));
+
+        List<SongbookEntry> entries = new Songbook(content)
+                .parseAll(new ForkJoinPool(4));
+        assertEquals(tunes + 2, entries.size());
+        for (int i = 0; i < tunes; i++) {
+            SongbookEntry entry = entries.get(i);
+            assertEquals(i, entry.getIndex());
+            assertTrue(entry.isParsed());
+            String expected = new Songbook(Main.readFileIntoString(SAMPLES[i
+                    % SAMPLES.length])).parse(0).getSong().getSongTitle();
+            assertEquals(expected, entry.getSong().getSongTitle());
+        }
+        assertFalse(entries.get(tunes).isParsed());
+        assertNull(entries.get(tunes).getSong());
+        assertNotNull(entries.get(tunes).getError());
+        assertTrue(entries.get(tunes + 1).isParsed());
+    }
+}
@@ -0,0 +1,64 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import player.Lexer;
+import player.Parser;
+import player.Song;
+import player.WavRenderer;
+
+public class WavRendererTest {
+
+    @Test
+    public void noteSoundsAtItsTime() throws Exception {
+        // a rest of a second, then a note of a second
+        Song song = new Parser(new Lexer("X:1\nT:Rest\nL:1/4\nQ:120\nK:C\nz2 C2|\n")).parseTicks(true);
+        File file = File.createTempFile("rest", ".wav");
+        try {
+            long frames;
+            try {
+                frames = WavRenderer.render(song, file);
+            } catch (MidiUnavailableException e) {
+                // no AudioSynthesizer here: from Java 9 on, the test run needs
+                // --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED
+                Assume.assumeNoException(e);
+                return;
+            }
+            // two seconds of music and one of tail
+            assertEquals(3 * 44100, frames);
+
+            AudioInputStream audio = AudioSystem.getAudioInputStream(file);
+            AudioFormat format = audio.getFormat();
+            assertEquals(44100, format.getSampleRate(), 0);
+            assertEquals(2, format.getChannels());
+            assertEquals(16, format.getSampleSizeInBits());
+            assertEquals(frames, audio.getFrameLength());
+
+            byte[] bytes = new byte[(int) frames * format.getFrameSize()];
+            int read = 0;
+            while (read < bytes.length)
+                read += audio.read(bytes, read, bytes.length - read);
+            audio.close();
+            int firstSound = -1;
+            for (int frame = 0; frame < frames && firstSound < 0; frame++) {
+                int sample = (short) (bytes[4 * frame] & 0xFF | bytes[4 * frame + 1] << 8);
+                if (Math.abs(sample) > 100)
+                    firstSound = frame;
+            }
+            assertTrue("first sound at frame " + firstSound,
+                    firstSound >= 44100 && firstSound < 44100 + 4410);
+        } finally {
+            file.delete();
+        }
+    }
+}